@@ -0,0 +1,104 @@
+package com.cursor.mcp.bench;
+
+import com.cursor.mcp.McpPlugin;
+import com.cursor.mcp.files.FileUrlSigner;
+import com.cursor.mcp.files.FileWatcher;
+import com.cursor.mcp.logging.LogStreamer;
+import com.cursor.mcp.metrics.McpMetrics;
+import com.cursor.mcp.protocol.McpProtocol;
+import com.cursor.mcp.protocol.McpRequest;
+import com.cursor.mcp.protocol.McpResponse;
+import com.cursor.mcp.scheduler.MainThreadScheduler;
+import com.cursor.mcp.tools.ToolRegistry;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.stream.Stream;
+
+/**
+ * The protocol stack as McpServer wires it, minus Javalin: stand-in server,
+ * main-thread scheduler, worker pool and every built-in tool.
+ */
+public final class BenchFixture implements AutoCloseable {
+    // Tools only accept paths under the working directory
+    public static final Path DATA = Paths.get("bench-data");
+
+    private final StandInServer server;
+    private final MainThreadScheduler scheduler;
+    private final ExecutorService workers;
+    private final McpProtocol protocol;
+
+    private BenchFixture(StandInServer server, MainThreadScheduler scheduler, ExecutorService workers,
+                         McpProtocol protocol) {
+        this.server = server;
+        this.scheduler = scheduler;
+        this.workers = workers;
+        this.protocol = protocol;
+    }
+
+    // Ticks every millisecond so main-thread hops measure the code path rather
+    // than the 50 ms a real tick would make them wait.
+    public static BenchFixture start() throws IOException {
+        StandInServer server = StandInServer.get();
+        server.start(TimeUnit.MILLISECONDS.toNanos(1));
+
+        Path dataFolder = Files.createDirectories(DATA.resolve("plugin"));
+        McpPlugin plugin = StandInPlugin.create(server, dataFolder.toFile());
+        plugin.getConfig().set("logging.requests.sample-every", 0);
+        // Error-path benchmarks would otherwise log on every call
+        plugin.getLogger().setLevel(Level.OFF);
+
+        McpMetrics metrics = new McpMetrics();
+        MainThreadScheduler scheduler = new MainThreadScheduler(plugin, metrics, 5_000_000L, 10_000L, 100_000);
+        scheduler.start();
+        ExecutorService workers = Executors.newFixedThreadPool(4, r -> {
+            Thread thread = new Thread(r, "MCP-Worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        LogStreamer logStreamer = new LogStreamer(sessionId -> null, 1024, 250, 200);
+        // The watcher is left unstarted; the file cache still validates hits by file time
+        FileWatcher watcher = new FileWatcher(Paths.get("").toAbsolutePath(), plugin.getLogger());
+        McpProtocol protocol = new McpProtocol(plugin, new ToolRegistry(), logStreamer, scheduler, workers, metrics,
+                new FileUrlSigner(), watcher);
+        return new BenchFixture(server, scheduler, workers, protocol);
+    }
+
+    // Full request path: parse, dispatch, wait, serialize. Returns response bytes.
+    public long roundTrip(String json) throws IOException {
+        McpResponse response;
+        try {
+            McpRequest request = McpRequest.parse(json);
+            response = protocol.handleRequest(request).join();
+        } catch (IOException e) {
+            response = McpProtocol.parseError(e);
+        }
+        return response == null ? 0 : response.writeTo(OutputStream.nullOutputStream());
+    }
+
+    @Override
+    public void close() throws IOException {
+        scheduler.stop();
+        protocol.close();
+        workers.shutdownNow();
+        server.stop();
+        deleteData();
+    }
+
+    public static void deleteData() throws IOException {
+        if (!Files.exists(DATA)) return;
+        try (Stream<Path> files = Files.walk(DATA)) {
+            for (Path path : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.cursor.mcp.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * File tools through the whole request path, from a 1 KB config up to an 8 MB
+ * base64 upload. Writes include parsing the request body that carries the
+ * content.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileToolBenchmark {
+    @Param({"1024", "65536", "1048576", "8388608"})
+    public int fileBytes;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private BenchFixture fixture;
+    private String readFile;
+    private String readFileMiddleLines;
+    private String readFileBase64;
+    private String writeFile;
+    private String writeFileBase64;
+
+    @Setup
+    public void setUp() throws IOException {
+        fixture = BenchFixture.start();
+        Path dir = Files.createDirectories(BenchFixture.DATA.resolve("files"));
+
+        StringBuilder text = new StringBuilder(fileBytes);
+        int line = 0;
+        while (text.length() < fileBytes) {
+            text.append("[12:00:00] [Server thread/INFO]: line ").append(line++).append(" of the benchmark log\n");
+        }
+        text.setLength(fileBytes);
+        Files.writeString(dir.resolve("text.log"), text, StandardCharsets.UTF_8);
+
+        byte[] binary = new byte[fileBytes];
+        new Random(42).nextBytes(binary);
+        Files.write(dir.resolve("binary.dat"), binary);
+
+        String textPath = dir.resolve("text.log").toString();
+        readFile = toolCall("read_file", args().put("path", textPath));
+        readFileMiddleLines = toolCall("read_file", args().put("path", textPath)
+                .put("startLine", Math.max(1, line / 2)).put("lineCount", 200));
+        readFileBase64 = toolCall("read_file_base64", args().put("path", dir.resolve("binary.dat").toString()));
+        writeFile = toolCall("write_file", args().put("path", dir.resolve("written.log").toString())
+                .put("content", text.toString()));
+        writeFileBase64 = toolCall("write_file_base64", args().put("path", dir.resolve("written.dat").toString())
+                .put("content", Base64.getEncoder().encodeToString(binary)));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        fixture.close();
+    }
+
+    @Benchmark
+    public long readFile() throws IOException {
+        return fixture.roundTrip(readFile);
+    }
+
+    @Benchmark
+    public long readFileMiddleLines() throws IOException {
+        return fixture.roundTrip(readFileMiddleLines);
+    }
+
+    @Benchmark
+    public long readFileBase64() throws IOException {
+        return fixture.roundTrip(readFileBase64);
+    }
+
+    @Benchmark
+    public long writeFile() throws IOException {
+        return fixture.roundTrip(writeFile);
+    }
+
+    @Benchmark
+    public long writeFileBase64() throws IOException {
+        return fixture.roundTrip(writeFileBase64);
+    }
+
+    private ObjectNode args() {
+        return mapper.createObjectNode();
+    }
+
+    private String toolCall(String name, ObjectNode arguments) {
+        ObjectNode request = mapper.createObjectNode().put("jsonrpc", "2.0").put("id", 1).put("method", "tools/call");
+        request.putObject("params").put("name", name).set("arguments", arguments);
+        return request.toString();
+    }
+}
@@ -0,0 +1,116 @@
+package com.cursor.mcp.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Small requests through McpProtocol end to end: parsing, dispatch, the
+ * cached tools/list payload, error responses and main-thread tool calls.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProtocolBenchmark {
+    private static final String PING = "{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"ping\"}";
+    private static final String INITIALIZE = "{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"initialize\",\"params\":"
+            + "{\"protocolVersion\":\"2024-11-05\",\"capabilities\":{},\"clientInfo\":{\"name\":\"bench\",\"version\":\"1\"}}}";
+    private static final String TOOLS_LIST = "{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"tools/list\"}";
+    private static final String UNKNOWN_METHOD = "{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"does/not/exist\"}";
+    private static final String MALFORMED = "{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":";
+    private static final String INVALID_ARGUMENTS = "{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"tools/call\","
+            + "\"params\":{\"name\":\"get_logs\",\"arguments\":{\"lines\":\"many\"}}}";
+    private static final String MCP_STATUS = "{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"tools/call\","
+            + "\"params\":{\"name\":\"mcp_status\",\"arguments\":{}}}";
+    private static final String EXECUTE_COMMAND = "{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"tools/call\","
+            + "\"params\":{\"name\":\"execute_command\",\"arguments\":{\"command\":\"say hi\"}}}";
+    private static final String LIST_PLUGINS = "{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"tools/call\","
+            + "\"params\":{\"name\":\"list_plugins\",\"arguments\":{}}}";
+    private static final String PING_BATCH;
+
+    static {
+        StringBuilder batch = new StringBuilder("[");
+        for (int i = 0; i < 10; i++) {
+            if (i > 0) batch.append(',');
+            batch.append("{\"jsonrpc\":\"2.0\",\"id\":").append(i).append(",\"method\":\"ping\"}");
+        }
+        PING_BATCH = batch.append(']').toString();
+    }
+
+    private BenchFixture fixture;
+
+    @Setup
+    public void setUp() throws IOException {
+        fixture = BenchFixture.start();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        fixture.close();
+    }
+
+    @Benchmark
+    public long ping() throws IOException {
+        return fixture.roundTrip(PING);
+    }
+
+    @Benchmark
+    public long pingBatchOfTen() throws IOException {
+        return fixture.roundTrip(PING_BATCH);
+    }
+
+    @Benchmark
+    public long initialize() throws IOException {
+        return fixture.roundTrip(INITIALIZE);
+    }
+
+    @Benchmark
+    public long toolsList() throws IOException {
+        return fixture.roundTrip(TOOLS_LIST);
+    }
+
+    @Benchmark
+    public long unknownMethodError() throws IOException {
+        return fixture.roundTrip(UNKNOWN_METHOD);
+    }
+
+    @Benchmark
+    public long parseError() throws IOException {
+        return fixture.roundTrip(MALFORMED);
+    }
+
+    @Benchmark
+    public long invalidArgumentsError() throws IOException {
+        return fixture.roundTrip(INVALID_ARGUMENTS);
+    }
+
+    @Benchmark
+    public long mcpStatus() throws IOException {
+        return fixture.roundTrip(MCP_STATUS);
+    }
+
+    // Includes the wait for the next (1 ms) stand-in tick
+    @Benchmark
+    public long executeCommand() throws IOException {
+        return fixture.roundTrip(EXECUTE_COMMAND);
+    }
+
+    @Benchmark
+    public long listPlugins() throws IOException {
+        return fixture.roundTrip(LIST_PLUGINS);
+    }
+}
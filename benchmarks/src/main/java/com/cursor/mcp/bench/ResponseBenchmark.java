@@ -0,0 +1,67 @@
+package com.cursor.mcp.bench;
+
+import com.cursor.mcp.protocol.McpResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.IntNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Response serialization alone, for text results from a few bytes to several
+ * megabytes: straight to a stream (/api, /mcp) and to a byte array (SSE).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseBenchmark {
+    @Param({"64", "4096", "262144", "4194304"})
+    public int payloadBytes;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private ObjectNode result;
+
+    @Setup
+    public void setUp() {
+        StringBuilder text = new StringBuilder(payloadBytes);
+        while (text.length() < payloadBytes) {
+            // Quotes and newlines so escaping is part of the cost
+            text.append("[12:00:00 INFO]: \"player\" joined the game\n");
+        }
+        text.setLength(payloadBytes);
+        result = mapper.createObjectNode();
+        result.putArray("content").addObject().put("type", "text").put("text", text.toString());
+    }
+
+    @Benchmark
+    public long writeResult() throws IOException {
+        return McpResponse.result(IntNode.valueOf(1), result).writeTo(OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public byte[] resultToBytes() {
+        return McpResponse.result(IntNode.valueOf(1), result).toBytes();
+    }
+
+    @Benchmark
+    public long writeError() throws IOException {
+        return McpResponse.error(IntNode.valueOf(1), -32601, "Method not found: does/not/exist")
+                .writeTo(OutputStream.nullOutputStream());
+    }
+}
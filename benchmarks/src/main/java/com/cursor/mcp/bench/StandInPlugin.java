@@ -0,0 +1,25 @@
+package com.cursor.mcp.bench;
+
+import com.cursor.mcp.McpPlugin;
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.bukkit.plugin.java.JavaPluginLoader;
+
+import java.io.File;
+
+/**
+ * McpPlugin created through Bukkit's test constructor. Its config comes from the
+ * bundled config.yml plus whatever the harness sets on top.
+ */
+public final class StandInPlugin extends McpPlugin {
+
+    private StandInPlugin(JavaPluginLoader loader, PluginDescriptionFile description, File dataFolder, File file) {
+        super(loader, description, dataFolder, file);
+    }
+
+    @SuppressWarnings("deprecation")
+    public static StandInPlugin create(StandInServer server, File dataFolder) {
+        PluginDescriptionFile description = new PluginDescriptionFile("MCPMinecraft", "bench", McpPlugin.class.getName());
+        return new StandInPlugin(new JavaPluginLoader(server.getServer()), description, dataFolder,
+                new File(dataFolder, "MCPMinecraft.jar"));
+    }
+}
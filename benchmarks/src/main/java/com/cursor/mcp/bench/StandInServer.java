@@ -0,0 +1,301 @@
+package com.cursor.mcp.bench;
+
+import com.cursor.mcp.metrics.Histogram;
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.ConsoleCommandSender;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Just enough of a Bukkit server to run the plugin outside Minecraft. Server,
+ * scheduler, plugin manager and console are dynamic proxies; sync tasks run on
+ * a dedicated "Server thread" at a fixed tick rate, and each tick can spend
+ * extra time standing in for world simulation.
+ */
+public final class StandInServer {
+    private static StandInServer instance;
+
+    private final Logger logger = Logger.getLogger("StandInServer");
+    private final List<ScheduledTask> tasks = new CopyOnWriteArrayList<>();
+    private final AtomicInteger taskIds = new AtomicInteger();
+    private final Server server;
+    private final BukkitScheduler scheduler;
+    private final ConsoleCommandSender console;
+    private final PluginManager pluginManager;
+
+    private volatile Thread tickThread;
+    private volatile boolean running;
+    private volatile long tickNanos = 50_000_000L;
+    private volatile long worldWorkNanos;
+    private volatile long commandWorkNanos;
+
+    private volatile Histogram tickDurations = Histogram.latency();
+    private final AtomicLong ticks = new AtomicLong();
+    private final AtomicLong overrunTicks = new AtomicLong();
+
+    private StandInServer() {
+        Map<String, Answer> scheduler = new HashMap<>();
+        scheduler.put("runTaskTimer", args -> schedule(args[1], (Long) args[2], (Long) args[3]));
+        scheduler.put("runTaskLater", args -> schedule(args[1], (Long) args[2], -1));
+        scheduler.put("runTask", args -> schedule(args[1], 0, -1));
+        scheduler.put("runTaskAsynchronously", args -> {
+            ScheduledTask task = new ScheduledTask(args[1], 0, -1);
+            ForkJoinPool.commonPool().execute(task::run);
+            return task.handle;
+        });
+        scheduler.put("cancelTask", args -> {
+            tasks.removeIf(task -> task.id == (Integer) args[0]);
+            return null;
+        });
+        scheduler.put("cancelTasks", args -> {
+            tasks.clear();
+            return null;
+        });
+        this.scheduler = proxy(BukkitScheduler.class, scheduler);
+
+        this.pluginManager = proxy(PluginManager.class, new HashMap<>());
+
+        Map<String, Answer> console = new HashMap<>();
+        console.put("getName", args -> "CONSOLE");
+        console.put("getServer", args -> getServer());
+        console.put("isOp", args -> true);
+        console.put("hasPermission", args -> true);
+        console.put("isPermissionSet", args -> true);
+        this.console = proxy(ConsoleCommandSender.class, console);
+
+        Map<String, Answer> server = new HashMap<>();
+        server.put("getLogger", args -> logger);
+        server.put("getScheduler", args -> this.scheduler);
+        server.put("getPluginManager", args -> this.pluginManager);
+        server.put("getConsoleSender", args -> this.console);
+        server.put("isPrimaryThread", args -> Thread.currentThread() == tickThread);
+        server.put("getName", args -> "StandIn");
+        server.put("getVersion", args -> "bench");
+        server.put("getBukkitVersion", args -> "1.20.4-R0.1-SNAPSHOT");
+        server.put("dispatchCommand", args -> {
+            busyFor(commandWorkNanos);
+            ((CommandSender) args[0]).sendMessage("Executed: " + args[1]);
+            return true;
+        });
+        this.server = proxy(Server.class, server);
+    }
+
+    // Bukkit only accepts one server per JVM, so all harnesses share this one
+    public static synchronized StandInServer get() {
+        if (instance == null) {
+            instance = new StandInServer();
+            Bukkit.setServer(instance.server);
+        }
+        return instance;
+    }
+
+    public Server getServer() {
+        return server;
+    }
+
+    public synchronized void start(long tickNanos) {
+        this.tickNanos = tickNanos;
+        if (running) return;
+        running = true;
+        Thread thread = new Thread(this::loop, "Server thread");
+        thread.setDaemon(true);
+        tickThread = thread;
+        thread.start();
+    }
+
+    public synchronized void stop() {
+        running = false;
+        Thread thread = tickThread;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        tickThread = null;
+        tasks.clear();
+    }
+
+    // Time every tick spends before running plugin tasks, as if ticking worlds
+    public void setWorldWorkNanos(long nanos) {
+        this.worldWorkNanos = nanos;
+    }
+
+    // Time every dispatched command takes on the server thread
+    public void setCommandWorkNanos(long nanos) {
+        this.commandWorkNanos = nanos;
+    }
+
+    public long getTickNanos() {
+        return tickNanos;
+    }
+
+    public long getTicks() {
+        return ticks.get();
+    }
+
+    // Ticks that took longer than the tick period, i.e. would have lowered TPS
+    public long getOverrunTicks() {
+        return overrunTicks.get();
+    }
+
+    public Histogram getTickDurations() {
+        return tickDurations;
+    }
+
+    public void resetStats() {
+        tickDurations = Histogram.latency();
+        ticks.set(0);
+        overrunTicks.set(0);
+    }
+
+    private void loop() {
+        long next = System.nanoTime();
+        while (running) {
+            long start = System.nanoTime();
+            busyFor(worldWorkNanos);
+            for (ScheduledTask task : tasks) {
+                task.tick();
+            }
+            long elapsed = System.nanoTime() - start;
+            tickDurations.record(elapsed);
+            ticks.incrementAndGet();
+            if (elapsed > tickNanos) {
+                overrunTicks.incrementAndGet();
+            }
+
+            next += tickNanos;
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            } else {
+                // Like a real server: a late tick is not made up for
+                next = System.nanoTime();
+            }
+        }
+    }
+
+    private BukkitTask schedule(Object runnable, long delay, long period) {
+        ScheduledTask task = new ScheduledTask(runnable, delay, period);
+        tasks.add(task);
+        return task.handle;
+    }
+
+    private static void busyFor(long nanos) {
+        if (nanos <= 0) return;
+        long end = System.nanoTime() + nanos;
+        while (System.nanoTime() < end) {
+            Thread.onSpinWait();
+        }
+    }
+
+    private interface Answer {
+        Object answer(Object[] args) throws Throwable;
+    }
+
+    private static <T> T proxy(Class<T> type, Map<String, Answer> answers) {
+        return type.cast(Proxy.newProxyInstance(StandInServer.class.getClassLoader(), new Class<?>[]{type},
+                (self, method, args) -> {
+                    Object[] actual = args == null ? new Object[0] : args;
+                    Answer answer = answers.get(method.getName());
+                    if (answer != null) {
+                        return answer.answer(actual);
+                    }
+                    switch (method.getName()) {
+                        case "toString":
+                            return type.getSimpleName() + " (stand-in)";
+                        case "hashCode":
+                            return System.identityHashCode(self);
+                        case "equals":
+                            return self == actual[0];
+                        default:
+                            return defaultValue(method.getReturnType());
+                    }
+                }));
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) return false;
+        if (type == int.class) return 0;
+        if (type == long.class) return 0L;
+        if (type == double.class) return 0d;
+        if (type == float.class) return 0f;
+        if (type == short.class) return (short) 0;
+        if (type == byte.class) return (byte) 0;
+        if (type == char.class) return (char) 0;
+        if (type.isArray()) return Array.newInstance(type.getComponentType(), 0);
+        if (type == List.class || type == Collection.class) return List.of();
+        if (type == Set.class) return Set.of();
+        if (type == Map.class) return Map.of();
+        if (type == String.class) return "";
+        return null;
+    }
+
+    private final class ScheduledTask {
+        final int id = taskIds.incrementAndGet();
+        final Object body;
+        final long period;
+        final BukkitTask handle;
+        long countdown;
+        volatile boolean cancelled;
+
+        ScheduledTask(Object body, long delay, long period) {
+            this.body = body;
+            this.period = period;
+            this.countdown = Math.max(0, delay);
+            Map<String, Answer> answers = new HashMap<>();
+            answers.put("getTaskId", args -> id);
+            answers.put("isSync", args -> true);
+            answers.put("isCancelled", args -> cancelled);
+            answers.put("cancel", args -> {
+                cancelled = true;
+                tasks.remove(this);
+                return null;
+            });
+            this.handle = proxy(BukkitTask.class, answers);
+        }
+
+        void tick() {
+            if (cancelled || countdown-- > 0) return;
+            run();
+            if (period < 0) {
+                tasks.remove(this);
+            } else {
+                countdown = Math.max(0, period - 1);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        void run() {
+            try {
+                if (body instanceof Runnable) {
+                    ((Runnable) body).run();
+                } else {
+                    ((Consumer<BukkitTask>) body).accept(handle);
+                }
+            } catch (Throwable t) {
+                logger.severe("Task " + id + " failed: " + t);
+            }
+        }
+    }
+}
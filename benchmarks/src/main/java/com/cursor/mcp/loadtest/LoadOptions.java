@@ -0,0 +1,68 @@
+package com.cursor.mcp.loadtest;
+
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Command-line settings, all given as {@code --name=value}.
+ */
+final class LoadOptions {
+    static final String USAGE = String.join("\n",
+            "Options (all --name=value):",
+            "  --sessions=200          SSE sessions, each sending requests through /messages",
+            "  --http-users=20         Users calling /api and /mcp (half each)",
+            "  --duration=60           Seconds to run after all sessions are connected",
+            "  --think-ms=200          Pause between a user's requests",
+            "  --timeout-ms=30000      Requests without a response by then count as timeouts",
+            "  --mix=ping:3,tools_list:1,mcp_status:1,execute_command:3,list_plugins:1,read_file:1",
+            "                          Operation weights; also execute_commands, read_file_base64",
+            "  --world-work-ms=30      Simulated world tick work per 50 ms tick",
+            "  --command-work-us=200   Simulated cost of each dispatched command",
+            "  --worker-threads=4      server.worker-threads for the MCP server",
+            "  --virtual-threads=false server.virtual-threads for the MCP server");
+
+    int sessions = 200;
+    int httpUsers = 20;
+    int durationSeconds = 60;
+    long thinkMillis = 200;
+    long timeoutMillis = 30_000;
+    Map<Operation, Integer> mix = Operation.parseMix(
+            "ping:3,tools_list:1,mcp_status:1,execute_command:3,list_plugins:1,read_file:1");
+    double worldWorkMillis = 30;
+    long commandWorkMicros = 200;
+    int workerThreads = 4;
+    boolean virtualThreads;
+
+    static LoadOptions parse(String[] args) {
+        LoadOptions options = new LoadOptions();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            String name = arg.substring(2, eq);
+            String value = arg.substring(eq + 1);
+            switch (name) {
+                case "sessions": options.sessions = Integer.parseInt(value); break;
+                case "http-users": options.httpUsers = Integer.parseInt(value); break;
+                case "duration": options.durationSeconds = Integer.parseInt(value); break;
+                case "think-ms": options.thinkMillis = Long.parseLong(value); break;
+                case "timeout-ms": options.timeoutMillis = Long.parseLong(value); break;
+                case "mix": options.mix = Operation.parseMix(value); break;
+                case "world-work-ms": options.worldWorkMillis = Double.parseDouble(value); break;
+                case "command-work-us": options.commandWorkMicros = Long.parseLong(value); break;
+                case "worker-threads": options.workerThreads = Integer.parseInt(value); break;
+                case "virtual-threads": options.virtualThreads = Boolean.parseBoolean(value); break;
+                default: throw new IllegalArgumentException("Unknown option: --" + name);
+            }
+        }
+        return options;
+    }
+
+    String describe() {
+        return sessions + " SSE sessions, " + httpUsers + " HTTP users, " + durationSeconds + " s, think "
+                + thinkMillis + " ms, world work " + worldWorkMillis + " ms/tick, command work "
+                + commandWorkMicros + " us\nMix: " + mix.entrySet().stream()
+                .map(e -> e.getKey().label() + ":" + e.getValue()).collect(Collectors.joining(","));
+    }
+}
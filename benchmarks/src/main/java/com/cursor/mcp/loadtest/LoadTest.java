@@ -0,0 +1,309 @@
+package com.cursor.mcp.loadtest;
+
+import com.cursor.mcp.McpServer;
+import com.cursor.mcp.bench.StandInPlugin;
+import com.cursor.mcp.bench.StandInServer;
+import com.cursor.mcp.metrics.Histogram;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Boots a real McpServer on the stand-in Bukkit server (20 TPS with simulated
+ * world work), connects hundreds of SSE sessions plus plain HTTP users, and
+ * drives a weighted tool mix at them. Reports client-side latency percentiles,
+ * tick overrun and heap used per connected session.
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar com.cursor.mcp.loadtest.LoadTest --sessions=300 --duration=120
+ * </pre>
+ */
+public final class LoadTest {
+    static final Path DATA = Paths.get("loadtest-data");
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final LoadOptions options;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Results results = new Results();
+    private final AtomicLong ids = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final List<Operation> weighted = new ArrayList<>();
+    private final ScheduledExecutorService driver = Executors.newScheduledThreadPool(4, r -> {
+        Thread thread = new Thread(r, "LoadTest-Driver");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private HttpClient http;
+    private URI base;
+    private String token;
+    private volatile boolean stopping;
+
+    private LoadTest(LoadOptions options) {
+        this.options = options;
+        for (Map.Entry<Operation, Integer> entry : options.mix.entrySet()) {
+            for (int i = 0; i < entry.getValue(); i++) {
+                weighted.add(entry.getKey());
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && (args[0].equals("--help") || args[0].equals("-h"))) {
+            System.out.println(LoadOptions.USAGE);
+            return;
+        }
+        LoadOptions options;
+        try {
+            options = LoadOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(LoadOptions.USAGE);
+            System.exit(2);
+            return;
+        }
+        new LoadTest(options).run();
+        System.exit(0);
+    }
+
+    private void run() throws Exception {
+        System.out.println("MCP load test: " + options.describe());
+        prepareData();
+
+        StandInServer stand = StandInServer.get();
+        stand.setWorldWorkNanos((long) (options.worldWorkMillis * 1_000_000));
+        stand.setCommandWorkNanos(TimeUnit.MICROSECONDS.toNanos(options.commandWorkMicros));
+        stand.start(TICK_NANOS);
+
+        int port = freePort();
+        token = UUID.randomUUID().toString();
+        StandInPlugin plugin = StandInPlugin.create(stand, Files.createDirectories(DATA.resolve("plugin")).toFile());
+        plugin.getConfig().set("logging.requests.sample-every", 0);
+        plugin.getConfig().set("server.worker-threads", options.workerThreads);
+        plugin.getConfig().set("server.virtual-threads", options.virtualThreads);
+        McpServer server = new McpServer(plugin, port, token);
+        server.start();
+        base = URI.create("http://127.0.0.1:" + port);
+        http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+        try {
+            // Warm the server and client up before taking the heap baseline
+            post(Transport.API, Operation.TOOLS_LIST.body(ids.incrementAndGet())).join();
+            long heapBefore = usedHeap();
+            List<SseSession> sessions = connect(options.sessions);
+            long heapAfter = usedHeap();
+
+            stand.resetStats();
+            long start = System.nanoTime();
+            for (SseSession session : sessions) {
+                schedule(Transport.MESSAGES, session);
+            }
+            for (int i = 0; i < options.httpUsers; i++) {
+                schedule(i % 2 == 0 ? Transport.API : Transport.MCP, null);
+            }
+            Thread.sleep(TimeUnit.SECONDS.toMillis(options.durationSeconds));
+            stopping = true;
+            double seconds = (System.nanoTime() - start) / 1e9;
+            long ticks = stand.getTicks();
+            long overruns = stand.getOverrunTicks();
+            Histogram tickTimes = stand.getTickDurations();
+
+            // Let outstanding requests finish so they are counted, not cut off
+            long drainUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(options.timeoutMillis);
+            while (inFlight.get() > 0 && System.nanoTime() < drainUntil) {
+                Thread.sleep(50);
+            }
+
+            int closed = 0;
+            for (SseSession session : sessions) {
+                if (session.isClosed()) closed++;
+            }
+
+            System.out.println();
+            System.out.println(results.report(seconds));
+            System.out.printf(Locale.ROOT, "Sessions: %d connected, %d closed during the run%n", sessions.size(), closed);
+            System.out.printf(Locale.ROOT, "Ticks: %d in %.1f s (%.2f TPS), %d over 50 ms (%.1f%%)%n", ticks, seconds,
+                    ticks / seconds, overruns, ticks == 0 ? 0 : 100.0 * overruns / ticks);
+            System.out.printf(Locale.ROOT, "Tick time: p50 %.2f ms, p99 %.2f ms, max %.2f ms (world work %.1f ms)%n",
+                    tickTimes.quantile(0.5) / 1e6, tickTimes.quantile(0.99) / 1e6, tickTimes.max() / 1e6,
+                    options.worldWorkMillis);
+            System.out.printf(Locale.ROOT, "Heap per SSE session: %.1f KB (client and server, %d sessions)%n",
+                    sessions.isEmpty() ? 0 : (heapAfter - heapBefore) / 1024.0 / sessions.size(), sessions.size());
+            System.out.println();
+            System.out.println("Server metrics:");
+            System.out.println(serverMetrics());
+
+            for (SseSession session : sessions) {
+                session.close();
+            }
+        } finally {
+            driver.shutdownNow();
+            server.stop();
+            stand.stop();
+            deleteData();
+        }
+    }
+
+    private List<SseSession> connect(int count) {
+        List<SseSession> sessions = new ArrayList<>(count);
+        List<CompletableFuture<URI>> endpoints = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            SseSession session = new SseSession(http, base, token);
+            sessions.add(session);
+            endpoints.add(session.open());
+        }
+        List<SseSession> connected = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            try {
+                endpoints.get(i).get(options.timeoutMillis, TimeUnit.MILLISECONDS);
+                connected.add(sessions.get(i));
+            } catch (Exception e) {
+                sessions.get(i).close();
+            }
+        }
+        System.out.println("Connected " + connected.size() + " of " + count + " SSE sessions");
+
+        // Handshake like a real client
+        List<CompletableFuture<Boolean>> initialized = new ArrayList<>();
+        for (SseSession session : connected) {
+            long id = ids.incrementAndGet();
+            initialized.add(session.call(id, "{\"jsonrpc\":\"2.0\",\"id\":" + id + ",\"method\":\"initialize\",\"params\":"
+                    + "{\"protocolVersion\":\"2024-11-05\",\"capabilities\":{},\"clientInfo\":{\"name\":\"loadtest\"}}}",
+                    options.timeoutMillis).thenApply(ok -> {
+                        session.notify("{\"jsonrpc\":\"2.0\",\"method\":\"notifications/initialized\"}");
+                        return ok;
+                    }));
+        }
+        CompletableFuture.allOf(initialized.toArray(new CompletableFuture[0])).exceptionally(e -> null).join();
+        return connected;
+    }
+
+    // Closed loop per user: send, wait for the response, think, repeat
+    private void schedule(Transport transport, SseSession session) {
+        long delay = options.thinkMillis <= 0 ? 0 : ThreadLocalRandom.current().nextLong(options.thinkMillis / 2, options.thinkMillis * 3 / 2 + 1);
+        driver.schedule(() -> send(transport, session), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void send(Transport transport, SseSession session) {
+        if (stopping) return;
+        Operation operation = weighted.get(ThreadLocalRandom.current().nextInt(weighted.size()));
+        long id = ids.incrementAndGet();
+        String body = operation.body(id);
+        long start = System.nanoTime();
+        inFlight.incrementAndGet();
+        CompletableFuture<Boolean> call = transport == Transport.MESSAGES
+                ? session.call(id, body, options.timeoutMillis)
+                : post(transport, body);
+        call.whenComplete((ok, error) -> {
+            long elapsed = System.nanoTime() - start;
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause instanceof TimeoutException) {
+                results.timeout(transport, operation);
+            } else if (cause != null || !ok) {
+                results.error(transport, operation, elapsed);
+            } else {
+                results.success(transport, operation, elapsed);
+            }
+            inFlight.decrementAndGet();
+            if (!stopping && (session == null || !session.isClosed())) {
+                schedule(transport, session);
+            }
+        });
+    }
+
+    private CompletableFuture<Boolean> post(Transport transport, String body) {
+        HttpRequest request = HttpRequest.newBuilder(base.resolve(transport == Transport.API ? "/api" : "/mcp"))
+                .header("Authorization", "Bearer " + token)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return http.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> response.statusCode() == 200 && !isError(response.body()))
+                .orTimeout(options.timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private boolean isError(String body) {
+        try {
+            return mapper.readTree(body).has("error");
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    private String serverMetrics() {
+        String body = "{\"jsonrpc\":\"2.0\",\"id\":0,\"method\":\"tools/call\",\"params\":{\"name\":\"get_metrics\",\"arguments\":{}}}";
+        try {
+            HttpResponse<String> response = http.send(HttpRequest.newBuilder(base.resolve("/api"))
+                    .header("Authorization", "Bearer " + token)
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            JsonNode text = mapper.readTree(response.body()).at("/result/content/0/text");
+            return text.isMissingNode() ? response.body() : text.asText();
+        } catch (Exception e) {
+            return "unavailable: " + e.getMessage();
+        }
+    }
+
+    private static void prepareData() throws IOException {
+        deleteData();
+        Files.createDirectories(DATA);
+        StringBuilder log = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) {
+            log.append("[12:00:00] [Server thread/INFO]: load test line ").append(i).append('\n');
+        }
+        Files.writeString(DATA.resolve("sample.log"), log, StandardCharsets.UTF_8);
+        byte[] binary = new byte[256 * 1024];
+        new Random(7).nextBytes(binary);
+        Files.write(DATA.resolve("sample.bin"), binary);
+    }
+
+    private static void deleteData() throws IOException {
+        if (!Files.exists(DATA)) return;
+        try (Stream<Path> files = Files.walk(DATA)) {
+            for (Path path : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.cursor.mcp.loadtest;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Requests the load generator can send. Tool calls use paths under
+ * {@link LoadTest#DATA} so they never touch a real server directory.
+ */
+enum Operation {
+    PING("ping", null, null),
+    TOOLS_LIST("tools/list", null, null),
+    MCP_STATUS("tools/call", "mcp_status", "{}"),
+    LIST_PLUGINS("tools/call", "list_plugins", "{}"),
+    EXECUTE_COMMAND("tools/call", "execute_command", "{\"command\":\"say load test\"}"),
+    EXECUTE_COMMANDS("tools/call", "execute_commands",
+            "{\"commands\":[\"say 1\",\"say 2\",\"say 3\",\"say 4\",\"say 5\"]}"),
+    READ_FILE("tools/call", "read_file",
+            "{\"path\":\"loadtest-data/sample.log\",\"startLine\":1000,\"lineCount\":200}"),
+    READ_FILE_BASE64("tools/call", "read_file_base64", "{\"path\":\"loadtest-data/sample.bin\"}");
+
+    private final String method;
+    private final String tool;
+    private final String arguments;
+
+    Operation(String method, String tool, String arguments) {
+        this.method = method;
+        this.tool = tool;
+        this.arguments = arguments;
+    }
+
+    String body(long id) {
+        StringBuilder body = new StringBuilder(128).append("{\"jsonrpc\":\"2.0\",\"id\":").append(id)
+                .append(",\"method\":\"").append(method).append('"');
+        if (tool != null) {
+            body.append(",\"params\":{\"name\":\"").append(tool).append("\",\"arguments\":").append(arguments).append('}');
+        }
+        return body.append('}').toString();
+    }
+
+    String label() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    // "ping:3,execute_command:1" -> weights
+    static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String part : mix.split(",")) {
+            String[] entry = part.trim().split(":");
+            Operation operation = Operation.valueOf(entry[0].trim().toUpperCase(Locale.ROOT));
+            int weight = entry.length > 1 ? Integer.parseInt(entry[1].trim()) : 1;
+            if (weight < 0) {
+                throw new IllegalArgumentException("Negative weight for " + entry[0]);
+            }
+            if (weight > 0) {
+                weights.put(operation, weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("Tool mix is empty: " + mix);
+        }
+        return weights;
+    }
+}
@@ -0,0 +1,59 @@
+package com.cursor.mcp.loadtest;
+
+import com.cursor.mcp.metrics.Histogram;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Client-side latency per transport and operation, from sending a request to
+ * receiving its response (over SSE for /messages).
+ */
+final class Results {
+    private final Map<String, Series> series = new ConcurrentHashMap<>();
+
+    void success(Transport transport, Operation operation, long nanos) {
+        seriesFor(transport, operation).latency.record(nanos);
+    }
+
+    // A JSON-RPC error or a failed HTTP call
+    void error(Transport transport, Operation operation, long nanos) {
+        Series s = seriesFor(transport, operation);
+        s.latency.record(nanos);
+        s.errors.increment();
+    }
+
+    void timeout(Transport transport, Operation operation) {
+        seriesFor(transport, operation).timeouts.increment();
+    }
+
+    private Series seriesFor(Transport transport, Operation operation) {
+        String key = transport.name().toLowerCase(Locale.ROOT) + " " + operation.label();
+        return series.computeIfAbsent(key, k -> new Series());
+    }
+
+    String report(double seconds) {
+        StringBuilder sb = new StringBuilder(String.format(Locale.ROOT, "%-28s %9s %8s %7s %8s %9s %9s %9s %9s%n",
+                "transport operation", "requests", "req/s", "errors", "timeouts", "p50 ms", "p90 ms", "p99 ms", "max ms"));
+        for (Map.Entry<String, Series> entry : new TreeMap<>(series).entrySet()) {
+            Series s = entry.getValue();
+            sb.append(row(entry.getKey(), s.latency, s.errors.sum(), s.timeouts.sum(), seconds));
+        }
+        return sb.toString();
+    }
+
+    private static String row(String name, Histogram h, long errors, long timeouts, double seconds) {
+        return String.format(Locale.ROOT, "%-28s %9d %8.1f %7d %8d %9.2f %9.2f %9.2f %9.2f%n", name, h.count(),
+                h.count() / seconds, errors, timeouts, h.quantile(0.5) / 1e6, h.quantile(0.9) / 1e6,
+                h.quantile(0.99) / 1e6, h.max() / 1e6);
+    }
+
+    private static final class Series {
+        final Histogram latency = Histogram.latency();
+        final LongAdder errors = new LongAdder();
+        final LongAdder timeouts = new LongAdder();
+    }
+}
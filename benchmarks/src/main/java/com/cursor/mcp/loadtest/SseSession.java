@@ -0,0 +1,150 @@
+package com.cursor.mcp.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One MCP client on the SSE transport: a long-lived GET /sse whose events are
+ * parsed line by line, and POST /messages for requests. Responses are matched
+ * to requests by JSON-RPC id.
+ */
+final class SseSession implements Flow.Subscriber<String> {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final HttpClient http;
+    private final URI base;
+    private final String token;
+    private final CompletableFuture<URI> endpoint = new CompletableFuture<>();
+    private final Map<Long, CompletableFuture<Boolean>> pending = new ConcurrentHashMap<>();
+    private final StringBuilder data = new StringBuilder();
+    private String event = "message";
+    private volatile Flow.Subscription subscription;
+    private volatile boolean closed;
+
+    SseSession(HttpClient http, URI base, String token) {
+        this.http = http;
+        this.base = base;
+        this.token = token;
+    }
+
+    // Completes once the server has sent the endpoint event
+    CompletableFuture<URI> open() {
+        HttpRequest request = HttpRequest.newBuilder(base.resolve("/sse?token=" + token))
+                .header("Accept", "text/event-stream")
+                .GET()
+                .build();
+        http.sendAsync(request, HttpResponse.BodyHandlers.fromLineSubscriber(this))
+                .whenComplete((response, error) -> {
+                    if (error != null) endpoint.completeExceptionally(error);
+                });
+        return endpoint;
+    }
+
+    // Completes with false for a JSON-RPC error response, exceptionally on
+    // timeout or transport failure.
+    CompletableFuture<Boolean> call(long id, String body, long timeoutMillis) {
+        CompletableFuture<Boolean> response = new CompletableFuture<>();
+        if (closed) {
+            response.completeExceptionally(new IllegalStateException("SSE stream closed"));
+            return response;
+        }
+        pending.put(id, response);
+        HttpRequest request = HttpRequest.newBuilder(endpoint.join())
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        http.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((accepted, error) -> {
+            if (error != null) {
+                response.completeExceptionally(error);
+            } else if (accepted.statusCode() != 202) {
+                response.completeExceptionally(new IllegalStateException("POST /messages returned " + accepted.statusCode()));
+            }
+        });
+        return response.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+                .whenComplete((ok, error) -> pending.remove(id));
+    }
+
+    // Sends without waiting for a response (notifications)
+    void notify(String body) {
+        HttpRequest request = HttpRequest.newBuilder(endpoint.join())
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        http.sendAsync(request, HttpResponse.BodyHandlers.discarding());
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    void close() {
+        Flow.Subscription s = subscription;
+        if (s != null) s.cancel();
+        closed = true;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(String line) {
+        if (line.isEmpty()) {
+            dispatch(event, data.toString());
+            event = "message";
+            data.setLength(0);
+        } else if (line.startsWith("event:")) {
+            event = line.substring(6).trim();
+        } else if (line.startsWith("data:")) {
+            if (data.length() > 0) data.append('\n');
+            data.append(line.startsWith("data: ") ? line.substring(6) : line.substring(5));
+        }
+        // Comments (keep-alives) and other fields are ignored
+    }
+
+    private void dispatch(String event, String payload) {
+        if (payload.isEmpty()) return;
+        if (event.equals("endpoint")) {
+            endpoint.complete(base.resolve(payload));
+            return;
+        }
+        try {
+            JsonNode message = MAPPER.readTree(payload);
+            JsonNode id = message.get("id");
+            if (id == null || !id.canConvertToLong()) return; // notification
+            CompletableFuture<Boolean> response = pending.get(id.asLong());
+            if (response != null) {
+                response.complete(!message.has("error"));
+            }
+        } catch (Exception e) {
+            // Not JSON: ignore, the request will time out and be counted
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        closed = true;
+        endpoint.completeExceptionally(throwable);
+        pending.values().forEach(response -> response.completeExceptionally(throwable));
+    }
+
+    @Override
+    public void onComplete() {
+        closed = true;
+        IllegalStateException error = new IllegalStateException("SSE stream closed by server");
+        endpoint.completeExceptionally(error);
+        pending.values().forEach(response -> response.completeExceptionally(error));
+    }
+}
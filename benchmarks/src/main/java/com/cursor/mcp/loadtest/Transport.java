@@ -0,0 +1,9 @@
+package com.cursor.mcp.loadtest;
+
+enum Transport {
+    // POST /messages, response delivered on the session's SSE stream
+    MESSAGES,
+    // POST /api and POST /mcp, response in the HTTP body
+    API,
+    MCP
+}
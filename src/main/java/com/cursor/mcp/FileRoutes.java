@@ -0,0 +1,208 @@
+package com.cursor.mcp;
+
+import com.cursor.mcp.files.ChunkedUploads;
+import com.cursor.mcp.files.FileUrlSigner;
+import com.cursor.mcp.files.FileWatcher;
+import io.javalin.http.Context;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.HexFormat;
+import java.util.UUID;
+
+/**
+ * Raw file transfer under the server root: GET/HEAD with Range and
+ * If-None-Match, PUT streaming the body to a temp file that is renamed into
+ * place. Requests authenticate with the server token or a signed URL from
+ * {@link FileUrlSigner}.
+ */
+final class FileRoutes {
+    private static final String SHA256_HEADER = "X-Content-SHA256";
+
+    private final Path root;
+    private final FileUrlSigner signer;
+    private final FileWatcher watcher;
+
+    FileRoutes(Path root, FileUrlSigner signer, FileWatcher watcher) {
+        this.root = root;
+        this.signer = signer;
+        this.watcher = watcher;
+    }
+
+    void get(Context ctx, boolean head) throws IOException {
+        String relative = ctx.pathParam("path");
+        if (!authorized(ctx, "GET", relative)) return;
+        Path path = resolve(ctx, relative);
+        if (path == null) return;
+        if (!Files.isRegularFile(path)) {
+            ctx.status(404).result("File not found: " + relative);
+            return;
+        }
+
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        long size = attributes.size();
+        String etag = "\"" + Long.toHexString(size) + "-" + Long.toHexString(attributes.lastModifiedTime().toMillis()) + "\"";
+        ctx.header("ETag", etag);
+        ctx.header("Last-Modified", DateTimeFormatter.RFC_1123_DATE_TIME.format(
+                attributes.lastModifiedTime().toInstant().atOffset(ZoneOffset.UTC)));
+        ctx.header("Accept-Ranges", "bytes");
+        ctx.header("Cache-Control", "private, no-cache");
+        if (matches(ctx.header("If-None-Match"), etag)) {
+            ctx.status(304);
+            return;
+        }
+
+        long start = 0;
+        long end = size; // exclusive
+        String range = ctx.header("Range");
+        String ifRange = ctx.header("If-Range");
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            long[] bounds = parseRange(range, size);
+            if (bounds != null && bounds.length == 0) {
+                ctx.header("Content-Range", "bytes */" + size);
+                ctx.status(416);
+                return;
+            }
+            if (bounds != null) {
+                start = bounds[0];
+                end = bounds[1];
+                ctx.status(206);
+                ctx.header("Content-Range", "bytes " + start + "-" + (end - 1) + "/" + size);
+            }
+        }
+
+        String type = Files.probeContentType(path);
+        ctx.contentType(type != null ? type : "application/octet-stream");
+        ctx.res().setContentLengthLong(end - start);
+        if (head) return;
+
+        // Written to the servlet stream directly: Javalin's result stream
+        // would buffer or compress it
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(ctx.res().getOutputStream());
+            long position = start;
+            while (position < end) {
+                long sent = file.transferTo(position, end - position, out);
+                if (sent <= 0) break; // file shrank underneath us
+                position += sent;
+            }
+        }
+    }
+
+    void put(Context ctx) throws IOException {
+        String relative = ctx.pathParam("path");
+        if (!authorized(ctx, "PUT", relative)) return;
+        Path path = resolve(ctx, relative);
+        if (path == null) return;
+        if (Files.isDirectory(path)) {
+            ctx.status(409).result("Is a directory: " + relative);
+            return;
+        }
+
+        boolean existed = Files.exists(path);
+        Files.createDirectories(path.getParent());
+        Path temp = path.resolveSibling("." + path.getFileName() + "." + UUID.randomUUID() + ".part");
+        MessageDigest digest = sha256();
+        long size = 0;
+        try {
+            try (InputStream body = new DigestInputStream(ctx.bodyInputStream(), digest);
+                 ReadableByteChannel in = Channels.newChannel(body);
+                 FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                long received;
+                while ((received = out.transferFrom(in, size, 1 << 20)) > 0) {
+                    size += received;
+                }
+            }
+            String actual = HexFormat.of().formatHex(digest.digest());
+            String expected = ctx.header(SHA256_HEADER);
+            if (expected != null && !expected.trim().equalsIgnoreCase(actual)) {
+                ctx.status(400).result("Checksum mismatch: expected " + expected + ", got " + actual);
+                return;
+            }
+            ChunkedUploads.moveIntoPlace(temp, path);
+            watcher.notifyChanged(path);
+            ctx.status(existed ? 200 : 201);
+            ctx.contentType("application/json");
+            ctx.result("{\"size\":" + size + ",\"sha256\":\"" + actual + "\"}");
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // A signed URL only grants the method and path it was made for
+    private boolean authorized(Context ctx, String method, String relative) {
+        if (ctx.queryParam("sig") == null) {
+            return true; // token already checked by the before handler
+        }
+        if (signer.verify(method, relative, ctx.queryParam("expires"), ctx.queryParam("sig"))) {
+            return true;
+        }
+        ctx.status(403).result("Invalid or expired signature");
+        return false;
+    }
+
+    private Path resolve(Context ctx, String relative) {
+        Path path = root.resolve(relative).normalize();
+        if (!path.startsWith(root) || path.equals(root)) {
+            ctx.status(403).result("Access denied: Path is outside server root.");
+            return null;
+        }
+        return path;
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) return false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) tag = tag.substring(2);
+            if (tag.equals("*") || tag.equals(etag)) return true;
+        }
+        return false;
+    }
+
+    // Single byte range as {start, endExclusive}; null to send the whole file
+    // (no or unsupported range, e.g. multiple ranges), empty if unsatisfiable
+    static long[] parseRange(String header, long size) {
+        if (!header.startsWith("bytes=") || header.indexOf(',') >= 0) return null;
+        String spec = header.substring(6).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) return null;
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            if (first.isEmpty()) {
+                // Suffix range: the last N bytes
+                long count = Long.parseLong(last);
+                if (count <= 0 || size == 0) return new long[0];
+                return new long[]{Math.max(0, size - count), size};
+            }
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? size - 1 : Math.min(Long.parseLong(last), size - 1);
+            if (start >= size || end < start) return new long[0];
+            return new long[]{start, end + 1};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
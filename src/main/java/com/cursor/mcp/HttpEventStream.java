@@ -0,0 +1,81 @@
+package com.cursor.mcp;
+
+import io.javalin.http.Context;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * An SSE stream written straight to a Javalin response, used for the streams
+ * of the Streamable HTTP transport (POST responses and GET /mcp). The request
+ * stays open until {@link #done()} completes.
+ */
+final class HttpEventStream implements McpSession.Sink {
+    private static final byte[] NEWLINE = {'\n'};
+
+    private final OutputStream out;
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+    private volatile boolean terminated;
+
+    HttpEventStream(Context ctx) throws IOException {
+        ctx.status(200);
+        ctx.contentType("text/event-stream; charset=utf-8");
+        ctx.header("Cache-Control", "no-cache");
+        ctx.header("X-Accel-Buffering", "no");
+        // The raw servlet stream: Javalin's own output stream may compress,
+        // which would hold events back until the buffer fills
+        this.out = ctx.res().getOutputStream();
+        ctx.res().flushBuffer();
+    }
+
+    CompletableFuture<Void> done() {
+        return done;
+    }
+
+    @Override
+    public void sendEvent(String event, String id, Object data) {
+        StringBuilder head = new StringBuilder(64);
+        if (id != null) head.append("id: ").append(id).append('\n');
+        head.append("event: ").append(event).append('\n');
+        try {
+            out.write(head.toString().getBytes(StandardCharsets.UTF_8));
+            if (data instanceof byte[]) {
+                // Compact JSON never contains a raw line break
+                out.write("data: ".getBytes(StandardCharsets.UTF_8));
+                out.write((byte[]) data);
+                out.write(NEWLINE);
+            } else {
+                for (String line : String.valueOf(data).split("\n", -1)) {
+                    out.write(("data: " + line + "\n").getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            out.write(NEWLINE);
+            out.flush();
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    @Override
+    public void sendComment(String comment) {
+        try {
+            out.write((": " + comment + "\n\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    @Override
+    public boolean terminated() {
+        return terminated;
+    }
+
+    @Override
+    public void close() {
+        terminated = true;
+        done.complete(null);
+    }
+}
@@ -1,10 +1,28 @@
 package com.cursor.mcp;
 
+import com.cursor.mcp.tools.ToolRegistry;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.server.PluginDisableEvent;
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.bukkit.plugin.ServicePriority;
 import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.plugin.java.JavaPluginLoader;
 
-public class McpPlugin extends JavaPlugin {
+import java.io.File;
+
+public class McpPlugin extends JavaPlugin implements Listener {
     private McpServer server;
 
+    public McpPlugin() {
+    }
+
+    // Lets the benchmark and load-test harnesses create the plugin outside a
+    // real server (Bukkit refuses this constructor for plugin-loaded classes)
+    protected McpPlugin(JavaPluginLoader loader, PluginDescriptionFile description, File dataFolder, File file) {
+        super(loader, description, dataFolder, file);
+    }
+
     @Override
     public void onEnable() {
         saveDefaultConfig();
@@ -15,16 +33,27 @@ public class McpPlugin extends JavaPlugin {
         // We pass 'this' to allow tools to access the plugin instance for scheduling tasks
         server = new McpServer(this, port, token);
         server.start();
+
+        // Other plugins can add MCP tools through this service
+        getServer().getServicesManager().register(ToolRegistry.class, server.getToolRegistry(), this, ServicePriority.Normal);
+        getServer().getPluginManager().registerEvents(this, this);
         
         getLogger().info("MCP Server started on port " + port);
     }
 
     @Override
     public void onDisable() {
+        getServer().getServicesManager().unregisterAll(this);
         if (server != null) {
             server.stop();
         }
     }
-}
-
 
+    @EventHandler
+    public void onPluginDisable(PluginDisableEvent event) {
+        // Drop tools contributed by plugins that are going away
+        if (server != null && event.getPlugin() != this) {
+            server.getToolRegistry().unregisterAll(event.getPlugin().getName());
+        }
+    }
+}
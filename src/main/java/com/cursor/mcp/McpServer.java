@@ -1,30 +1,131 @@
 package com.cursor.mcp;
 
+import com.cursor.mcp.files.FileUrlSigner;
+import com.cursor.mcp.files.FileWatcher;
+import com.cursor.mcp.logging.LogStreamer;
+import com.cursor.mcp.metrics.McpMetrics;
 import com.cursor.mcp.protocol.McpProtocol;
-import io.javalin.Javalin;
-import io.javalin.http.sse.SseClient;
+import com.cursor.mcp.protocol.McpRequest;
+import com.cursor.mcp.protocol.McpResponse;
+import com.cursor.mcp.scheduler.MainThreadScheduler;
+import com.cursor.mcp.tools.ToolRegistry;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import io.javalin.Javalin;
+import io.javalin.http.Context;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.logging.Level;
 
 public class McpServer {
+    private static final String TOOLS_LIST_CHANGED = "{\"jsonrpc\":\"2.0\",\"method\":\"notifications/tools/list_changed\"}";
+    private static final String SESSION_HEADER = "Mcp-Session-Id";
+
     private final McpPlugin plugin;
     private final int port;
     private final String token;
     private Javalin app;
     private final McpProtocol protocol;
-    private final Map<String, SseClient> sessions = new ConcurrentHashMap<>();
-    private final ObjectMapper mapper = new ObjectMapper();
+    private final Map<String, McpSession> sessions = new ConcurrentHashMap<>();
+    private final Map<String, StreamableSession> streamableSessions = new ConcurrentHashMap<>();
+    private final LogStreamer logStreamer;
+    private final MainThreadScheduler scheduler;
+    private final ExecutorService workers;
+    private final ToolRegistry toolRegistry;
+    private final McpMetrics metrics = new McpMetrics();
+    private final FileUrlSigner fileUrls = new FileUrlSigner();
+    private final FileRoutes fileRoutes;
+    private final FileWatcher fileWatcher;
+    private final ExecutorService sseWriters;
+    private final ScheduledExecutorService sseMonitor;
+    private final int maxSessions;
+    private final int maxQueuedMessages;
+    private final McpSession.OverflowPolicy overflowPolicy;
+    private final long heartbeatMillis;
+    private final long stallTimeoutNanos;
+    private final long idleTimeoutNanos;
+    private final LongAdder droppedMessages = new LongAdder();
+    private final LongAdder evictedSessions = new LongAdder();
+    private final LongAdder rejectedSessions = new LongAdder();
+    private final int maxStreamableSessions;
+    private final long streamableTimeoutNanos;
+    private final int replayEvents;
+    private final long replayBytes;
 
     public McpServer(McpPlugin plugin, int port, String token) {
         this.plugin = plugin;
         this.port = port;
         this.token = token;
-        this.protocol = new McpProtocol(plugin);
+        this.logStreamer = new LogStreamer(this::channel,
+                plugin.getConfig().getInt("logging.stream.buffer-size", 4096),
+                plugin.getConfig().getLong("logging.stream.flush-interval-ms", 250),
+                plugin.getConfig().getInt("logging.stream.max-batch", 200));
+        this.scheduler = new MainThreadScheduler(plugin, metrics,
+                plugin.getConfig().getLong("scheduler.tick-budget-nanos", 5_000_000L),
+                plugin.getConfig().getLong("scheduler.default-deadline-ms", 10_000L),
+                plugin.getConfig().getInt("scheduler.max-queue-size", 1000));
+        this.workers = createPool(plugin.getConfig().getBoolean("server.virtual-threads", false),
+                plugin.getConfig().getInt("server.worker-threads", 4), "MCP-Worker-");
+        this.maxSessions = plugin.getConfig().getInt("sse.max-sessions", 100);
+        this.maxQueuedMessages = plugin.getConfig().getInt("sse.max-queued-messages", 1000);
+        this.overflowPolicy = McpSession.OverflowPolicy.parse(plugin.getConfig().getString("sse.overflow-policy", "drop-oldest"));
+        this.heartbeatMillis = Math.max(1000, plugin.getConfig().getLong("sse.heartbeat-interval-ms", 15_000L));
+        this.stallTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(plugin.getConfig().getLong("sse.stall-timeout-ms", 30_000L));
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(plugin.getConfig().getLong("sse.idle-timeout-ms", 1_800_000L));
+        this.sseWriters = createPool(plugin.getConfig().getBoolean("server.virtual-threads", false),
+                plugin.getConfig().getInt("sse.writer-threads", 4), "MCP-SSE-Writer-");
+        this.sseMonitor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "MCP-SSE-Monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.maxStreamableSessions = plugin.getConfig().getInt("streamable-http.max-sessions", 100);
+        this.streamableTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(
+                plugin.getConfig().getLong("streamable-http.session-timeout-ms", 1_800_000L));
+        this.replayEvents = plugin.getConfig().getInt("streamable-http.replay-events", 1000);
+        this.replayBytes = plugin.getConfig().getLong("streamable-http.replay-bytes", 4L * 1024 * 1024);
+        this.toolRegistry = new ToolRegistry();
+        Path serverRoot = new File(".").toPath().toAbsolutePath().normalize();
+        this.fileWatcher = new FileWatcher(serverRoot, plugin.getLogger());
+        this.protocol = new McpProtocol(plugin, toolRegistry, logStreamer, scheduler, workers, metrics, fileUrls, fileWatcher);
+        this.fileRoutes = new FileRoutes(serverRoot, fileUrls, fileWatcher);
+        metrics.addGauge("mcp_sse_sessions", "Active SSE sessions", sessions::size);
+        metrics.addGauge("mcp_sse_queued_messages", "Messages waiting in SSE session queues", this::queuedMessages);
+        metrics.addCounter("mcp_sse_dropped_messages_total", "SSE messages dropped because a session queue was full",
+                droppedMessages::sum);
+        metrics.addCounter("mcp_sse_evicted_sessions_total", "SSE sessions closed for being stalled or idle",
+                evictedSessions::sum);
+        metrics.addCounter("mcp_sse_rejected_sessions_total", "SSE connections refused at the session limit",
+                rejectedSessions::sum);
+        metrics.addGauge("mcp_streamable_sessions", "Active Streamable HTTP sessions", streamableSessions::size);
+        metrics.addGauge("mcp_streamable_buffered_events", "Events held for replay by Streamable HTTP sessions",
+                this::bufferedEvents);
+        metrics.addGauge("mcp_main_thread_queue_depth", "Main-thread queue depth", scheduler::getQueueDepth);
+        metrics.addGauge("mcp_log_subscribers", "Log stream subscribers", logStreamer::getSubscriberCount);
+        // Only fires when the serialized tool list actually changes
+        toolRegistry.addListener(() -> {
+            for (McpSession session : sessions.values()) {
+                session.send(TOOLS_LIST_CHANGED);
+            }
+            for (StreamableSession session : streamableSessions.values()) {
+                session.notify(TOOLS_LIST_CHANGED);
+            }
+        });
     }
 
     public void start() {
@@ -34,9 +135,12 @@ public class McpServer {
         try {
             app = Javalin.create(config -> {
                 config.showJavalinBanner = false;
+                // Only takes effect on Java 21+, Javalin falls back to platform threads otherwise
+                config.useVirtualThreads = plugin.getConfig().getBoolean("server.virtual-threads", false);
                 config.bundledPlugins.enableCors(cors -> {
                     cors.addRule(it -> {
                         it.anyHost();
+                        it.exposeHeader(SESSION_HEADER);
                     });
                 });
             });
@@ -47,21 +151,41 @@ public class McpServer {
                 String sessionId = ctx.queryParam("sessionId");
                 String validToken = "Bearer " + token;
                 boolean hasSession = sessionId != null && sessions.containsKey(sessionId);
+                // Signed file URLs are verified by the file routes themselves
+                boolean signedFileUrl = ctx.path().startsWith(FileUrlSigner.PREFIX) && ctx.queryParam("sig") != null;
                 
                 boolean authorized = (auth != null && auth.equals(validToken)) || 
                                      (queryToken != null && queryToken.equals(token)) ||
-                                     (ctx.path().startsWith("/messages") && hasSession);
+                                     (ctx.path().startsWith("/messages") && hasSession) ||
+                                     signedFileUrl;
 
                 if (!authorized) {
                      ctx.status(401).result("Unauthorized");
                      ctx.skipRemainingHandlers();
+                } else if (ctx.path().equals("/sse") && sessions.size() >= maxSessions) {
+                    rejectedSessions.increment();
+                    ctx.status(503).result("Too many SSE sessions");
+                    ctx.skipRemainingHandlers();
                 }
             });
 
             app.sse("/sse", client -> {
                 String sessionId = UUID.randomUUID().toString();
-                sessions.put(sessionId, client);
+                McpSession session = new McpSession(sessionId, client, sseWriters, maxQueuedMessages,
+                        overflowPolicy, droppedMessages);
                 client.keepAlive();
+                client.onClose(() -> {
+                    sessions.remove(sessionId);
+                    logStreamer.unsubscribe(sessionId);
+                    plugin.getLogger().info("SSE Client disconnected. Session ID: " + sessionId);
+                });
+                // Connections racing past the check in before() are turned away here
+                if (sessions.size() >= maxSessions) {
+                    rejectedSessions.increment();
+                    session.close();
+                    return;
+                }
+                sessions.put(sessionId, session);
                 
                 plugin.getLogger().info("New SSE Client connected. Session ID: " + sessionId);
                 
@@ -70,100 +194,364 @@ public class McpServer {
                 // does not reuse the original Authorization header.
                 String endpoint = "/messages?sessionId=" + sessionId + "&token=" + 
                                   URLEncoder.encode(token, StandardCharsets.UTF_8);
-                client.sendEvent("endpoint", endpoint);
-                
-                client.onClose(() -> {
-                    sessions.remove(sessionId);
-                    plugin.getLogger().info("SSE Client disconnected. Session ID: " + sessionId);
-                });
+                session.sendEvent("endpoint", endpoint);
             });
 
             app.post("/messages", ctx -> {
                 String sessionId = ctx.queryParam("sessionId");
-                if (sessionId == null || !sessions.containsKey(sessionId)) {
+                McpSession caller = sessionId == null ? null : sessions.get(sessionId);
+                if (caller == null) {
                     ctx.status(400).result("Invalid or missing sessionId");
                     return;
                 }
+                caller.touch();
 
-                String body = ctx.body();
-                String method = null;
+                McpRequest request = null;
+                CompletableFuture<McpResponse> pending;
                 try {
-                    JsonNode request = mapper.readTree(body);
-                    if (request.hasNonNull("method")) {
-                        method = request.get("method").asText();
-                    }
-                } catch (Exception e) {
-                    plugin.getLogger().warning("Failed to parse MCP request method: " + e.getMessage());
+                    request = McpRequest.parse(ctx.bodyInputStream());
+                    metrics.recordRequestBytes(request.getSize());
+                    pending = protocol.handleRequest(request, sessionId, caller::send);
+                } catch (IOException e) {
+                    pending = CompletableFuture.completedFuture(McpProtocol.parseError(e));
                 }
 
-                // Process request
-                String response = protocol.handleRequest(body);
-                
-                if (response != null) {
-                    SseClient client = sessions.get(sessionId);
-                    if (client != null) {
+                // Process request. The response is delivered over SSE whenever it
+                // is ready; the POST itself is acknowledged right away.
+                McpRequest parsed = request;
+                boolean initialize = request != null && request.hasMethod("initialize");
+                pending.thenAccept(response -> {
+                    McpSession session = sessions.get(sessionId);
+                    if (session == null) {
+                        return;
+                    }
+                    if (response != null) {
                         // Send JSON-RPC response via SSE
-                        client.sendEvent("message", response);
+                        byte[] json = response.toBytes();
+                        metrics.recordResponseBytes(json.length);
+                        session.send(json);
                     }
-                }
-                
-                // Let clients know they should fetch the tool list. Some MCP clients
-                // only request tools after receiving this notification when
-                // capabilities.tools.listChanged is true.
-                if ("initialize".equals(method)) {
-                    SseClient client = sessions.get(sessionId);
-                    if (client != null) {
-                        client.sendEvent("message", "{\"jsonrpc\":\"2.0\",\"method\":\"notifications/tools/list_changed\"}");
+
+                    // Let clients know they should fetch the tool list. Some MCP clients
+                    // only request tools after receiving this notification when
+                    // capabilities.tools.listChanged is true.
+                    if (initialize) {
+                        session.send(TOOLS_LIST_CHANGED);
                     }
-                }
+                }).exceptionally(error -> {
+                    // Handling or serializing failed: log it and still answer, or the client waits forever
+                    McpResponse reply = internalError(parsed, error, "SSE session " + sessionId);
+                    McpSession session = sessions.get(sessionId);
+                    if (session != null && reply != null) {
+                        session.send(reply.toBytes());
+                    }
+                    return null;
+                });
                 
                 ctx.status(202).result("Accepted");
             });
 
             // Simple synchronous API endpoint - returns response directly in HTTP response body
             // Much faster for scripting/automation as it doesn't require SSE connection management
-            app.post("/api", ctx -> {
-                String body = ctx.body();
-                String response = protocol.handleRequest(body);
-                
-                if (response != null) {
-                    ctx.contentType("application/json");
-                    ctx.result(response);
-                } else {
-                    ctx.status(204); // No content for notifications
-                }
+            app.post("/api", ctx -> respond(ctx, () -> ctx.status(204))); // No content for notifications
+
+            // Streamable HTTP transport (newer MCP standard): POST for messages,
+            // GET for the server-to-client stream, DELETE to end the session
+            app.post("/mcp", this::handleMcpPost);
+            app.delete("/mcp", ctx -> {
+                StreamableSession session = findStreamableSession(ctx);
+                if (session == null) return;
+                closeStreamableSession(session);
+                ctx.status(204);
             });
 
-            // Streamable HTTP transport endpoint (newer MCP standard)
-            // This handles both GET (for SSE stream) and POST (for messages) on the same endpoint
-            app.post("/mcp", ctx -> {
-                String body = ctx.body();
-                String response = protocol.handleRequest(body);
-                
-                if (response != null) {
-                    ctx.contentType("application/json");
-                    ctx.result(response);
-                } else {
-                    ctx.status(202).result("Accepted");
-                }
+            // Raw file transfer, no base64: token or a URL from create_file_url
+            app.get("/files/<path>", ctx -> fileRoutes.get(ctx, false));
+            app.head("/files/<path>", ctx -> fileRoutes.get(ctx, true));
+            app.put("/files/<path>", fileRoutes::put);
+
+            // Prometheus text exposition; scrapers authenticate with the same bearer token
+            app.get("/metrics", ctx -> {
+                ctx.contentType("text/plain; version=0.0.4; charset=utf-8");
+                ctx.result(metrics.toPrometheus());
             });
 
-            // Also support GET on /mcp for clients that expect it
             app.get("/mcp", ctx -> {
-                ctx.contentType("application/json");
-                // Return server info for discovery
-                ctx.result("{\"name\":\"MCPMinecraft\",\"version\":\"1.2.0\",\"transport\":\"streamable-http\"}");
+                if (!accepts(ctx, "text/event-stream")) {
+                    // Plain GET: server info for discovery
+                    ctx.contentType("application/json");
+                    ctx.result("{\"name\":\"MCPMinecraft\",\"version\":\"" + plugin.getDescription().getVersion()
+                            + "\",\"transport\":\"streamable-http\"}");
+                    return;
+                }
+                StreamableSession session = findStreamableSession(ctx);
+                if (session == null) return;
+                session.touch();
+                HttpEventStream stream = new HttpEventStream(ctx);
+                ctx.future(stream::done);
+                session.resume(ctx.header("Last-Event-ID"), newConnection(session, stream));
             });
 
             app.start(port);
+            sseMonitor.scheduleWithFixedDelay(this::checkSessions, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+            scheduler.start();
+            logStreamer.install();
+            fileWatcher.start();
         } finally {
             Thread.currentThread().setContextClassLoader(classLoader);
         }
     }
 
+    // Handles a POST on the plain HTTP endpoints. The body is parsed from the
+    // request stream and the reply is written straight to the response stream.
+    private void respond(Context ctx, Runnable noContent) {
+        McpRequest request = parse(ctx);
+        if (request != null) {
+            respond(ctx, request, null, null, noContent);
+        }
+    }
+
+    private McpRequest parse(Context ctx) {
+        try {
+            McpRequest request = McpRequest.parse(ctx.bodyInputStream());
+            metrics.recordRequestBytes(request.getSize());
+            return request;
+        } catch (IOException e) {
+            writeResponse(ctx, McpProtocol.parseError(e));
+            return null;
+        }
+    }
+
+    private void respond(Context ctx, McpRequest request, String sessionId, Consumer<String> notifier,
+                         Runnable noContent) {
+        ctx.future(() -> protocol.handleRequest(request, sessionId, notifier).thenAccept(response -> {
+            if (response != null) {
+                writeResponse(ctx, response);
+            } else {
+                noContent.run();
+            }
+        }));
+    }
+
+    private void writeResponse(Context ctx, McpResponse response) {
+        ctx.contentType("application/json");
+        try {
+            metrics.recordResponseBytes(response.writeTo(ctx.outputStream()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // POST /mcp. An initialize without Mcp-Session-Id starts a session; requests
+    // without the header are still served, statelessly. Tool calls on a session
+    // are answered as an SSE stream (when the client accepts one) so progress
+    // can be sent and a dropped connection can be resumed with GET /mcp.
+    private void handleMcpPost(Context ctx) throws IOException {
+        McpRequest request = parse(ctx);
+        if (request == null) return;
+
+        StreamableSession session = null;
+        if (ctx.header(SESSION_HEADER) != null) {
+            session = findStreamableSession(ctx);
+            if (session == null) return;
+        } else if (request.hasMethod("initialize")) {
+            if (streamableSessions.size() >= maxStreamableSessions) {
+                rejectedSessions.increment();
+                ctx.status(503).result("Too many sessions");
+                return;
+            }
+            session = new StreamableSession(UUID.randomUUID().toString(), replayEvents, replayBytes);
+            streamableSessions.put(session.getId(), session);
+            // Delivered on the GET stream once the client opens it
+            session.notify(TOOLS_LIST_CHANGED);
+        }
+
+        if (session == null) {
+            respond(ctx, request, null, null, () -> ctx.status(202).result("Accepted"));
+            return;
+        }
+        session.touch();
+        ctx.header(SESSION_HEADER, session.getId());
+        if (!request.hasMethod("tools/call") || !accepts(ctx, "text/event-stream")) {
+            respond(ctx, request, session.getId(), session::notify, () -> ctx.status(202).result("Accepted"));
+            return;
+        }
+
+        StreamableSession owner = session;
+        HttpEventStream stream = new HttpEventStream(ctx);
+        int streamId = owner.openStream(newConnection(owner, stream));
+        ctx.future(stream::done);
+        protocol.handleRequest(request, owner.getId(),
+                json -> owner.append(streamId, json.getBytes(StandardCharsets.UTF_8), false))
+                .whenComplete((response, error) -> {
+                    McpResponse reply = error == null ? response : internalError(request, error, "/mcp stream");
+                    byte[] json = null;
+                    if (reply != null) {
+                        try {
+                            json = reply.toBytes();
+                        } catch (RuntimeException e) {
+                            // e.g. a streamed file that went away; the stream still needs its response
+                            McpResponse failed = internalError(request, e, "/mcp stream");
+                            json = failed == null ? null : failed.toBytes();
+                        }
+                    }
+                    if (json == null) {
+                        owner.finish(streamId);
+                        return;
+                    }
+                    metrics.recordResponseBytes(json.length);
+                    owner.append(streamId, json, true);
+                });
+    }
+
+    // Logs a request that failed and builds its -32603 reply, with the request
+    // id (null for a batch or an unparseable body). Null for a notification,
+    // which gets no reply, not even an error.
+    private McpResponse internalError(McpRequest request, Throwable error, String where) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        plugin.getLogger().log(Level.WARNING, "Failed to answer request on " + where, cause);
+        boolean single = request != null && !request.isBatch();
+        JsonNode id = single ? request.getRoot().get("id") : null;
+        if (single && id == null) return null;
+        return McpResponse.error(id, -32603, "Internal error: " + cause.getMessage());
+    }
+
+    // Looks up the session named by Mcp-Session-Id, answering 400 or 404 when
+    // there is none
+    private StreamableSession findStreamableSession(Context ctx) {
+        String sessionId = ctx.header(SESSION_HEADER);
+        if (sessionId == null) {
+            ctx.status(400).result("Missing " + SESSION_HEADER + " header");
+            return null;
+        }
+        StreamableSession session = streamableSessions.get(sessionId);
+        if (session == null) {
+            ctx.status(404).result("Unknown or expired session");
+        }
+        return session;
+    }
+
+    private McpSession newConnection(StreamableSession session, HttpEventStream stream) {
+        return new McpSession(session.getId(), stream, sseWriters, maxQueuedMessages, overflowPolicy, droppedMessages);
+    }
+
+    private void closeStreamableSession(StreamableSession session) {
+        if (streamableSessions.remove(session.getId(), session)) {
+            logStreamer.unsubscribe(session.getId());
+        }
+        session.close();
+    }
+
+    private static boolean accepts(Context ctx, String type) {
+        String accept = ctx.header("Accept");
+        return accept != null && accept.contains(type);
+    }
+
+    // Where server-initiated messages for a session go: its SSE stream, or the
+    // standalone stream (and replay buffer) of a Streamable HTTP session
+    private Consumer<String> channel(String sessionId) {
+        McpSession session = sessions.get(sessionId);
+        if (session != null) {
+            return session::send;
+        }
+        StreamableSession streamable = streamableSessions.get(sessionId);
+        return streamable == null ? null : streamable::notify;
+    }
+
+    // Heartbeats every session and evicts the ones that are stalled on a write,
+    // idle for too long or already gone
+    private void checkSessions() {
+        long now = System.nanoTime();
+        for (McpSession session : sessions.values()) {
+            String reason = null;
+            if (session.isClosed()) {
+                reason = "closed";
+            } else if (stallTimeoutNanos > 0 && session.getStalledNanos(now) > stallTimeoutNanos) {
+                reason = "stalled";
+            } else if (idleTimeoutNanos > 0 && session.getIdleNanos(now) > idleTimeoutNanos) {
+                reason = "idle";
+            }
+            if (reason == null) {
+                session.heartbeat();
+                continue;
+            }
+            if (sessions.remove(session.getId(), session)) {
+                logStreamer.unsubscribe(session.getId());
+                if (!reason.equals("closed")) {
+                    evictedSessions.increment();
+                    plugin.getLogger().info("Evicting " + reason + " SSE session " + session.getId());
+                }
+            }
+            session.close();
+        }
+
+        for (StreamableSession session : streamableSessions.values()) {
+            if (session.isExpired(now, streamableTimeoutNanos)) {
+                evictedSessions.increment();
+                closeStreamableSession(session);
+            } else {
+                session.check(now, stallTimeoutNanos);
+            }
+        }
+    }
+
+    private long bufferedEvents() {
+        long total = 0;
+        for (StreamableSession session : streamableSessions.values()) {
+            total += session.getBufferedEvents();
+        }
+        return total;
+    }
+
+    private long queuedMessages() {
+        long total = 0;
+        for (McpSession session : sessions.values()) {
+            total += session.getQueueSize();
+        }
+        return total;
+    }
+
+    public ToolRegistry getToolRegistry() {
+        return toolRegistry;
+    }
+
     public void stop() {
+        logStreamer.uninstall();
         if (app != null) {
             app.stop();
         }
+        sseMonitor.shutdownNow();
+        fileWatcher.close();
+        for (McpSession session : sessions.values()) {
+            session.close();
+        }
+        sessions.clear();
+        for (StreamableSession session : streamableSessions.values()) {
+            session.close();
+        }
+        streamableSessions.clear();
+        scheduler.stop();
+        protocol.close();
+        workers.shutdownNow();
+        sseWriters.shutdownNow();
+    }
+
+    // Pools for work that must not run on Jetty or server threads: tool work (file
+    // I/O, log reads, response building after main-thread jobs) and SSE writes
+    private static ExecutorService createPool(boolean virtualThreads, int threads, String name) {
+        if (virtualThreads) {
+            try {
+                // Looked up reflectively so the plugin still builds and runs on Java 17
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                // Java < 21: fall through to a platform thread pool
+            }
+        }
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread thread = new Thread(r, name + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 }
@@ -0,0 +1,286 @@
+package com.cursor.mcp;
+
+import io.javalin.http.sse.SseClient;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An SSE connection to a client: the /sse stream, or one response stream of a
+ * Streamable HTTP session. Outgoing messages go into a bounded queue that a
+ * shared writer pool drains, so a slow or stalled client only ever blocks its
+ * own writes, never the thread that produced the message.
+ */
+public class McpSession {
+    // Frames written per turn on the writer pool before yielding to other sessions
+    private static final int MAX_FRAMES_PER_DRAIN = 64;
+
+    public enum OverflowPolicy {
+        DROP_OLDEST, DISCONNECT;
+
+        public static OverflowPolicy parse(String value) {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        }
+    }
+
+    private final String id;
+    private final Sink client;
+    private final Executor writer;
+    private final int maxQueued;
+    private final OverflowPolicy overflow;
+    private final LongAdder dropped;
+    private final Deque<Frame> queue = new ArrayDeque<>();
+    private boolean draining; // guarded by queue
+    private volatile boolean closed;
+    private volatile long lastActivity = System.nanoTime();
+    private volatile long writeStarted;
+
+    public McpSession(String id, SseClient client, Executor writer, int maxQueued, OverflowPolicy overflow,
+                      LongAdder dropped) {
+        this(id, new ClientSink(client), writer, maxQueued, overflow, dropped);
+    }
+
+    public McpSession(String id, Sink client, Executor writer, int maxQueued, OverflowPolicy overflow,
+                      LongAdder dropped) {
+        this.id = id;
+        this.client = client;
+        this.writer = writer;
+        this.maxQueued = Math.max(1, maxQueued);
+        this.overflow = overflow;
+        this.dropped = dropped;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    // Queues a JSON-RPC message (response or notification) for the client.
+    public void send(String json) {
+        enqueue(new Frame("message", json));
+    }
+
+    // Already-serialized UTF-8 JSON; handed to the SSE client as a stream so it
+    // is not decoded into a String first.
+    public void send(byte[] json) {
+        enqueue(new Frame("message", json));
+    }
+
+    // A message with an SSE event id, so the client can resume after it
+    public void send(String eventId, byte[] json) {
+        enqueue(new Frame("message", eventId, json));
+    }
+
+    public void sendEvent(String event, String data) {
+        enqueue(new Frame(event, data));
+    }
+
+    // Ends the stream once everything queued so far has been written
+    public void finish() {
+        boolean schedule = false;
+        synchronized (queue) {
+            if (closed) return;
+            queue.addLast(Frame.END);
+            if (!draining) {
+                draining = true;
+                schedule = true;
+            }
+        }
+        if (schedule) {
+            submitDrain();
+        }
+    }
+
+    // Keeps intermediaries from timing out the stream and surfaces dead
+    // connections as a failed write. Skipped while messages are queued, since
+    // those writes already prove (or disprove) liveness.
+    public void heartbeat() {
+        synchronized (queue) {
+            if (!queue.isEmpty()) return;
+        }
+        enqueue(new Frame(null, null, "ping"));
+    }
+
+    // Called for every request the client sends
+    public void touch() {
+        lastActivity = System.nanoTime();
+    }
+
+    public long getIdleNanos(long now) {
+        return now - lastActivity;
+    }
+
+    // How long the write in progress has been blocked, 0 if none is
+    public long getStalledNanos(long now) {
+        long started = writeStarted;
+        return started == 0 ? 0 : now - started;
+    }
+
+    public int getQueueSize() {
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    public boolean isClosed() {
+        return closed || client.terminated();
+    }
+
+    // Drops anything still queued and ends the stream; the client's onClose
+    // callback does the rest of the cleanup.
+    public void close() {
+        synchronized (queue) {
+            if (closed) return;
+            closed = true;
+            queue.clear();
+        }
+        client.close();
+    }
+
+    private void enqueue(Frame frame) {
+        boolean disconnect = false;
+        boolean schedule = false;
+        synchronized (queue) {
+            if (closed) return;
+            if (queue.size() >= maxQueued) {
+                if (overflow == OverflowPolicy.DISCONNECT) {
+                    disconnect = true;
+                } else {
+                    queue.pollFirst();
+                    dropped.increment();
+                }
+            }
+            if (!disconnect) {
+                queue.addLast(frame);
+                if (!draining) {
+                    draining = true;
+                    schedule = true;
+                }
+            }
+        }
+        if (disconnect) {
+            dropped.increment();
+            close();
+        } else if (schedule) {
+            submitDrain();
+        }
+    }
+
+    private void submitDrain() {
+        try {
+            writer.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            // Server is shutting down
+            synchronized (queue) {
+                draining = false;
+                queue.clear();
+            }
+        }
+    }
+
+    private void drain() {
+        for (int i = 0; i < MAX_FRAMES_PER_DRAIN; i++) {
+            Frame frame;
+            synchronized (queue) {
+                frame = closed ? null : queue.pollFirst();
+                if (frame == null) {
+                    draining = false;
+                    return;
+                }
+            }
+            if (frame == Frame.END) {
+                close();
+                continue;
+            }
+            writeStarted = System.nanoTime();
+            try {
+                frame.writeTo(client);
+            } catch (RuntimeException e) {
+                close();
+            } finally {
+                writeStarted = 0;
+            }
+            if (client.terminated()) {
+                close();
+            }
+        }
+        // More queued: go to the back of the writer queue so other sessions get a turn
+        submitDrain();
+    }
+
+    // Where frames are written. Writes may block; they only ever happen on the
+    // writer pool.
+    public interface Sink {
+        // data is a String or UTF-8 bytes; id may be null
+        void sendEvent(String event, String id, Object data);
+
+        void sendComment(String comment);
+
+        boolean terminated();
+
+        void close();
+    }
+
+    private static final class ClientSink implements Sink {
+        private final SseClient client;
+
+        ClientSink(SseClient client) {
+            this.client = client;
+        }
+
+        @Override
+        public void sendEvent(String event, String id, Object data) {
+            Object payload = data instanceof byte[] ? new ByteArrayInputStream((byte[]) data) : data;
+            if (id == null) {
+                client.sendEvent(event, payload);
+            } else {
+                client.sendEvent(event, payload, id);
+            }
+        }
+
+        @Override
+        public void sendComment(String comment) {
+            client.sendComment(comment);
+        }
+
+        @Override
+        public boolean terminated() {
+            return client.terminated();
+        }
+
+        @Override
+        public void close() {
+            client.close();
+        }
+    }
+
+    private static final class Frame {
+        static final Frame END = new Frame(null, null, null);
+
+        final String event; // null for a comment
+        final String id;
+        final Object data;
+
+        Frame(String event, Object data) {
+            this(event, null, data);
+        }
+
+        Frame(String event, String id, Object data) {
+            this.event = event;
+            this.id = id;
+            this.data = data;
+        }
+
+        void writeTo(Sink sink) {
+            if (event == null) {
+                sink.sendComment((String) data);
+            } else {
+                sink.sendEvent(event, id, data);
+            }
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.cursor.mcp;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A Streamable HTTP session on /mcp. Every message sent to the client gets an
+ * event id ({@code <stream>-<seq>}) and is kept in a bounded replay buffer, so
+ * a client whose stream dropped can reconnect with {@code Last-Event-ID} and
+ * pick up where it left off, including responses to tool calls that finished
+ * while it was away.
+ *
+ * <p>Stream 0 is the standalone GET stream for server-initiated messages; each
+ * streamed POST response gets a stream of its own that ends with the response.
+ */
+public class StreamableSession {
+    static final int STANDALONE = 0;
+
+    private final String id;
+    private final int maxEvents;
+    private final long maxBytes;
+    private final Deque<Event> events = new ArrayDeque<>();
+    private final Map<Integer, Stream> streams = new HashMap<>();
+    private long bufferedBytes;
+    private long nextSeq = 1;
+    private int nextStream = STANDALONE + 1;
+    private boolean closed;
+    private volatile long lastActivity = System.nanoTime();
+
+    public StreamableSession(String id, int maxEvents, long maxBytes) {
+        this.id = id;
+        this.maxEvents = Math.max(1, maxEvents);
+        this.maxBytes = Math.max(1, maxBytes);
+        streams.put(STANDALONE, new Stream(STANDALONE));
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void touch() {
+        lastActivity = System.nanoTime();
+    }
+
+    // Idle and without any open stream for longer than timeoutNanos
+    public synchronized boolean isExpired(long now, long timeoutNanos) {
+        if (timeoutNanos <= 0 || now - lastActivity <= timeoutNanos) return false;
+        for (Stream stream : streams.values()) {
+            if (stream.connection != null && !stream.connection.isClosed()) return false;
+        }
+        return true;
+    }
+
+    // Starts the stream a POST response will be written to. Its first event is
+    // the first real message (progress or the response): an empty priming event
+    // would be a message event with no JSON, which clients fail to parse.
+    public synchronized int openStream(McpSession connection) {
+        int streamId = nextStream++;
+        Stream stream = new Stream(streamId);
+        stream.connection = connection;
+        streams.put(streamId, stream);
+        return streamId;
+    }
+
+    // A server-initiated message; buffered even while no GET stream is open
+    public void notify(String json) {
+        append(STANDALONE, json.getBytes(StandardCharsets.UTF_8), false);
+    }
+
+    // Adds a message to a stream. The last message of a POST stream (its
+    // response) ends the stream once written.
+    public synchronized void append(int streamId, byte[] json, boolean last) {
+        Stream stream = streams.get(streamId);
+        // Nothing may follow a POST stream's response, or a resume would replay it
+        if (closed || stream == null || stream.finished) return;
+        Event event = new Event(nextSeq++, streamId, json);
+        events.addLast(event);
+        bufferedBytes += json.length;
+        stream.lastSeq = event.seq;
+        trim();
+        if (stream.connection != null && stream.connection.isClosed()) {
+            stream.connection = null;
+        }
+        if (stream.connection != null) {
+            stream.connection.send(event.id(), json);
+            stream.sentSeq = event.seq;
+        }
+        if (last) {
+            stream.finished = true;
+            if (stream.connection != null) {
+                stream.connection.finish();
+                stream.connection = null;
+            }
+        }
+    }
+
+    // Ends a POST stream that had nothing to send back
+    public synchronized void finish(int streamId) {
+        Stream stream = streams.get(streamId);
+        if (stream == null) return;
+        stream.finished = true;
+        if (stream.connection != null) {
+            stream.connection.finish();
+            stream.connection = null;
+        }
+        if (events.isEmpty() || stream.lastSeq < events.peekFirst().seq) {
+            streams.remove(streamId);
+        }
+    }
+
+    // Attaches a GET connection. With a Last-Event-ID, the events of that
+    // stream after it are replayed first and the connection takes over the
+    // stream; otherwise (or if the stream is gone) it becomes the standalone
+    // stream and gets whatever was buffered there while no stream was open.
+    // A connection already on the stream is replaced.
+    public synchronized void resume(String lastEventId, McpSession connection) {
+        if (closed) {
+            connection.close();
+            return;
+        }
+        int streamId = STANDALONE;
+        long after = -1;
+        if (lastEventId != null) {
+            int dash = lastEventId.indexOf('-');
+            try {
+                streamId = Integer.parseInt(lastEventId.substring(0, dash));
+                after = Long.parseLong(lastEventId.substring(dash + 1));
+            } catch (RuntimeException e) {
+                streamId = STANDALONE;
+                after = -1;
+            }
+        }
+        Stream stream = streams.get(streamId);
+        if (stream == null) {
+            stream = streams.get(STANDALONE);
+            after = -1;
+        }
+        if (after < 0) {
+            after = stream.sentSeq;
+        }
+        if (stream.connection != null) {
+            stream.connection.close();
+            stream.connection = null;
+        }
+        for (Event event : events) {
+            if (event.stream == stream.id && event.seq > after) {
+                connection.send(event.id(), event.json);
+                stream.sentSeq = event.seq;
+            }
+        }
+        if (stream.finished) {
+            connection.finish();
+        } else {
+            stream.connection = connection;
+        }
+    }
+
+    // Heartbeats open streams and closes the ones stuck on a write
+    public void check(long now, long stallTimeoutNanos) {
+        for (McpSession connection : connections()) {
+            if (stallTimeoutNanos > 0 && connection.getStalledNanos(now) > stallTimeoutNanos) {
+                connection.close();
+            } else {
+                connection.heartbeat();
+            }
+        }
+    }
+
+    public synchronized int getBufferedEvents() {
+        return events.size();
+    }
+
+    public void close() {
+        List<McpSession> open;
+        synchronized (this) {
+            closed = true;
+            open = connections();
+            streams.clear();
+            events.clear();
+            bufferedBytes = 0;
+        }
+        for (McpSession connection : open) {
+            connection.close();
+        }
+    }
+
+    private synchronized List<McpSession> connections() {
+        List<McpSession> open = new ArrayList<>();
+        for (Stream stream : streams.values()) {
+            if (stream.connection != null) open.add(stream.connection);
+        }
+        return open;
+    }
+
+    // Drops the oldest events beyond the limits; finished streams go with
+    // their last event
+    private void trim() {
+        while (events.size() > maxEvents || (bufferedBytes > maxBytes && events.size() > 1)) {
+            Event evicted = events.pollFirst();
+            bufferedBytes -= evicted.json.length;
+            Stream stream = streams.get(evicted.stream);
+            if (stream != null && stream.finished && stream.lastSeq == evicted.seq) {
+                streams.remove(evicted.stream);
+            }
+        }
+    }
+
+    private static final class Stream {
+        final int id;
+        McpSession connection;
+        long lastSeq;
+        long sentSeq;
+        boolean finished;
+
+        Stream(int id) {
+            this.id = id;
+        }
+    }
+
+    private static final class Event {
+        final long seq;
+        final int stream;
+        final byte[] json;
+
+        Event(long seq, int stream, byte[] json) {
+            this.seq = seq;
+            this.stream = stream;
+            this.json = json;
+        }
+
+        String id() {
+            return stream + "-" + seq;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.cursor.mcp.files;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Uploads that arrive in base64 chunks. Chunks are decoded piece by piece
+ * into a hidden temp file next to the target, and the target is only replaced
+ * (by an atomic rename) once the whole file matches the client's SHA-256.
+ *
+ * <p>The temp file is the upload's state: the bytes received so far are its
+ * length, so a client that lost its connection (or a server that restarted)
+ * continues from {@link Upload#received} by sending the next chunk at that
+ * offset.
+ */
+public class ChunkedUploads {
+    private static final Pattern UPLOAD_ID = Pattern.compile("[A-Za-z0-9-]{8,64}");
+    // Base64 characters decoded per step; a multiple of 4 so steps never split a quantum
+    private static final int DECODE_STEP = 64 * 1024;
+
+    private final Map<String, Upload> uploads = new ConcurrentHashMap<>();
+    private final long timeoutMillis;
+
+    public ChunkedUploads(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public static final class Upload {
+        public final String id;
+        public final Path target;
+        final Path temp;
+        volatile long lastUsed = System.currentTimeMillis();
+
+        Upload(String id, Path target) {
+            this.id = id;
+            this.target = target;
+            this.temp = target.resolveSibling("." + target.getFileName() + "." + id + ".part");
+        }
+
+        // Bytes acknowledged so far, i.e. the offset of the next chunk
+        public long received() throws IOException {
+            return Files.exists(temp) ? Files.size(temp) : 0;
+        }
+    }
+
+    public Upload start(Path target) throws IOException {
+        expireIdle();
+        Upload upload = new Upload(UUID.randomUUID().toString(), target);
+        Files.createDirectories(target.getParent());
+        Files.deleteIfExists(upload.temp);
+        Files.createFile(upload.temp);
+        uploads.put(upload.id, upload);
+        return upload;
+    }
+
+    // Finds an upload by id. When the server restarted in between, the temp
+    // file for target is picked up again.
+    public Upload find(String id, Path target) {
+        if (id == null || !UPLOAD_ID.matcher(id).matches()) {
+            throw new IllegalArgumentException("Invalid uploadId: " + id);
+        }
+        Upload upload = uploads.get(id);
+        if (upload == null && target != null) {
+            Upload candidate = new Upload(id, target);
+            if (Files.exists(candidate.temp)) {
+                upload = uploads.computeIfAbsent(id, k -> candidate);
+            }
+        }
+        if (upload == null || (target != null && !upload.target.equals(target))) {
+            throw new IllegalArgumentException("Unknown upload: " + id);
+        }
+        upload.lastUsed = System.currentTimeMillis();
+        return upload;
+    }
+
+    // Writes a chunk at offset, which must not be past the bytes received so
+    // far. A chunk at an earlier offset is a retry: everything after it is
+    // discarded first. Returns the bytes received after the write.
+    public long write(Upload upload, long offset, String base64) throws IOException {
+        synchronized (upload) {
+            try (FileChannel channel = FileChannel.open(upload.temp, StandardOpenOption.WRITE)) {
+                long received = channel.size();
+                if (offset > received) {
+                    throw new IllegalArgumentException("Chunk offset " + offset + " is past the " + received
+                            + " bytes received; resume at offset " + received);
+                }
+                if (offset < received) {
+                    channel.truncate(offset);
+                }
+                channel.position(offset);
+                try {
+                    decodeTo(base64, channel);
+                } catch (IllegalArgumentException e) {
+                    // Keep the acknowledged bytes exactly as they were
+                    channel.truncate(offset);
+                    throw e;
+                }
+                upload.lastUsed = System.currentTimeMillis();
+                return channel.size();
+            }
+        }
+    }
+
+    // Verifies the temp file against sha256 (hex) and renames it over the
+    // target. On a mismatch the upload is discarded.
+    public long commit(Upload upload, String sha256) throws IOException {
+        synchronized (upload) {
+            String actual = sha256(upload.temp);
+            if (!actual.equalsIgnoreCase(sha256.trim())) {
+                abort(upload);
+                throw new IllegalArgumentException("Checksum mismatch: expected " + sha256 + ", got " + actual
+                        + "; the upload was discarded");
+            }
+            long size = Files.size(upload.temp);
+            moveIntoPlace(upload.temp, upload.target);
+            uploads.remove(upload.id);
+            return size;
+        }
+    }
+
+    public void abort(Upload upload) throws IOException {
+        uploads.remove(upload.id);
+        Files.deleteIfExists(upload.temp);
+    }
+
+    // Writes a whole base64 file in one go, still through a temp file so a
+    // failed decode never leaves the target half written. Returns its size.
+    public long replace(Path target, String base64) throws IOException {
+        Files.createDirectories(target.getParent());
+        Upload upload = new Upload(UUID.randomUUID().toString(), target);
+        try {
+            try (FileChannel channel = FileChannel.open(upload.temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                decodeTo(base64, channel);
+            }
+            long size = Files.size(upload.temp);
+            moveIntoPlace(upload.temp, target);
+            return size;
+        } finally {
+            Files.deleteIfExists(upload.temp);
+        }
+    }
+
+    public static String sha256(Path path) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(path)) {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, n);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    // Decodes base64 a slice at a time so a chunk never exists twice in memory
+    // (once as text, once as bytes)
+    static void decodeTo(String base64, FileChannel channel) throws IOException {
+        Base64.Decoder decoder = Base64.getDecoder();
+        int length = base64.length();
+        for (int start = 0; start < length; start += DECODE_STEP) {
+            int end = Math.min(length, start + DECODE_STEP);
+            byte[] ascii = base64.substring(start, end).getBytes(StandardCharsets.ISO_8859_1);
+            ByteBuffer bytes;
+            try {
+                bytes = ByteBuffer.wrap(decoder.decode(ascii));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid base64 near character " + start + ": " + e.getMessage());
+            }
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+    }
+
+    // Atomic where the file system allows it
+    public static void moveIntoPlace(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // Temp files of abandoned uploads are removed after the timeout
+    private void expireIdle() {
+        if (timeoutMillis <= 0) return;
+        long cutoff = System.currentTimeMillis() - timeoutMillis;
+        for (Iterator<Upload> it = uploads.values().iterator(); it.hasNext(); ) {
+            Upload upload = it.next();
+            if (upload.lastUsed < cutoff) {
+                it.remove();
+                try {
+                    Files.deleteIfExists(upload.temp);
+                } catch (IOException ignored) {
+                    // Removed on the next expiry pass or by hand
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package com.cursor.mcp.files;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+
+/**
+ * In-memory tree of names, sizes and types under the server root, so listings
+ * (including recursive ones) come from memory instead of a directory read plus
+ * a stat per entry. Directories are loaded on first use and by a background
+ * pass over the whole tree; {@link FileWatcher} events keep loaded ones
+ * current. Without reliable watching, a directory is reloaded whenever its
+ * modification time moved. Once maxEntries are cached, directories that would
+ * go past it are read from disk on every use instead of being kept.
+ */
+public class DirectoryIndex implements FileWatcher.Listener {
+    // Retries of a directory read that raced with changes to that directory
+    private static final int MAX_LOAD_ATTEMPTS = 3;
+
+    private final Path root;
+    private final FileWatcher watcher;
+    private final Logger logger;
+    private final int maxEntries;
+    private final Node rootNode;
+    private int entries;
+    private Thread indexer;
+
+    public DirectoryIndex(FileWatcher watcher, int maxEntries, Logger logger) {
+        this.root = watcher.getRoot();
+        this.watcher = watcher;
+        this.logger = logger;
+        this.maxEntries = maxEntries;
+        this.rootNode = new Node("", true, false, 0);
+        watcher.addListener(this);
+    }
+
+    public static final class Entry {
+        /** Relative to the listed directory, with forward slashes. */
+        public final String path;
+        public final boolean directory;
+        public final long size;
+
+        Entry(String path, boolean directory, long size) {
+            this.path = path;
+            this.directory = directory;
+            this.size = size;
+        }
+    }
+
+    public static final class Listing {
+        public final List<Entry> entries;
+        /** Pass back as cursor to continue, null when the listing is complete. */
+        public final String nextCursor;
+
+        Listing(List<Entry> entries, String nextCursor) {
+            this.entries = entries;
+            this.nextCursor = nextCursor;
+        }
+    }
+
+    // Indexes the whole tree breadth first on a daemon thread, up to maxEntries
+    public synchronized void start() {
+        Thread thread = new Thread(() -> {
+            Deque<Path> queue = new ArrayDeque<>();
+            queue.add(root);
+            while (!queue.isEmpty() && entryCount() < maxEntries) {
+                if (Thread.currentThread().isInterrupted()) return;
+                Path dir = queue.poll();
+                try {
+                    for (Entry entry : list(dir, 1, null, -1, -1, null, Integer.MAX_VALUE).entries) {
+                        if (entry.directory && !Files.isSymbolicLink(dir.resolve(entry.path))) {
+                            queue.add(dir.resolve(entry.path));
+                        }
+                    }
+                } catch (IOException | IllegalArgumentException e) {
+                    // Vanished or unreadable; loaded on demand if it comes back
+                }
+            }
+            if (!queue.isEmpty()) {
+                logger.info("Directory index stopped at " + maxEntries + " entries; the rest is indexed on demand");
+            }
+        }, "MCP-Directory-Index");
+        thread.setDaemon(true);
+        thread.start();
+        indexer = thread;
+    }
+
+    // Stops the initial indexing if it is still running
+    public synchronized void close() {
+        if (indexer != null) {
+            indexer.interrupt();
+            indexer = null;
+        }
+    }
+
+    /**
+     * Lists dir down to maxDepth levels (1 = direct children) in depth-first
+     * name order. With a glob or size bounds only matching files are returned;
+     * a glob without '/' matches file names, otherwise paths relative to dir.
+     * Negative size bounds are ignored.
+     */
+    public Listing list(Path dir, int maxDepth, String glob, long minSize, long maxSize, String cursor, int limit)
+            throws IOException {
+        Node node = resolve(dir);
+        if (node == null || !node.directory) {
+            throw new IllegalArgumentException("Not a directory: " + root.relativize(dir));
+        }
+        PathMatcher matcher = glob == null ? null : FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        boolean matchNames = glob != null && glob.indexOf('/') < 0;
+        boolean filesOnly = glob != null || minSize >= 0 || maxSize >= 0;
+
+        List<Entry> out = new ArrayList<>();
+        Deque<Frame> stack = new ArrayDeque<>();
+        stack.push(new Frame("", 0, children(node, dir)));
+        while (!stack.isEmpty()) {
+            Frame frame = stack.peek();
+            if (frame.next >= frame.children.size()) {
+                stack.pop();
+                continue;
+            }
+            Node child = frame.children.get(frame.next++);
+            String relative = frame.prefix.isEmpty() ? child.name : frame.prefix + "/" + child.name;
+            int order = cursor == null ? 1 : compare(relative, cursor);
+            // Whole subtrees before the cursor are skipped without being visited
+            if (order < 0 && !(child.directory && cursor.startsWith(relative + "/"))) {
+                continue;
+            }
+            if (order > 0 && (!filesOnly || !child.directory) && matches(child, relative, matcher, matchNames, minSize, maxSize)) {
+                if (out.size() == limit) {
+                    return new Listing(out, out.get(out.size() - 1).path);
+                }
+                out.add(new Entry(relative, child.directory, child.size));
+            }
+            if (child.directory && frame.depth + 1 < maxDepth && !child.link) {
+                Path path = dir.resolve(relative);
+                stack.push(new Frame(relative, frame.depth + 1, children(child, path)));
+            }
+        }
+        return new Listing(out, null);
+    }
+
+    public synchronized int entryCount() {
+        return entries;
+    }
+
+    @Override
+    public void changed(Path path) {
+        if (!path.startsWith(root) || path.equals(root)) return;
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            attributes = null; // deleted
+        }
+        synchronized (this) {
+            Node parent = find(path.getParent());
+            if (parent == null) return;
+            parent.changes++;
+            if (!parent.loaded) return;
+            String name = path.getFileName().toString();
+            Node existing = parent.children.get(name);
+            if (attributes == null) {
+                if (existing != null) remove(parent, name);
+            } else if (existing != null && existing.directory == attributes.isDirectory()) {
+                existing.size = attributes.isDirectory() ? 0 : attributes.size();
+            } else {
+                if (existing != null) remove(parent, name);
+                add(parent, node(name, path, attributes));
+            }
+        }
+    }
+
+    // Events were lost somewhere below dir: forget it and reload on demand
+    @Override
+    public synchronized void overflow(Path dir) {
+        Node node = find(dir);
+        if (node != null && node.directory) {
+            node.changes++;
+            unload(node);
+        }
+    }
+
+    // The children of a directory node, loaded or revalidated first if needed.
+    // Without room in the index they are read but not kept.
+    private List<Node> children(Node node, Path path) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            long changes;
+            long modified = -1;
+            synchronized (this) {
+                if (node.loaded && watcher.isReliable() && !node.link) {
+                    return new ArrayList<>(node.children.values());
+                }
+                changes = node.changes;
+            }
+            if (node.loaded) {
+                // Unreliable watching: a moved directory time means entries were added or removed
+                modified = Files.getLastModifiedTime(path).toMillis();
+                synchronized (this) {
+                    if (node.loaded && node.changes == changes && node.listedAt == modified) {
+                        return new ArrayList<>(node.children.values());
+                    }
+                }
+            }
+            if (modified < 0) modified = Files.getLastModifiedTime(path).toMillis();
+
+            TreeMap<String, Node> children = new TreeMap<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
+                for (Path child : stream) {
+                    try {
+                        BasicFileAttributes attributes = Files.readAttributes(child, BasicFileAttributes.class);
+                        String name = child.getFileName().toString();
+                        Node read = node(name, child, attributes);
+                        read.detached = node.detached;
+                        children.put(name, read);
+                    } catch (IOException e) {
+                        // Deleted while listing, or a dangling link
+                    }
+                }
+            }
+            synchronized (this) {
+                if (node.changes != changes && attempt < MAX_LOAD_ATTEMPTS) {
+                    continue; // changed while being read
+                }
+                unload(node);
+                if (node.detached || entries + children.size() > maxEntries) {
+                    // Nodes below an uncached directory are outside the tree and never cached either
+                    for (Node child : children.values()) {
+                        child.detached = true;
+                    }
+                    return new ArrayList<>(children.values());
+                }
+                for (Node child : children.values()) {
+                    add(node, child);
+                }
+                node.loaded = true;
+                node.listedAt = modified;
+                return new ArrayList<>(node.children.values());
+            }
+        }
+    }
+
+    // The node for path, loading the directories on the way as needed
+    private Node resolve(Path path) throws IOException {
+        if (!path.startsWith(root)) return null;
+        Node node = rootNode;
+        Path current = root;
+        for (Path segment : root.relativize(path)) {
+            if (segment.toString().isEmpty()) continue;
+            if (!node.directory) return null;
+            String name = segment.toString();
+            Node next = null;
+            for (Node child : children(node, current)) {
+                if (child.name.equals(name)) {
+                    next = child;
+                    break;
+                }
+            }
+            if (next == null) return null;
+            current = current.resolve(segment);
+            node = next;
+        }
+        return node;
+    }
+
+    // Only walks loaded nodes; never touches the disk
+    private Node find(Path path) {
+        if (path == null || !path.startsWith(root)) return null;
+        Node node = rootNode;
+        for (Path segment : root.relativize(path)) {
+            if (segment.toString().isEmpty()) continue;
+            if (node.children == null) return null;
+            node = node.children.get(segment.toString());
+            if (node == null) return null;
+        }
+        return node;
+    }
+
+    private void add(Node parent, Node child) {
+        parent.children.put(child.name, child);
+        entries++;
+    }
+
+    private void remove(Node parent, String name) {
+        Node removed = parent.children.remove(name);
+        if (removed != null) {
+            unload(removed);
+            entries--;
+        }
+    }
+
+    private void unload(Node node) {
+        if (node.children == null) return;
+        for (Node child : node.children.values()) {
+            unload(child);
+        }
+        entries -= node.children.size();
+        node.children.clear();
+        node.loaded = false;
+    }
+
+    private static Node node(String name, Path path, BasicFileAttributes attributes) {
+        boolean directory = attributes.isDirectory();
+        boolean link = directory && Files.isSymbolicLink(path);
+        return new Node(name, directory, link, directory ? 0 : attributes.size());
+    }
+
+    private static boolean matches(Node node, String relative, PathMatcher matcher, boolean matchNames,
+                                   long minSize, long maxSize) {
+        if (matcher != null && !matcher.matches(Path.of(matchNames ? node.name : relative))) return false;
+        if (minSize >= 0 && node.size < minSize) return false;
+        return maxSize < 0 || node.size <= maxSize;
+    }
+
+    // Depth-first name order: a directory sorts right before its contents
+    static int compare(String a, String b) {
+        String[] left = a.split("/");
+        String[] right = b.split("/");
+        for (int i = 0; i < Math.min(left.length, right.length); i++) {
+            int order = left[i].compareTo(right[i]);
+            if (order != 0) return order;
+        }
+        return Integer.compare(left.length, right.length);
+    }
+
+    private static final class Node {
+        final String name;
+        final boolean directory;
+        // A symbolic link to a directory: listed, never recursed into or trusted to watching
+        final boolean link;
+        long size;
+        final Map<String, Node> children;
+        boolean loaded;
+        long listedAt;
+        // Events seen for this directory, to detect ones racing a load
+        long changes;
+        // Read while the index was full: not part of the tree, so never loaded
+        boolean detached;
+
+        Node(String name, boolean directory, boolean link, long size) {
+            this.name = name;
+            this.directory = directory;
+            this.link = link;
+            this.size = size;
+            this.children = directory ? new TreeMap<>() : null;
+        }
+    }
+
+    private static final class Frame {
+        final String prefix;
+        final int depth;
+        final List<Node> children;
+        int next;
+
+        Frame(String prefix, int depth, List<Node> children) {
+            this.prefix = prefix;
+            this.depth = depth;
+            this.children = children;
+        }
+    }
+}
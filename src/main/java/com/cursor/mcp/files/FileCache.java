@@ -0,0 +1,119 @@
+package com.cursor.mcp.files;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LRU cache of small text files, bounded by total size. An entry holds the
+ * file's SHA-256 and its content already encoded as a JSON string, so a
+ * repeated read_file neither touches the file nor escapes it again, and a
+ * client that still has the content can be told it is unchanged.
+ *
+ * <p>Entries are dropped on {@link FileWatcher} events. Hits are still checked
+ * against size and modification time: watch events arrive asynchronously, so
+ * a read right after a write could otherwise see the old content.
+ */
+public class FileCache {
+    private final long maxBytes;
+    private final Map<Path, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private long usedBytes;
+
+    public FileCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public static final class Entry {
+        public final String sha256;
+        public final long size;
+        /** The content as a quoted JSON string literal. */
+        public final String json;
+        final long modified;
+
+        Entry(String sha256, long size, long modified, String json) {
+            this.sha256 = sha256;
+            this.size = size;
+            this.modified = modified;
+            this.json = json;
+        }
+
+        // The encoded text dominates; chars count twice for non-Latin-1 content
+        long weight() {
+            return 2L * json.length();
+        }
+    }
+
+    public Entry get(Path path) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        long modified = attributes.lastModifiedTime().toMillis();
+        synchronized (entries) {
+            Entry entry = entries.get(path);
+            if (entry != null && entry.size == attributes.size() && entry.modified == modified) {
+                hits.increment();
+                return entry;
+            }
+        }
+        misses.increment();
+
+        // Attributes were read first: if the file changes while being read, the
+        // entry is stale by size or time and reloaded on the next hit
+        byte[] bytes = Files.readAllBytes(path);
+        String text = new String(bytes, StandardCharsets.UTF_8);
+        String json = "\"" + new String(JsonStringEncoder.getInstance().quoteAsString(text)) + "\"";
+        Entry entry = new Entry(TextPatcher.sha256(bytes), bytes.length, modified, json);
+        if (maxBytes > 0 && entry.weight() <= maxBytes / 4) {
+            synchronized (entries) {
+                Entry previous = entries.put(path, entry);
+                if (previous != null) usedBytes -= previous.weight();
+                usedBytes += entry.weight();
+                evict();
+            }
+        }
+        return entry;
+    }
+
+    // Drops path and, for a directory, everything below it
+    public void invalidate(Path path) {
+        synchronized (entries) {
+            for (Iterator<Map.Entry<Path, Entry>> it = entries.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<Path, Entry> entry = it.next();
+                if (entry.getKey().startsWith(path)) {
+                    usedBytes -= entry.getValue().weight();
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getUsedBytes() {
+        synchronized (entries) {
+            return usedBytes;
+        }
+    }
+
+    private void evict() {
+        Iterator<Entry> it = entries.values().iterator();
+        while (usedBytes > maxBytes && it.hasNext()) {
+            usedBytes -= it.next().weight();
+            it.remove();
+        }
+    }
+}
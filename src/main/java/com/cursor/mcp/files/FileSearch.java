@@ -0,0 +1,347 @@
+package com.cursor.mcp.files;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Searches file contents below a directory in parallel: one fork-join task
+ * per directory, files in small groups. Files are read with positioned reads
+ * (not memory-mapped, which keeps them locked on Windows) into a buffer each
+ * group reuses, and decoded into a reused char buffer the pattern runs over.
+ * Files with a NUL byte near the start are taken as binary and skipped;
+ * symbolic links are never followed.
+ *
+ * <p>Matches are handed to a batch callback as they are found; the returned
+ * result has all of them, sorted by path and line.
+ */
+public class FileSearch {
+    // Bytes checked for NUL to tell binary files apart, as git does
+    private static final int BINARY_PROBE = 8000;
+    private static final int FILES_PER_TASK = 8;
+    private static final int MAX_LINE_CHARS = 300;
+
+    private final long maxFileBytes;
+
+    public FileSearch(long maxFileBytes) {
+        this.maxFileBytes = maxFileBytes;
+    }
+
+    public static final class Match {
+        /** Relative to the searched directory, with forward slashes. */
+        public final String path;
+        public final int line;
+        public final String text;
+
+        Match(String path, int line, String text) {
+            this.path = path;
+            this.line = line;
+            this.text = text;
+        }
+    }
+
+    public static final class Result {
+        public final List<Match> matches;
+        public final int filesScanned;
+        public final int filesSkipped;
+        /** True if the search stopped early at maxMatches or the deadline. */
+        public final boolean truncated;
+
+        Result(List<Match> matches, int filesScanned, int filesSkipped, boolean truncated) {
+            this.matches = matches;
+            this.filesScanned = filesScanned;
+            this.filesSkipped = filesSkipped;
+            this.truncated = truncated;
+        }
+    }
+
+    /**
+     * Must be called from a thread of the fork-join pool the search should
+     * run on. Globs without '/' match file (and for excludes, directory)
+     * names, others paths relative to base.
+     */
+    public Result search(Path base, Pattern pattern, List<String> includes, List<String> excludes, int maxMatches,
+                         long deadlineNanos, int batchSize, Consumer<List<Match>> batches) {
+        Search search = new Search(base, pattern, globs(includes), globs(excludes), maxMatches, deadlineNanos,
+                batchSize, batches);
+        new DirectoryTask(search, base).invoke();
+        search.flush(true);
+        List<Match> all;
+        synchronized (search) {
+            all = new ArrayList<>(search.all);
+        }
+        all.sort(Comparator.comparing((Match m) -> m.path).thenComparingInt(m -> m.line));
+        if (all.size() > maxMatches) {
+            all = new ArrayList<>(all.subList(0, maxMatches));
+        }
+        return new Result(all, search.scanned.get(), search.skipped.get(), search.stopped);
+    }
+
+    private static List<Glob> globs(List<String> patterns) {
+        List<Glob> globs = new ArrayList<>();
+        for (String pattern : patterns) {
+            globs.add(new Glob(FileSystems.getDefault().getPathMatcher("glob:" + pattern), pattern.indexOf('/') < 0));
+        }
+        return globs;
+    }
+
+    private static final class Glob {
+        final PathMatcher matcher;
+        final boolean nameOnly;
+
+        Glob(PathMatcher matcher, boolean nameOnly) {
+            this.matcher = matcher;
+            this.nameOnly = nameOnly;
+        }
+
+        boolean matches(Path relative) {
+            Path name = relative.getFileName();
+            return matcher.matches(nameOnly && name != null ? name : relative);
+        }
+    }
+
+    // State shared by all tasks of one search
+    private final class Search {
+        final Path base;
+        final Pattern pattern;
+        final List<Glob> includes;
+        final List<Glob> excludes;
+        final int maxMatches;
+        final long deadline;
+        final int batchSize;
+        final Consumer<List<Match>> batches;
+        final AtomicInteger found = new AtomicInteger();
+        final AtomicInteger scanned = new AtomicInteger();
+        final AtomicInteger skipped = new AtomicInteger();
+        final List<Match> all = new ArrayList<>();
+        List<Match> pending = new ArrayList<>();
+        volatile boolean stopped;
+
+        Search(Path base, Pattern pattern, List<Glob> includes, List<Glob> excludes, int maxMatches, long deadline,
+               int batchSize, Consumer<List<Match>> batches) {
+            this.base = base;
+            this.pattern = pattern;
+            this.includes = includes;
+            this.excludes = excludes;
+            this.maxMatches = maxMatches;
+            this.deadline = deadline;
+            this.batchSize = batchSize;
+            this.batches = batches;
+        }
+
+        boolean done() {
+            if (!stopped && (found.get() >= maxMatches || System.nanoTime() - deadline > 0)) {
+                stopped = true;
+            }
+            return stopped;
+        }
+
+        boolean excluded(Path relative) {
+            for (Glob glob : excludes) {
+                if (glob.matches(relative)) return true;
+            }
+            return false;
+        }
+
+        boolean included(Path relative) {
+            if (includes.isEmpty()) return true;
+            for (Glob glob : includes) {
+                if (glob.matches(relative)) return true;
+            }
+            return false;
+        }
+
+        synchronized void add(List<Match> matches) {
+            all.addAll(matches);
+            pending.addAll(matches);
+        }
+
+        // Hands pending matches to the callback once a batch is full (or at the end)
+        void flush(boolean last) {
+            List<Match> batch;
+            synchronized (this) {
+                if (pending.isEmpty() || (!last && pending.size() < batchSize)) return;
+                batch = pending;
+                pending = new ArrayList<>();
+            }
+            if (batches != null) batches.accept(batch);
+        }
+
+        void scan(Path file, long size, Buffers buffers) {
+            if (done()) return;
+            if (size > maxFileBytes) {
+                skipped.incrementAndGet();
+                return;
+            }
+            CharBuffer text;
+            try {
+                text = read(file, size, buffers);
+            } catch (IOException e) {
+                skipped.incrementAndGet();
+                return;
+            }
+            if (text == null) {
+                skipped.incrementAndGet();
+                return;
+            }
+            scanned.incrementAndGet();
+
+            String relative = base.relativize(file).toString().replace('\\', '/');
+            List<Match> matches = new ArrayList<>();
+            Matcher matcher = pattern.matcher(text);
+            int line = 1;
+            int counted = 0; // chars already counted into line
+            int from = 0;
+            while (from <= text.length() && matcher.find(from)) {
+                int start = matcher.start();
+                for (int i = counted; i < start; i++) {
+                    if (text.charAt(i) == '\n') line++;
+                }
+                int lineStart = start;
+                while (lineStart > 0 && text.charAt(lineStart - 1) != '\n') lineStart--;
+                int lineEnd = start;
+                while (lineEnd < text.length() && text.charAt(lineEnd) != '\n') lineEnd++;
+                int shownEnd = Math.min(lineEnd, lineStart + MAX_LINE_CHARS);
+                String shown = text.subSequence(lineStart, shownEnd).toString();
+                if (shown.endsWith("\r")) shown = shown.substring(0, shown.length() - 1);
+                if (shownEnd < lineEnd) shown += "...";
+                matches.add(new Match(relative, line, shown));
+                if (found.incrementAndGet() >= maxMatches) break;
+                // One match per line: continue on the next one
+                line++;
+                from = lineEnd + 1;
+                counted = from;
+            }
+            if (!matches.isEmpty()) {
+                add(matches);
+                flush(false);
+            }
+        }
+    }
+
+    // Null for binary files. The result is only valid until the next read with the same buffers
+    private static CharBuffer read(Path file, long size, Buffers buffers) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (buffers.bytes.capacity() < size) {
+                buffers.bytes = ByteBuffer.allocate((int) size);
+            }
+            ByteBuffer bytes = buffers.bytes;
+            bytes.clear().limit((int) size);
+            while (bytes.hasRemaining()) {
+                if (channel.read(bytes, bytes.position()) < 0) break;
+            }
+            bytes.flip();
+            int probe = Math.min(bytes.limit(), BINARY_PROBE);
+            for (int i = 0; i < probe; i++) {
+                if (bytes.get(i) == 0) return null;
+            }
+            // UTF-8 never decodes to more chars than bytes
+            if (buffers.chars.capacity() < bytes.limit()) {
+                buffers.chars = CharBuffer.allocate(bytes.limit());
+            }
+            CharBuffer chars = buffers.chars;
+            chars.clear();
+            buffers.decoder.reset();
+            buffers.decoder.decode(bytes, chars, true);
+            buffers.decoder.flush(chars);
+            return chars.flip();
+        }
+    }
+
+    // Read buffers one task reuses across its files, grown to the largest so far
+    private static final class Buffers {
+        ByteBuffer bytes = ByteBuffer.allocate(0);
+        CharBuffer chars = CharBuffer.allocate(0);
+        final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    private final class DirectoryTask extends RecursiveAction {
+        private final Search search;
+        private final Path dir;
+
+        DirectoryTask(Search search, Path dir) {
+            this.search = search;
+            this.dir = dir;
+        }
+
+        @Override
+        protected void compute() {
+            if (search.done()) return;
+            List<ForkJoinTask<?>> tasks = new ArrayList<>();
+            List<Path> files = new ArrayList<>();
+            List<Long> sizes = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                for (Path child : stream) {
+                    BasicFileAttributes attributes;
+                    try {
+                        attributes = Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (IOException e) {
+                        continue;
+                    }
+                    Path relative = search.base.relativize(child);
+                    if (search.excluded(relative)) continue;
+                    if (attributes.isDirectory()) {
+                        tasks.add(new DirectoryTask(search, child));
+                    } else if (attributes.isRegularFile() && search.included(relative)) {
+                        files.add(child);
+                        sizes.add(attributes.size());
+                        if (files.size() == FILES_PER_TASK) {
+                            tasks.add(new FilesTask(search, files, sizes));
+                            files = new ArrayList<>();
+                            sizes = new ArrayList<>();
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                return; // unreadable or gone
+            }
+            if (!files.isEmpty()) {
+                tasks.add(new FilesTask(search, files, sizes));
+            }
+            invokeAll(tasks);
+        }
+    }
+
+    private final class FilesTask extends RecursiveAction {
+        private final Search search;
+        private final List<Path> files;
+        private final List<Long> sizes;
+
+        FilesTask(Search search, List<Path> files, List<Long> sizes) {
+            this.search = search;
+            this.files = files;
+            this.sizes = sizes;
+        }
+
+        @Override
+        protected void compute() {
+            Buffers buffers = new Buffers();
+            for (int i = 0; i < files.size(); i++) {
+                search.scan(files.get(i), sizes.get(i), buffers);
+            }
+        }
+    }
+}
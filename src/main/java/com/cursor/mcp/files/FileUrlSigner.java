@@ -0,0 +1,68 @@
+package com.cursor.mcp.files;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Short-lived URLs for the /files endpoint. A URL carries its expiry and an
+ * HMAC-SHA256 over method, path and expiry, so it can be handed to tools like
+ * curl without the server token. The key is random per server start, so a
+ * restart revokes every outstanding URL.
+ */
+public class FileUrlSigner {
+    public static final String PREFIX = "/files/";
+
+    private final SecretKeySpec key;
+
+    public FileUrlSigner() {
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        this.key = new SecretKeySpec(secret, "HmacSHA256");
+    }
+
+    // path is relative to the server root, with forward slashes
+    public String createUrl(String method, String path, long ttlSeconds) {
+        long expires = System.currentTimeMillis() / 1000 + Math.max(1, ttlSeconds);
+        return PREFIX + encodePath(path) + "?expires=" + expires + "&sig=" + sign(method, path, expires);
+    }
+
+    public boolean verify(String method, String path, String expires, String signature) {
+        if (expires == null || signature == null) return false;
+        long expiry;
+        try {
+            expiry = Long.parseLong(expires);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        if (expiry < System.currentTimeMillis() / 1000) return false;
+        byte[] expected = sign(method, path, expiry).getBytes(StandardCharsets.US_ASCII);
+        return MessageDigest.isEqual(expected, signature.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private String sign(String method, String path, long expires) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(key);
+            byte[] digest = mac.doFinal((method + "\n" + path + "\n" + expires).getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String encodePath(String path) {
+        String[] segments = path.split("/", -1);
+        StringBuilder out = new StringBuilder(path.length() + 16);
+        for (int i = 0; i < segments.length; i++) {
+            if (i > 0) out.append('/');
+            out.append(URLEncoder.encode(segments[i], StandardCharsets.UTF_8).replace("+", "%20"));
+        }
+        return out.toString();
+    }
+}
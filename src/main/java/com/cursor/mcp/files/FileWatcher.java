@@ -0,0 +1,187 @@
+package com.cursor.mcp.files;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Watches the whole server root for changes with one {@link WatchService} and
+ * a daemon thread, registering every directory (WatchService is not
+ * recursive) including ones created later.
+ *
+ * <p>Listeners get the path that changed. When events were lost (queue
+ * overflow) they are told which directory lost them: anything below it may
+ * have changed. Callers that cannot afford a missed event should still check
+ * {@link #isReliable()}: watches can run out (the inotify limit on Linux).
+ */
+public class FileWatcher implements AutoCloseable {
+    public interface Listener {
+        void changed(Path path);
+
+        default void overflow(Path dir) {
+            changed(dir);
+        }
+    }
+
+    private final Path root;
+    private final Logger logger;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final Map<WatchKey, Path> keys = new ConcurrentHashMap<>();
+    private volatile WatchService service;
+    private volatile boolean reliable;
+    private Thread thread;
+
+    public FileWatcher(Path root, Logger logger) {
+        this.root = root;
+        this.logger = logger;
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    // True once every directory is registered and no registration has failed
+    public boolean isReliable() {
+        return reliable;
+    }
+
+    public int getWatchedDirectories() {
+        return keys.size();
+    }
+
+    // For writes made by the plugin itself: caches must not wait for the watch
+    // event, which arrives later (or never, if watching is unavailable)
+    public void notifyChanged(Path path) {
+        fire(path);
+    }
+
+    public synchronized void start() {
+        if (thread != null) return;
+        try {
+            service = FileSystems.getDefault().newWatchService();
+        } catch (IOException | UnsupportedOperationException e) {
+            logger.warning("File watching unavailable, caches fall back to checking file times: " + e.getMessage());
+            return;
+        }
+        thread = new Thread(this::run, "MCP-File-Watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public synchronized void close() {
+        reliable = false;
+        if (service != null) {
+            try {
+                service.close();
+            } catch (IOException ignored) {
+                // Closing anyway
+            }
+        }
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    private void run() {
+        // Registering a large tree takes a while, so it happens here rather than in start()
+        reliable = registerTree(root);
+        WatchService watcher = service;
+        try {
+            while (true) {
+                WatchKey key = watcher.take();
+                Path dir = keys.get(key);
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (dir == null) break;
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        fireOverflow(dir);
+                        continue;
+                    }
+                    Path changed = dir.resolve((Path) event.context());
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE
+                            && Files.isDirectory(changed, LinkOption.NOFOLLOW_LINKS)) {
+                        // Files may have been created in it before it was registered
+                        if (!registerTree(changed)) reliable = false;
+                    }
+                    fire(changed);
+                }
+                if (!key.reset()) {
+                    keys.remove(key);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Stopped
+        }
+    }
+
+    private boolean registerTree(Path start) {
+        boolean[] complete = {true};
+        try {
+            Files.walkFileTree(start, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    try {
+                        keys.put(dir.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                                StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY), dir);
+                        return FileVisitResult.CONTINUE;
+                    } catch (IOException e) {
+                        if (complete[0]) {
+                            logger.warning("Cannot watch " + dir + " (" + e.getMessage()
+                                    + "); file caches fall back to checking file times");
+                        }
+                        complete[0] = false;
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException | ClosedWatchServiceException e) {
+            return false;
+        }
+        return complete[0];
+    }
+
+    private void fire(Path path) {
+        for (Listener listener : listeners) {
+            try {
+                listener.changed(path);
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "File watch listener failed", e);
+            }
+        }
+    }
+
+    private void fireOverflow(Path dir) {
+        for (Listener listener : listeners) {
+            try {
+                listener.overflow(dir);
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "File watch listener failed", e);
+            }
+        }
+    }
+}
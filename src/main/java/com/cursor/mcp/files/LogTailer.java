@@ -0,0 +1,316 @@
+package com.cursor.mcp.files;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Tails server logs without reading them whole. Recent lines are found by
+ * seeking backwards from the end in fixed-size blocks; follow-up calls pass the
+ * returned cursor and only read bytes appended since.
+ */
+public class LogTailer {
+    private static final int BLOCK_SIZE = 64 * 1024;
+    private static final int MAX_LINE_BYTES = 64 * 1024;
+
+    // [12:34:56] [Server thread/INFO]: ...   (latest.log)
+    // [12:34:56 INFO]: ...                    (console-style appenders)
+    private static final Pattern HEADER = Pattern.compile(
+            "^\\[\\d{2}:\\d{2}:\\d{2}(?:\\] \\[[^\\]]*/| )([A-Z]+)\\]");
+
+    public Tail tail(Path log, int lines, String since, String minLevel, Pattern filter) throws IOException {
+        int threshold = levelRank(minLevel);
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.READ)) {
+            long identity = identityOf(log);
+            long size = channel.size();
+            long end = lastLineEnd(channel, size);
+
+            if (since != null && !since.isEmpty()) {
+                long offset = 0;
+                long[] cursor = decodeCursor(since);
+                // A different identity or a shrunk file means the log was rotated
+                if (cursor != null && cursor[0] == identity && cursor[1] <= end) {
+                    offset = cursor[1];
+                }
+                return readForward(channel, offset, end, identity, lines, threshold, filter);
+            }
+            return readBackward(channel, end, identity, lines, threshold, filter);
+        }
+    }
+
+    private Tail readBackward(FileChannel channel, long end, long identity, int lines, int threshold, Pattern filter)
+            throws IOException {
+        ReverseLineReader reader = new ReverseLineReader(channel, end);
+        Deque<String> collected = new ArrayDeque<>();
+        List<String> entry = new ArrayList<>();
+        int count = 0;
+
+        // Walking backwards, continuation lines (stack traces) arrive before
+        // their header, so they are buffered until the header shows up.
+        String line;
+        while (count < lines && (line = reader.previousLine()) != null) {
+            entry.add(line);
+            Matcher header = HEADER.matcher(line);
+            boolean isHeader = header.find();
+            if (isHeader || reader.atStart()) {
+                String level = isHeader ? header.group(1) : null;
+                if (accepts(entry, level, threshold, filter)) {
+                    for (String l : entry) {
+                        collected.addFirst(l);
+                        count++;
+                    }
+                }
+                entry.clear();
+            }
+        }
+
+        List<String> result = new ArrayList<>(collected);
+        if (result.size() > lines) {
+            result = result.subList(result.size() - lines, result.size());
+        }
+        return new Tail(result, encodeCursor(identity, end));
+    }
+
+    private Tail readForward(FileChannel channel, long offset, long end, long identity, int lines, int threshold,
+                             Pattern filter) throws IOException {
+        List<String> result = new ArrayList<>();
+        List<String> entry = new ArrayList<>();
+        String entryLevel = null;
+        long entryStart = offset;
+        long lineOffset = offset;
+        long position = offset;
+
+        ByteBuffer buffer = ByteBuffer.allocate(BLOCK_SIZE);
+        byte[] pending = new byte[0];
+        while (position < end) {
+            buffer.clear();
+            buffer.limit((int) Math.min(BLOCK_SIZE, end - position));
+            int n = channel.read(buffer, position);
+            if (n <= 0) break;
+            byte[] block = buffer.array();
+            int lineStart = 0;
+            for (int i = 0; i < n; i++) {
+                if (block[i] != '\n') continue;
+                String line = decode(concat(pending, block, lineStart, i));
+                long thisLine = lineOffset;
+                pending = new byte[0];
+                lineStart = i + 1;
+                lineOffset = position + lineStart;
+
+                Matcher header = HEADER.matcher(line);
+                boolean isHeader = header.find();
+                if (isHeader && !entry.isEmpty()) {
+                    if (accepts(entry, entryLevel, threshold, filter)) {
+                        // Stop on an entry boundary so the cursor never splits an entry
+                        if (result.size() + entry.size() > lines && !result.isEmpty()) {
+                            return new Tail(result, encodeCursor(identity, entryStart));
+                        }
+                        result.addAll(entry);
+                    }
+                    entry.clear();
+                }
+                if (entry.isEmpty()) {
+                    entryStart = thisLine;
+                    entryLevel = isHeader ? header.group(1) : null;
+                }
+                entry.add(line);
+            }
+            pending = concat(pending, block, lineStart, n);
+            position += n;
+        }
+
+        if (!entry.isEmpty() && accepts(entry, entryLevel, threshold, filter)) {
+            if (result.size() + entry.size() > lines && !result.isEmpty()) {
+                return new Tail(result, encodeCursor(identity, entryStart));
+            }
+            result.addAll(entry);
+        }
+        return new Tail(result, encodeCursor(identity, end));
+    }
+
+    private static boolean accepts(List<String> entry, String level, int threshold, Pattern filter) {
+        if (threshold > 0) {
+            int rank;
+            try {
+                rank = levelRank(level);
+            } catch (IllegalArgumentException e) {
+                rank = 0;
+            }
+            if (rank < threshold) return false;
+        }
+        if (filter == null) {
+            return true;
+        }
+        for (String line : entry) {
+            if (filter.matcher(line).find()) return true;
+        }
+        return false;
+    }
+
+    static int levelRank(String level) {
+        if (level == null || level.isEmpty()) return 0;
+        switch (level.toUpperCase(Locale.ROOT)) {
+            case "TRACE":
+            case "FINEST":
+            case "FINER":
+                return 1;
+            case "DEBUG":
+            case "FINE":
+            case "CONFIG":
+                return 2;
+            case "INFO":
+                return 3;
+            case "WARN":
+            case "WARNING":
+                return 4;
+            case "ERROR":
+            case "SEVERE":
+                return 5;
+            case "FATAL":
+                return 6;
+            default:
+                throw new IllegalArgumentException("Unknown log level: " + level);
+        }
+    }
+
+    // Cursor is "<file identity>.<byte offset>" in base 36. Clients should treat
+    // it as opaque.
+    private static String encodeCursor(long identity, long offset) {
+        return Long.toString(identity, 36) + "." + Long.toString(offset, 36);
+    }
+
+    private static long[] decodeCursor(String cursor) {
+        int dot = cursor.indexOf('.');
+        if (dot < 0) return null;
+        try {
+            return new long[]{Long.parseLong(cursor.substring(0, dot), 36), Long.parseLong(cursor.substring(dot + 1), 36)};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static long identityOf(Path log) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(log, BasicFileAttributes.class);
+        // Inode where available; Windows has no file key but does record creation time
+        Object key = attrs.fileKey();
+        int hash = key != null ? key.hashCode() : Long.hashCode(attrs.creationTime().toMillis());
+        return hash & 0xFFFFFFFFL;
+    }
+
+    // Offset just past the last newline; a line still being written is left
+    // for the next call.
+    private static long lastLineEnd(FileChannel channel, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BLOCK_SIZE);
+        long position = size;
+        while (position > 0) {
+            long start = Math.max(0, position - BLOCK_SIZE);
+            buffer.clear();
+            buffer.limit((int) (position - start));
+            channel.read(buffer, start);
+            byte[] block = buffer.array();
+            for (int i = buffer.position() - 1; i >= 0; i--) {
+                if (block[i] == '\n') return start + i + 1;
+            }
+            position = start;
+        }
+        return 0;
+    }
+
+    private static byte[] concat(byte[] head, byte[] block, int from, int to) {
+        int len = Math.min(to - from, MAX_LINE_BYTES - head.length);
+        if (len <= 0) return head;
+        byte[] out = Arrays.copyOf(head, head.length + len);
+        System.arraycopy(block, from, out, head.length, len);
+        return out;
+    }
+
+    private static String decode(byte[] bytes) {
+        int len = bytes.length;
+        if (len > 0 && bytes[len - 1] == '\r') len--;
+        return new String(bytes, 0, len, StandardCharsets.UTF_8);
+    }
+
+    public static final class Tail {
+        public final List<String> lines;
+        public final String cursor;
+
+        Tail(List<String> lines, String cursor) {
+            this.lines = lines;
+            this.cursor = cursor;
+        }
+    }
+
+    private static final class ReverseLineReader {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BLOCK_SIZE);
+        private long blockStart;
+        private int blockEnd;
+        private byte[] pending = new byte[0];
+
+        ReverseLineReader(FileChannel channel, long end) {
+            this.channel = channel;
+            // Skip the newline terminating the last complete line
+            this.blockStart = Math.max(0, end - 1);
+            this.blockEnd = 0;
+        }
+
+        boolean atStart() {
+            return blockStart == 0 && blockEnd == 0 && pending.length == 0;
+        }
+
+        String previousLine() throws IOException {
+            while (true) {
+                byte[] block = buffer.array();
+                for (int i = blockEnd - 1; i >= 0; i--) {
+                    if (block[i] == '\n') {
+                        String line = decode(prepend(block, i + 1, blockEnd));
+                        blockEnd = i;
+                        return line;
+                    }
+                }
+                // No newline left in this block: keep the fragment and load the previous block
+                pending = prepend(block, 0, blockEnd);
+                blockEnd = 0;
+                if (blockStart == 0) {
+                    if (pending.length == 0) return null;
+                    String line = decode(pending);
+                    pending = new byte[0];
+                    return line;
+                }
+                long start = Math.max(0, blockStart - BLOCK_SIZE);
+                buffer.clear();
+                buffer.limit((int) (blockStart - start));
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, start + buffer.position()) < 0) break;
+                }
+                blockEnd = buffer.position();
+                blockStart = start;
+            }
+        }
+
+        private byte[] prepend(byte[] block, int from, int to) {
+            // Very long lines keep only their leading MAX_LINE_BYTES, so the timestamp
+            // and level header survives
+            int len = Math.min(to - from, MAX_LINE_BYTES);
+            int keep = Math.min(pending.length, MAX_LINE_BYTES - len);
+            byte[] out = new byte[len + keep];
+            System.arraycopy(block, to - len, out, 0, len);
+            System.arraycopy(pending, 0, out, len, keep);
+            pending = new byte[0];
+            return out;
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package com.cursor.mcp.files;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reads windows of large files through positioned FileChannel reads so a page
+ * costs the same regardless of how big the file is. Line-based reads use a
+ * sparse index (one checkpoint every {@link #CHECKPOINT_INTERVAL} lines) that is
+ * cached per file and extended incrementally when the file grows.
+ */
+public class PagedFileReader {
+    static final int CHECKPOINT_INTERVAL = 256;
+    private static final int SCAN_BUFFER = 64 * 1024;
+    private static final int FINGERPRINT_BYTES = 64;
+    private static final int MAX_CACHED_INDEXES = 64;
+
+    private final Map<Path, LineIndex> indexes = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, LineIndex> eldest) {
+            return size() > MAX_CACHED_INDEXES;
+        }
+    };
+
+    public Page readBytes(Path path, long offset, int length) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long start = Math.min(Math.max(0, offset), size);
+            int toRead = (int) Math.min(length, size - start);
+
+            ByteBuffer buffer = ByteBuffer.allocate(toRead);
+            readFully(channel, buffer, start);
+            byte[] bytes = buffer.array();
+
+            // Never split a UTF-8 sequence: skip leading continuation bytes and
+            // drop a trailing sequence that is cut off by the window.
+            int from = 0;
+            while (from < bytes.length && from < 3 && start + from > 0 && isContinuation(bytes[from])) {
+                from++;
+            }
+            int to = bytes.length;
+            if (start + to < size) {
+                to = trimIncompleteSequence(bytes, from, to);
+            }
+
+            String text = new String(bytes, from, to - from, StandardCharsets.UTF_8);
+            return new Page(text, start + from, start + to, size, -1, -1, -1);
+        }
+    }
+
+    public Page readLines(Path path, long startLine, int lineCount, int maxBytes) throws IOException {
+        if (startLine < 1) {
+            throw new IllegalArgumentException("startLine must be >= 1");
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            LineIndex index = indexFor(path, channel);
+            long position;
+            long line;
+            synchronized (index) {
+                index.extendTo(channel, startLine);
+                int checkpoint = (int) Math.min((startLine - 1) / CHECKPOINT_INTERVAL, index.checkpointCount - 1);
+                position = index.checkpoints[checkpoint];
+                line = (long) checkpoint * CHECKPOINT_INTERVAL + 1;
+            }
+
+            long size = channel.size();
+            ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.min(maxBytes, SCAN_BUFFER));
+            long pageStart = -1;
+            long linesRead = 0;
+            byte last = '\n';
+            boolean truncated = false;
+
+            scan:
+            while (position < size) {
+                buffer.clear();
+                int n = channel.read(buffer, position);
+                if (n <= 0) break;
+                byte[] chunk = buffer.array();
+                for (int i = 0; i < n; i++) {
+                    byte b = chunk[i];
+                    if (line >= startLine) {
+                        if (pageStart < 0) pageStart = position + i;
+                        if (out.size() >= maxBytes) {
+                            truncated = true;
+                            position += i;
+                            break scan;
+                        }
+                        out.write(b);
+                        last = b;
+                    }
+                    if (b == '\n') {
+                        if (line >= startLine && ++linesRead >= lineCount) {
+                            position += i + 1;
+                            break scan;
+                        }
+                        line++;
+                    }
+                }
+                position += n;
+            }
+
+            if (pageStart < 0) {
+                pageStart = Math.min(position, size);
+            }
+            if (position >= size && out.size() > 0 && last != '\n') {
+                // Last line of the file has no trailing newline but still counts
+                linesRead++;
+            }
+            byte[] bytes = out.toByteArray();
+            int end = truncated ? trimIncompleteSequence(bytes, 0, bytes.length) : bytes.length;
+            String text = new String(bytes, 0, end, StandardCharsets.UTF_8);
+
+            long totalLines;
+            synchronized (index) {
+                totalLines = index.complete ? index.totalLines : -1;
+            }
+            long nextLine = position < size && !truncated ? startLine + linesRead : -1;
+            return new Page(text, pageStart, pageStart + end, size, startLine, nextLine, totalLines);
+        }
+    }
+
+    private LineIndex indexFor(Path path, FileChannel channel) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        long size = attrs.size();
+        long modified = attrs.lastModifiedTime().toMillis();
+
+        synchronized (indexes) {
+            LineIndex index = indexes.get(path);
+            if (index != null) {
+                synchronized (index) {
+                    if (index.size == size && index.modified == modified) {
+                        return index;
+                    }
+                    // Appended-to files (logs) keep their checkpoints as long as
+                    // the bytes we already indexed are unchanged.
+                    if (size >= index.indexedBytes && index.prefixUnchanged(channel)) {
+                        index.size = size;
+                        index.modified = modified;
+                        index.complete = false;
+                        return index;
+                    }
+                }
+            }
+            index = new LineIndex(size, modified);
+            indexes.put(path, index);
+            return index;
+        }
+    }
+
+    public void invalidate(Path path) {
+        synchronized (indexes) {
+            indexes.remove(path);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + buffer.position());
+            if (n < 0) break;
+        }
+    }
+
+    private static boolean isContinuation(byte b) {
+        return (b & 0xC0) == 0x80;
+    }
+
+    private static int trimIncompleteSequence(byte[] bytes, int from, int to) {
+        // Walk back to the start of the last sequence and check its declared length
+        int i = to - 1;
+        int back = 0;
+        while (i >= from && back < 3 && isContinuation(bytes[i])) {
+            i--;
+            back++;
+        }
+        if (i < from) return to;
+        int lead = bytes[i] & 0xFF;
+        int expected = lead >= 0xF0 ? 4 : lead >= 0xE0 ? 3 : lead >= 0xC0 ? 2 : 1;
+        return (to - i) < expected ? i : to;
+    }
+
+    public static final class Page {
+        public final String text;
+        public final long startByte;
+        public final long endByte;
+        public final long fileSize;
+        public final long startLine;
+        public final long nextLine;
+        public final long totalLines;
+
+        Page(String text, long startByte, long endByte, long fileSize, long startLine, long nextLine, long totalLines) {
+            this.text = text;
+            this.startByte = startByte;
+            this.endByte = endByte;
+            this.fileSize = fileSize;
+            this.startLine = startLine;
+            this.nextLine = nextLine;
+            this.totalLines = totalLines;
+        }
+
+        public boolean hasMore() {
+            return endByte < fileSize;
+        }
+    }
+
+    private static final class LineIndex {
+        long size;
+        long modified;
+        long[] checkpoints = new long[16];
+        int checkpointCount = 1; // checkpoints[0] = 0, the start of line 1
+        long lineCount;          // newlines seen in [0, indexedBytes)
+        long indexedBytes;
+        long totalLines;
+        byte[] fingerprint = new byte[0];
+        boolean complete;
+
+        LineIndex(long size, long modified) {
+            this.size = size;
+            this.modified = modified;
+        }
+
+        void extendTo(FileChannel channel, long targetLine) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER);
+            long fileSize = channel.size();
+            while (lineCount + 1 < targetLine && indexedBytes < fileSize) {
+                buffer.clear();
+                int n = channel.read(buffer, indexedBytes);
+                if (n <= 0) break;
+                byte[] chunk = buffer.array();
+                for (int i = 0; i < n; i++) {
+                    if (chunk[i] == '\n') {
+                        lineCount++;
+                        if (lineCount % CHECKPOINT_INTERVAL == 0) {
+                            addCheckpoint(indexedBytes + i + 1);
+                        }
+                    }
+                }
+                indexedBytes += n;
+            }
+            complete = indexedBytes >= fileSize;
+            if (complete) {
+                // A final line without a trailing newline is still a line
+                boolean partialLast = fileSize > 0 && lastByte(channel, fileSize) != '\n';
+                totalLines = lineCount + (partialLast ? 1 : 0);
+            }
+            fingerprint = readFingerprint(channel, indexedBytes);
+        }
+
+        boolean prefixUnchanged(FileChannel channel) throws IOException {
+            return Arrays.equals(fingerprint, readFingerprint(channel, indexedBytes));
+        }
+
+        private void addCheckpoint(long offset) {
+            if (checkpointCount == checkpoints.length) {
+                checkpoints = Arrays.copyOf(checkpoints, checkpoints.length * 2);
+            }
+            checkpoints[checkpointCount++] = offset;
+        }
+
+        private static byte lastByte(FileChannel channel, long size) throws IOException {
+            ByteBuffer one = ByteBuffer.allocate(1);
+            channel.read(one, size - 1);
+            return one.get(0);
+        }
+
+        private static byte[] readFingerprint(FileChannel channel, long end) throws IOException {
+            int len = (int) Math.min(FINGERPRINT_BYTES, end);
+            ByteBuffer buffer = ByteBuffer.allocate(len);
+            readFully(channel, buffer, end - len);
+            return buffer.array();
+        }
+    }
+}
@@ -0,0 +1,386 @@
+package com.cursor.mcp.files;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Applies small edits to text files in place: a unified diff or a list of
+ * line-range replacements. The file is only rewritten (through a temp file
+ * and a rename) when every hunk applies, and the caller gets back just the
+ * changed regions instead of the whole file.
+ *
+ * <p>Line endings of the file are kept: lines are split on {@code \n}, a
+ * trailing {@code \r} stays part of the line, and new lines get the file's
+ * dominant ending.
+ */
+public class TextPatcher {
+    private static final Pattern HUNK_HEADER = Pattern.compile("^@@ -(\\d+)(?:,(\\d+))? \\+(\\d+)(?:,(\\d+))? @@.*");
+    private static final int CONTEXT_LINES = 3;
+    // How far (in lines) a hunk may have drifted from the line its header names
+    private static final int MAX_DRIFT = 1000;
+
+    private final long maxFileBytes;
+
+    public TextPatcher(long maxFileBytes) {
+        this.maxFileBytes = maxFileBytes;
+    }
+
+    /** Replaces lines startLine..endLine (1-based, inclusive); endLine = startLine - 1 inserts. */
+    public static final class Edit {
+        final int startLine;
+        final int endLine;
+        final String text;
+
+        public Edit(int startLine, int endLine, String text) {
+            this.startLine = startLine;
+            this.endLine = endLine;
+            this.text = text;
+        }
+    }
+
+    public static final class Result {
+        public final String sha256;
+        public final long size;
+        public final int added;
+        public final int removed;
+        /** The changed regions of the new file as unified diff hunks. */
+        public final String hunks;
+        public final int hunkCount;
+
+        Result(String sha256, long size, int added, int removed, String hunks, int hunkCount) {
+            this.sha256 = sha256;
+            this.size = size;
+            this.added = added;
+            this.removed = removed;
+            this.hunks = hunks;
+            this.hunkCount = hunkCount;
+        }
+    }
+
+    public synchronized Result applyDiff(Path path, String baseSha256, String diff) throws IOException {
+        Text text = load(path, baseSha256);
+        String[] lines = diff.split("\n", -1);
+        Builder out = new Builder(text);
+        int i = 0;
+        int hunkNumber = 0;
+        while (i < lines.length) {
+            Matcher header = HUNK_HEADER.matcher(stripCr(lines[i]));
+            if (!header.matches()) {
+                i++; // file headers, comments and blank lines between hunks
+                continue;
+            }
+            hunkNumber++;
+            int oldStart = Integer.parseInt(header.group(1));
+            int oldCount = header.group(2) != null ? Integer.parseInt(header.group(2)) : 1;
+            int newCount = header.group(4) != null ? Integer.parseInt(header.group(4)) : 1;
+
+            List<String> body = new ArrayList<>();
+            List<String> old = new ArrayList<>();
+            int oldSeen = 0;
+            int newSeen = 0;
+            boolean oldNoEol = false;
+            boolean newNoEol = false;
+            char last = ' ';
+            for (i++; i < lines.length && (oldSeen < oldCount || newSeen < newCount || lines[i].startsWith("\\")); i++) {
+                String line = stripCr(lines[i]);
+                char kind = line.isEmpty() ? ' ' : line.charAt(0);
+                if (kind == '\\') {
+                    if (last != '+') oldNoEol = true;
+                    if (last != '-') newNoEol = true;
+                    continue;
+                }
+                String content = line.isEmpty() ? "" : line.substring(1);
+                if (kind == ' ' || kind == '-') {
+                    old.add(content);
+                    oldSeen++;
+                }
+                if (kind == ' ' || kind == '+') newSeen++;
+                if (kind != ' ' && kind != '-' && kind != '+') {
+                    throw new IllegalArgumentException("Hunk " + hunkNumber + ": unexpected line \"" + line + "\"");
+                }
+                body.add(kind + content);
+                last = kind;
+            }
+            if (oldSeen != oldCount || newSeen != newCount) {
+                throw new IllegalArgumentException("Hunk " + hunkNumber + " is truncated: header says -" + oldCount
+                        + " +" + newCount + " lines");
+            }
+
+            // With no old lines the header names the line to insert after
+            int expected = oldCount == 0 ? oldStart : oldStart - 1;
+            int at = text.find(old, expected, out.consumed());
+            if (at < 0) {
+                throw new IllegalArgumentException("Hunk " + hunkNumber + " does not apply: the lines at " + oldStart
+                        + " do not match. Re-read the file and rebuild the diff.");
+            }
+            out.copyTo(at);
+            for (String line : body) {
+                char kind = line.charAt(0);
+                if (kind == ' ') {
+                    out.keep();
+                } else if (kind == '-') {
+                    out.remove();
+                } else {
+                    out.add(line.substring(1));
+                }
+            }
+            if (out.consumed() == text.lines.size()) {
+                if (newNoEol) {
+                    out.trailingNewline = false;
+                } else if (oldNoEol) {
+                    out.trailingNewline = true;
+                }
+            }
+        }
+        if (hunkNumber == 0) {
+            throw new IllegalArgumentException("No hunks found; expected a unified diff with @@ -a,b +c,d @@ headers");
+        }
+        return out.write(path);
+    }
+
+    public synchronized Result applyEdits(Path path, String baseSha256, List<Edit> edits) throws IOException {
+        if (edits.isEmpty()) {
+            throw new IllegalArgumentException("No edits given");
+        }
+        Text text = load(path, baseSha256);
+        List<Edit> sorted = new ArrayList<>(edits);
+        sorted.sort(Comparator.comparingInt((Edit e) -> e.startLine).thenComparingInt(e -> e.endLine));
+        Builder out = new Builder(text);
+        int previousEnd = 0;
+        for (Edit edit : sorted) {
+            int size = text.lines.size();
+            if (edit.startLine < 1 || edit.endLine < edit.startLine - 1 || edit.endLine > size) {
+                throw new IllegalArgumentException("Edit " + edit.startLine + "-" + edit.endLine
+                        + " is outside the file (" + size + " lines)");
+            }
+            if (edit.startLine <= previousEnd) {
+                throw new IllegalArgumentException("Edits overlap at line " + edit.startLine);
+            }
+            out.copyTo(edit.startLine - 1);
+            for (int line = edit.startLine; line <= edit.endLine; line++) {
+                out.remove();
+            }
+            if (!edit.text.isEmpty()) {
+                String body = edit.text.endsWith("\n") ? edit.text.substring(0, edit.text.length() - 1) : edit.text;
+                for (String line : body.split("\n", -1)) {
+                    out.add(stripCr(line));
+                }
+            }
+            previousEnd = Math.max(previousEnd, edit.endLine);
+        }
+        return out.write(path);
+    }
+
+    private Text load(Path path, String baseSha256) throws IOException {
+        if (Files.size(path) > maxFileBytes) {
+            throw new IllegalArgumentException("File is larger than the " + maxFileBytes + " bytes that can be patched");
+        }
+        byte[] bytes = Files.readAllBytes(path);
+        String sha256 = sha256(bytes);
+        if (baseSha256 != null && !baseSha256.isBlank() && !baseSha256.trim().equalsIgnoreCase(sha256)) {
+            throw new IllegalArgumentException("File changed: expected sha256 " + baseSha256.trim() + " but it is "
+                    + sha256 + ". Re-read the file and rebuild the patch.");
+        }
+        String content;
+        try {
+            content = StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(ByteBuffer.wrap(bytes)).toString();
+        } catch (CharacterCodingException e) {
+            throw new IllegalArgumentException("Not a UTF-8 text file; use the binary file tools");
+        }
+        return new Text(content);
+    }
+
+    private static String stripCr(String line) {
+        return line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+    }
+
+    static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // The file as lines without their \n; lines keep a trailing \r so CRLF
+    // files compare by content and are written back unchanged
+    private static final class Text {
+        final List<String> lines = new ArrayList<>();
+        final boolean trailingNewline;
+        final String eol;
+
+        Text(String content) {
+            int crlf = 0;
+            int start = 0;
+            int length = content.length();
+            while (start < length) {
+                int end = content.indexOf('\n', start);
+                if (end < 0) end = length;
+                if (end > start && end < length && content.charAt(end - 1) == '\r') crlf++;
+                lines.add(content.substring(start, end));
+                start = end + 1;
+            }
+            trailingNewline = length > 0 && content.charAt(length - 1) == '\n';
+            eol = crlf * 2 > lines.size() ? "\r" : "";
+        }
+
+        String compare(int index) {
+            return stripCr(lines.get(index));
+        }
+
+        // Index of old at or nearest to expected, not before from; -1 if none
+        int find(List<String> old, int expected, int from) {
+            int last = lines.size() - old.size();
+            int start = Math.max(from, Math.min(expected, last));
+            for (int drift = 0; drift <= MAX_DRIFT; drift++) {
+                int after = start + drift;
+                int before = start - drift;
+                if (after > last && before < from) break;
+                if (after <= last && matchesAt(old, after)) return after;
+                if (drift > 0 && before >= from && before <= last && matchesAt(old, before)) return before;
+            }
+            return -1;
+        }
+
+        private boolean matchesAt(List<String> old, int at) {
+            for (int i = 0; i < old.size(); i++) {
+                if (!compare(at + i).equals(old.get(i))) return false;
+            }
+            return true;
+        }
+    }
+
+    // Builds the new file while recording what changed where
+    private static final class Builder {
+        final Text text;
+        final List<String> lines = new ArrayList<>();
+        final List<Change> changes = new ArrayList<>();
+        boolean trailingNewline;
+        int cursor;
+        Change open;
+
+        Builder(Text text) {
+            this.text = text;
+            this.trailingNewline = text.trailingNewline;
+        }
+
+        int consumed() {
+            return cursor;
+        }
+
+        void copyTo(int index) {
+            close();
+            while (cursor < index) {
+                lines.add(text.lines.get(cursor++));
+            }
+        }
+
+        void keep() {
+            close();
+            lines.add(text.lines.get(cursor++));
+        }
+
+        void remove() {
+            change().removed.add(text.lines.get(cursor++));
+        }
+
+        void add(String line) {
+            change().added.add(line + text.eol);
+            lines.add(line + text.eol);
+        }
+
+        private Change change() {
+            if (open == null) {
+                open = new Change(cursor, lines.size());
+                changes.add(open);
+            }
+            return open;
+        }
+
+        private void close() {
+            open = null;
+        }
+
+        Result write(Path path) throws IOException {
+            copyTo(text.lines.size());
+            StringBuilder content = new StringBuilder();
+            for (int i = 0; i < lines.size(); i++) {
+                if (i > 0) content.append('\n');
+                content.append(lines.get(i));
+            }
+            if (trailingNewline && !lines.isEmpty()) {
+                content.append('\n');
+            } else if (content.length() > 0 && content.charAt(content.length() - 1) == '\r') {
+                content.setLength(content.length() - 1); // no line ending at all on the last line
+            }
+            byte[] bytes = content.toString().getBytes(StandardCharsets.UTF_8);
+
+            Path temp = path.resolveSibling("." + path.getFileName() + "." + UUID.randomUUID() + ".part");
+            try {
+                Files.write(temp, bytes, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                ChunkedUploads.moveIntoPlace(temp, path);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+
+            int added = 0;
+            int removed = 0;
+            StringBuilder hunks = new StringBuilder();
+            for (int c = 0; c < changes.size(); c++) {
+                Change change = changes.get(c);
+                added += change.added.size();
+                removed += change.removed.size();
+                int newEnd = change.newStart + change.added.size();
+                int previousEnd = c > 0 ? changes.get(c - 1).newStart + changes.get(c - 1).added.size() : 0;
+                int nextStart = c + 1 < changes.size() ? changes.get(c + 1).newStart : lines.size();
+                int before = Math.max(previousEnd, change.newStart - CONTEXT_LINES);
+                int after = Math.min(nextStart, newEnd + CONTEXT_LINES);
+                int context = change.newStart - before;
+                hunks.append("@@ -").append(change.oldStart - context + 1).append(',')
+                        .append(context + change.removed.size() + (after - newEnd))
+                        .append(" +").append(before + 1).append(',').append(after - before).append(" @@\n");
+                appendLines(hunks, ' ', lines.subList(before, change.newStart));
+                appendLines(hunks, '-', change.removed);
+                appendLines(hunks, '+', change.added);
+                appendLines(hunks, ' ', lines.subList(newEnd, after));
+            }
+            return new Result(sha256(bytes), bytes.length, added, removed, hunks.toString(), changes.size());
+        }
+
+        private static void appendLines(StringBuilder out, char kind, List<String> lines) {
+            for (String line : lines) {
+                out.append(kind).append(stripCr(line)).append('\n');
+            }
+        }
+    }
+
+    private static final class Change {
+        final int oldStart;
+        final int newStart;
+        final List<String> removed = new ArrayList<>();
+        final List<String> added = new ArrayList<>();
+
+        Change(int oldStart, int newStart) {
+            this.oldStart = oldStart;
+            this.newStart = newStart;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.cursor.mcp.logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.logging.LogRecord;
+
+/**
+ * Fixed-size, multi-producer ring of log records. Writers never block: each
+ * claims a sequence number and overwrites the oldest slot. Readers keep their
+ * own cursor and detect records they lost to wrap-around.
+ */
+public class LogRingBuffer {
+    private final AtomicReferenceArray<Entry> slots;
+    private final int mask;
+    private final AtomicLong next = new AtomicLong();
+
+    public LogRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    public void add(LogRecord record) {
+        long seq = next.getAndIncrement();
+        slots.set((int) (seq & mask), new Entry(seq, record));
+    }
+
+    // Sequence number the next record will get; new readers start here
+    public long head() {
+        return next.get();
+    }
+
+    /**
+     * Hands records from {@code cursor} onwards to {@code consumer}, at most
+     * {@code max} of them, and returns the cursor to continue from. Records that
+     * were overwritten before they could be read are counted in {@code lost[0]}.
+     */
+    public long read(long cursor, int max, long[] lost, Consumer<LogRecord> consumer) {
+        long head = next.get();
+        long oldest = head - slots.length();
+        if (cursor < oldest) {
+            lost[0] += oldest - cursor;
+            cursor = oldest;
+        }
+        int read = 0;
+        while (cursor < head && read < max) {
+            Entry entry = slots.get((int) (cursor & mask));
+            if (entry == null || entry.seq < cursor) {
+                // Slot claimed but not yet written; pick it up next time
+                break;
+            }
+            if (entry.seq > cursor) {
+                // Overwritten while we were reading; skip to the oldest live record
+                long oldestNow = next.get() - slots.length();
+                lost[0] += oldestNow - cursor;
+                cursor = oldestNow;
+                continue;
+            }
+            consumer.accept(entry.record);
+            cursor++;
+            read++;
+        }
+        return cursor;
+    }
+
+    private static final class Entry {
+        final long seq;
+        final LogRecord record;
+
+        Entry(long seq, LogRecord record) {
+            this.seq = seq;
+            this.record = record;
+        }
+    }
+}
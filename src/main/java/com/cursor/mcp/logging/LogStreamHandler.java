@@ -0,0 +1,28 @@
+package com.cursor.mcp.logging;
+
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+
+// Copies every published record into the ring buffer. Formatting is deferred to
+// the flush thread so logging threads (including the main thread) only pay for
+// one slot write.
+public class LogStreamHandler extends Handler {
+    private final LogRingBuffer buffer;
+
+    public LogStreamHandler(LogRingBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (record != null && isLoggable(record)) {
+            buffer.add(record);
+        }
+    }
+
+    @Override
+    public void flush() {}
+
+    @Override
+    public void close() throws SecurityException {}
+}
@@ -0,0 +1,214 @@
+package com.cursor.mcp.logging;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.logging.Formatter;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
+
+/**
+ * Pushes server log records to subscribed MCP sessions as
+ * {@code notifications/message}. Records are taken from an in-memory ring
+ * buffer and sent in batches every flush interval, so streaming never touches
+ * the log files.
+ */
+public class LogStreamer {
+    // Session id to where its messages go, null once the session is gone
+    private final Function<String, Consumer<String>> sessions;
+    private final LogRingBuffer buffer;
+    private final LogStreamHandler handler;
+    private final Map<String, Subscription> subscriptions = new ConcurrentHashMap<>();
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Formatter formatter = new SimpleFormatter();
+    private final long flushIntervalMs;
+    private final int maxBatch;
+    private ScheduledExecutorService flusher;
+
+    public LogStreamer(Function<String, Consumer<String>> sessions, int bufferSize, long flushIntervalMs, int maxBatch) {
+        this.sessions = sessions;
+        this.buffer = new LogRingBuffer(bufferSize);
+        this.handler = new LogStreamHandler(buffer);
+        this.flushIntervalMs = flushIntervalMs;
+        this.maxBatch = maxBatch;
+    }
+
+    public void install() {
+        // The root logger sees records from the server and from every plugin logger
+        Logger.getLogger("").addHandler(handler);
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "MCP-LogStream");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public void uninstall() {
+        Logger.getLogger("").removeHandler(handler);
+        if (flusher != null) {
+            flusher.shutdownNow();
+        }
+        subscriptions.clear();
+    }
+
+    public void subscribe(String sessionId, Level minLevel, List<String> loggers, int backlog) {
+        long start = Math.max(0, buffer.head() - Math.max(0, backlog));
+        Subscription existing = subscriptions.get(sessionId);
+        Subscription subscription = new Subscription(minLevel, loggers,
+                existing != null && backlog == 0 ? existing.cursor : start);
+        subscriptions.put(sessionId, subscription);
+    }
+
+    public boolean unsubscribe(String sessionId) {
+        return subscriptions.remove(sessionId) != null;
+    }
+
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    private void flush() {
+        for (Map.Entry<String, Subscription> entry : subscriptions.entrySet()) {
+            Consumer<String> session = sessions.apply(entry.getKey());
+            if (session == null) {
+                subscriptions.remove(entry.getKey());
+                continue;
+            }
+            try {
+                drain(session, entry.getValue());
+            } catch (Exception e) {
+                // Never log from here: the record would come straight back to us
+                subscriptions.remove(entry.getKey());
+            }
+        }
+    }
+
+    private void drain(Consumer<String> session, Subscription subscription) {
+        while (true) {
+            List<LogRecord> batch = new ArrayList<>();
+            long[] lost = {0};
+            long before = subscription.cursor;
+            subscription.cursor = buffer.read(before, maxBatch, lost, record -> {
+                if (subscription.accepts(record)) {
+                    batch.add(record);
+                }
+            });
+            if (!batch.isEmpty() || lost[0] > 0) {
+                session.accept(createNotification(batch, lost[0]));
+            }
+            if (subscription.cursor - before < maxBatch) {
+                return;
+            }
+        }
+    }
+
+    private String createNotification(List<LogRecord> batch, long dropped) {
+        ObjectNode notification = mapper.createObjectNode();
+        notification.put("jsonrpc", "2.0");
+        notification.put("method", "notifications/message");
+        ObjectNode params = notification.putObject("params");
+
+        int highest = Level.ALL.intValue();
+        ObjectNode data = mapper.createObjectNode();
+        ArrayNode records = data.putArray("records");
+        for (LogRecord record : batch) {
+            highest = Math.max(highest, record.getLevel().intValue());
+            ObjectNode node = records.addObject();
+            node.put("time", record.getMillis());
+            node.put("level", record.getLevel().getName());
+            if (record.getLoggerName() != null && !record.getLoggerName().isEmpty()) {
+                node.put("logger", record.getLoggerName());
+            }
+            String message = formatter.formatMessage(record);
+            if (record.getThrown() != null) {
+                message = message + "\n" + record.getThrown();
+            }
+            node.put("message", message);
+        }
+        if (dropped > 0) {
+            data.put("dropped", dropped);
+        }
+
+        params.put("level", toMcpLevel(highest));
+        params.put("logger", "server");
+        params.set("data", data);
+        return notification.toString();
+    }
+
+    private static String toMcpLevel(int julLevel) {
+        if (julLevel >= Level.SEVERE.intValue()) return "error";
+        if (julLevel >= Level.WARNING.intValue()) return "warning";
+        if (julLevel >= Level.INFO.intValue()) return "info";
+        return "debug";
+    }
+
+    // Accepts MCP (RFC 5424) level names as well as JUL and log4j ones
+    public static Level parseLevel(String name) {
+        switch (name.toLowerCase(Locale.ROOT)) {
+            case "debug":
+            case "fine":
+            case "trace":
+                return Level.FINE;
+            case "all":
+            case "finest":
+                return Level.ALL;
+            case "info":
+            case "notice":
+                return Level.INFO;
+            case "warn":
+            case "warning":
+                return Level.WARNING;
+            case "error":
+            case "severe":
+            case "critical":
+            case "alert":
+            case "emergency":
+                return Level.SEVERE;
+            default:
+                throw new IllegalArgumentException("Unknown log level: " + name);
+        }
+    }
+
+    private static final class Subscription {
+        final int minLevel;
+        final List<String> loggers;
+        volatile long cursor;
+
+        Subscription(Level minLevel, List<String> loggers, long cursor) {
+            this.minLevel = minLevel.intValue();
+            this.loggers = new ArrayList<>();
+            for (String logger : loggers) {
+                this.loggers.add(logger.toLowerCase(Locale.ROOT));
+            }
+            this.cursor = cursor;
+        }
+
+        boolean accepts(LogRecord record) {
+            if (record.getLevel().intValue() < minLevel) {
+                return false;
+            }
+            if (loggers.isEmpty()) {
+                return true;
+            }
+            String name = record.getLoggerName() == null ? "" : record.getLoggerName().toLowerCase(Locale.ROOT);
+            for (String logger : loggers) {
+                if (name.contains(logger)) return true;
+            }
+            return false;
+        }
+    }
+}
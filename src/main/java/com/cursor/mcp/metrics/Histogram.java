@@ -0,0 +1,97 @@
+package com.cursor.mcp.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed log-scale buckets (each twice the previous one) with lock-free
+ * recording. Quantiles are estimated from bucket upper bounds, so they are
+ * accurate to within a factor of two, which is enough to tell a 2 ms call from
+ * a 200 ms one.
+ */
+public final class Histogram {
+    private final long[] bounds;
+    private final AtomicLongArray counts;
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    private Histogram(long first, int buckets) {
+        this.bounds = new long[buckets];
+        for (int i = 0; i < buckets; i++) {
+            bounds[i] = first << i;
+        }
+        // One extra slot for values above the last bound
+        this.counts = new AtomicLongArray(buckets + 1);
+    }
+
+    // 1 us up to ~16 s, in nanoseconds
+    public static Histogram latency() {
+        return new Histogram(1_000L, 25);
+    }
+
+    // 64 bytes up to 1 GiB
+    public static Histogram bytes() {
+        return new Histogram(64L, 25);
+    }
+
+    public void record(long value) {
+        if (value < 0) value = 0;
+        int index = Arrays.binarySearch(bounds, value);
+        counts.incrementAndGet(index >= 0 ? index : -index - 1);
+        sum.add(value);
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // retry
+        }
+    }
+
+    public long count() {
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    public long sum() {
+        return sum.sum();
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    // Upper bound of the bucket holding the q-th value, capped at the real maximum
+    public long quantile(double q) {
+        long total = count();
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(q * total));
+        long seen = 0;
+        for (int i = 0; i < bounds.length; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(bounds[i], max.get());
+            }
+        }
+        return max.get();
+    }
+
+    int bucketCount() {
+        return bounds.length;
+    }
+
+    long bound(int bucket) {
+        return bounds[bucket];
+    }
+
+    // Per-bucket counts, the last entry being the overflow bucket
+    long[] snapshot() {
+        long[] snapshot = new long[counts.length()];
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = counts.get(i);
+        }
+        return snapshot;
+    }
+}
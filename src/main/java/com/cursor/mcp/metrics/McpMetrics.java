@@ -0,0 +1,200 @@
+package com.cursor.mcp.metrics;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Counters and histograms for the MCP server. Recording is lock-free and done by
+ * whichever thread finishes the work; the data is exported as Prometheus text
+ * on {@code /metrics} and summarised by the {@code get_metrics} tool.
+ */
+public class McpMetrics {
+    private static final double NANOS = 1e-9;
+
+    private final Map<String, CallStats> methods = new ConcurrentHashMap<>();
+    private final Map<String, CallStats> tools = new ConcurrentHashMap<>();
+    private final Histogram mainThreadWait = Histogram.latency();
+    private final Histogram mainThreadRun = Histogram.latency();
+    private final Histogram requestBytes = Histogram.bytes();
+    private final Histogram responseBytes = Histogram.bytes();
+    private final List<Gauge> gauges = new CopyOnWriteArrayList<>();
+
+    public void recordMethod(String method, long nanos, boolean error) {
+        methods.computeIfAbsent(method, k -> new CallStats()).record(nanos, error);
+    }
+
+    public void recordTool(String tool, long nanos, boolean error) {
+        tools.computeIfAbsent(tool, k -> new CallStats()).record(nanos, error);
+    }
+
+    // Time between a job being queued for the server thread and it starting
+    public void recordMainThreadWait(long nanos) {
+        mainThreadWait.record(nanos);
+    }
+
+    // Time a job spent running on the server thread, summed over all its ticks
+    public void recordMainThreadRun(long nanos) {
+        mainThreadRun.record(nanos);
+    }
+
+    public void recordRequestBytes(long bytes) {
+        requestBytes.record(bytes);
+    }
+
+    public void recordResponseBytes(long bytes) {
+        responseBytes.record(bytes);
+    }
+
+    public void addGauge(String name, String help, LongSupplier value) {
+        gauges.add(new Gauge(name, "gauge", help, value));
+    }
+
+    // A monotonically increasing value kept by the caller, exported as a counter
+    public void addCounter(String name, String help, LongSupplier value) {
+        gauges.add(new Gauge(name, "counter", help, value));
+    }
+
+    public String toPrometheus() {
+        StringBuilder out = new StringBuilder(8192);
+        writeCalls(out, "mcp_requests", "method", "JSON-RPC requests", methods);
+        writeCalls(out, "mcp_tool_calls", "tool", "Tool calls", tools);
+
+        header(out, "mcp_main_thread_wait_seconds", "histogram", "Time main-thread jobs waited in the queue");
+        writeHistogram(out, "mcp_main_thread_wait_seconds", "", mainThreadWait, NANOS);
+        header(out, "mcp_main_thread_run_seconds", "histogram", "Time main-thread jobs ran on the server thread");
+        writeHistogram(out, "mcp_main_thread_run_seconds", "", mainThreadRun, NANOS);
+        header(out, "mcp_request_bytes", "histogram", "Size of JSON-RPC request bodies");
+        writeHistogram(out, "mcp_request_bytes", "", requestBytes, 1);
+        header(out, "mcp_response_bytes", "histogram", "Size of JSON-RPC responses");
+        writeHistogram(out, "mcp_response_bytes", "", responseBytes, 1);
+
+        for (Gauge gauge : gauges) {
+            header(out, gauge.name, gauge.type, gauge.help);
+            out.append(gauge.name).append(' ').append(gauge.value.getAsLong()).append('\n');
+        }
+        return out.toString();
+    }
+
+    public String describe() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Requests:\n");
+        describeCalls(sb, methods);
+        sb.append("Tools:\n");
+        describeCalls(sb, tools);
+        sb.append("Main thread wait: ").append(latency(mainThreadWait)).append('\n');
+        sb.append("Main thread run: ").append(latency(mainThreadRun)).append('\n');
+        sb.append("Request size: ").append(size(requestBytes)).append('\n');
+        sb.append("Response size: ").append(size(responseBytes)).append('\n');
+        for (Gauge gauge : gauges) {
+            sb.append(gauge.help).append(": ").append(gauge.value.getAsLong()).append('\n');
+        }
+        return sb.toString().trim();
+    }
+
+    private static void describeCalls(StringBuilder sb, Map<String, CallStats> stats) {
+        if (stats.isEmpty()) {
+            sb.append("  (none)\n");
+            return;
+        }
+        for (Map.Entry<String, CallStats> entry : new TreeMap<>(stats).entrySet()) {
+            CallStats call = entry.getValue();
+            sb.append("  ").append(entry.getKey()).append(": ").append(call.calls.sum()).append(" calls, ")
+                    .append(call.errors.sum()).append(" errors, ").append(latency(call.latency)).append('\n');
+        }
+    }
+
+    private static String latency(Histogram h) {
+        return String.format(Locale.ROOT, "p50 %.2f ms, p99 %.2f ms, max %.2f ms (%d samples)",
+                h.quantile(0.5) / 1e6, h.quantile(0.99) / 1e6, h.max() / 1e6, h.count());
+    }
+
+    private static String size(Histogram h) {
+        return "p50 " + h.quantile(0.5) + " B, p99 " + h.quantile(0.99) + " B, max " + h.max() + " B ("
+                + h.count() + " samples)";
+    }
+
+    private static void writeCalls(StringBuilder out, String prefix, String label, String help,
+                                   Map<String, CallStats> stats) {
+        Map<String, CallStats> sorted = new TreeMap<>(stats);
+        header(out, prefix + "_total", "counter", help);
+        for (Map.Entry<String, CallStats> entry : sorted.entrySet()) {
+            out.append(prefix).append("_total{").append(label(label, entry.getKey())).append("} ")
+                    .append(entry.getValue().calls.sum()).append('\n');
+        }
+        header(out, prefix + "_errors_total", "counter", help + " that returned an error");
+        for (Map.Entry<String, CallStats> entry : sorted.entrySet()) {
+            out.append(prefix).append("_errors_total{").append(label(label, entry.getKey())).append("} ")
+                    .append(entry.getValue().errors.sum()).append('\n');
+        }
+        header(out, prefix + "_duration_seconds", "histogram", help + ", time to response");
+        for (Map.Entry<String, CallStats> entry : sorted.entrySet()) {
+            writeHistogram(out, prefix + "_duration_seconds", label(label, entry.getKey()), entry.getValue().latency, NANOS);
+        }
+        header(out, prefix + "_duration_seconds_max", "gauge", help + ", slowest response so far");
+        for (Map.Entry<String, CallStats> entry : sorted.entrySet()) {
+            out.append(prefix).append("_duration_seconds_max{").append(label(label, entry.getKey())).append("} ")
+                    .append(entry.getValue().latency.max() * NANOS).append('\n');
+        }
+    }
+
+    private static void writeHistogram(StringBuilder out, String name, String labels, Histogram h, double scale) {
+        String prefix = labels.isEmpty() ? "{" : "{" + labels + ",";
+        long[] counts = h.snapshot();
+        long cumulative = 0;
+        for (int i = 0; i < h.bucketCount(); i++) {
+            cumulative += counts[i];
+            out.append(name).append("_bucket").append(prefix).append("le=\"").append(number(h.bound(i), scale))
+                    .append("\"} ").append(cumulative).append('\n');
+        }
+        cumulative += counts[counts.length - 1];
+        out.append(name).append("_bucket").append(prefix).append("le=\"+Inf\"} ").append(cumulative).append('\n');
+        String suffix = labels.isEmpty() ? " " : "{" + labels + "} ";
+        out.append(name).append("_sum").append(suffix).append(number(h.sum(), scale)).append('\n');
+        out.append(name).append("_count").append(suffix).append(cumulative).append('\n');
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static String label(String name, String value) {
+        return name + "=\"" + value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + "\"";
+    }
+
+    private static String number(long value, double scale) {
+        return scale == 1 ? Long.toString(value) : Double.toString(value * scale);
+    }
+
+    private static final class CallStats {
+        final LongAdder calls = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final Histogram latency = Histogram.latency();
+
+        void record(long nanos, boolean error) {
+            calls.increment();
+            if (error) errors.increment();
+            latency.record(nanos);
+        }
+    }
+
+    private static final class Gauge {
+        final String name;
+        final String type;
+        final String help;
+        final LongSupplier value;
+
+        Gauge(String name, String type, String help, LongSupplier value) {
+            this.name = name;
+            this.type = type;
+            this.help = help;
+            this.value = value;
+        }
+    }
+}
@@ -1,38 +1,162 @@
 package com.cursor.mcp.protocol;
 
 import com.cursor.mcp.McpPlugin;
+import com.cursor.mcp.files.FileUrlSigner;
+import com.cursor.mcp.files.FileWatcher;
+import com.cursor.mcp.logging.LogStreamer;
+import com.cursor.mcp.metrics.McpMetrics;
+import com.cursor.mcp.scheduler.MainThreadScheduler;
+import com.cursor.mcp.tools.ToolContext;
 import com.cursor.mcp.tools.ToolHandler;
+import com.cursor.mcp.tools.ToolRegistry;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+
 public class McpProtocol {
+    // Newest first; an unknown requested version gets the newest
+    private static final List<String> PROTOCOL_VERSIONS = List.of("2025-03-26", "2024-11-05");
+
     private final ObjectMapper mapper = new ObjectMapper();
+    private final ToolRegistry toolRegistry;
     private final ToolHandler toolHandler;
+    private final LogStreamer logStreamer;
+    private final MainThreadScheduler scheduler;
+    private final McpMetrics metrics;
+    private final Logger logger;
+    private final String version;
+    private final AtomicLong requestCount = new AtomicLong();
+    private final int logSampleEvery;
+    private final int logMaxChars;
+
+    public McpProtocol(McpPlugin plugin, ToolRegistry toolRegistry, LogStreamer logStreamer,
+                       MainThreadScheduler scheduler, Executor workers, McpMetrics metrics, FileUrlSigner fileUrls,
+                       FileWatcher fileWatcher) {
+        this.toolRegistry = toolRegistry;
+        this.logStreamer = logStreamer;
+        this.scheduler = scheduler;
+        this.metrics = metrics;
+        this.logger = plugin.getLogger();
+        this.version = plugin.getDescription().getVersion();
+        this.logSampleEvery = plugin.getConfig().getInt("logging.requests.sample-every", 100);
+        this.logMaxChars = plugin.getConfig().getInt("logging.requests.max-chars", 500);
+        this.toolHandler = new ToolHandler(plugin, logStreamer, scheduler, workers, metrics, fileUrls, fileWatcher);
+        toolHandler.registerTools(toolRegistry);
+    }
+
+    public void close() {
+        toolHandler.close();
+    }
+
+    public CompletableFuture<McpResponse> handleRequest(McpRequest request) {
+        return handleRequest(request, null);
+    }
+
+    public CompletableFuture<McpResponse> handleRequest(McpRequest request, String sessionId) {
+        return handleRequest(request, sessionId, null);
+    }
+
+    // sessionId is the session the request arrived on, or null for /api and
+    // sessionless /mcp. notifier carries progress notifications for the request
+    // back to the client, null if the transport has no way to.
+    // Only tools/call can take a while; everything else completes immediately.
+    // Completes with null when there is nothing to send back (notifications).
+    public CompletableFuture<McpResponse> handleRequest(McpRequest request, String sessionId, Consumer<String> notifier) {
+        logSampled(request);
+        if (request.isBatch()) {
+            return handleBatch(request.getMessages(), sessionId, notifier);
+        }
+        return handleMessage(request.getRoot(), context(request.getRoot(), sessionId, null, notifier));
+    }
+
+    private ToolContext context(JsonNode request, String sessionId, MainThreadScheduler.Group group,
+                                Consumer<String> notifier) {
+        JsonNode progressToken = request.path("params").path("_meta").get("progressToken");
+        return new ToolContext(sessionId, scheduler, group, notifier, progressToken);
+    }
+
+    // Only every Nth request is logged, and only its first logMaxChars characters,
+    // so base64 uploads and busy agents don't flood the console.
+    private void logSampled(McpRequest request) {
+        if (logSampleEvery <= 0 || requestCount.getAndIncrement() % logSampleEvery != 0) {
+            return;
+        }
+        logger.info("Incoming MCP Request (1 in " + logSampleEvery + "): "
+                + request.toString(logMaxChars));
+    }
+
+    public static McpResponse parseError(Exception e) {
+        return McpResponse.error(null, -32700, "Parse error: " + e.getMessage());
+    }
+
+    // JSON-RPC 2.0 batch: every entry is dispatched before any is awaited, so
+    // off-thread tools run in parallel on the worker pool, and main-thread tools
+    // are collected into one scheduler group that runs as a single job.
+    private CompletableFuture<McpResponse> handleBatch(List<JsonNode> batch, String sessionId, Consumer<String> notifier) {
+        if (batch.isEmpty()) {
+            return completedFuture(McpResponse.error(null, -32600, "Invalid Request: empty batch"));
+        }
+
+        MainThreadScheduler.Group group = scheduler.newGroup();
+        List<CompletableFuture<McpResponse>> responses = new ArrayList<>(batch.size());
+        for (JsonNode request : batch) {
+            responses.add(handleMessage(request, context(request, sessionId, group, notifier)));
+        }
+        group.submit();
+
+        return CompletableFuture.allOf(responses.toArray(new CompletableFuture[0])).thenApply(ignored -> {
+            List<McpResponse> combined = new ArrayList<>(responses.size());
+            for (CompletableFuture<McpResponse> response : responses) {
+                McpResponse reply = response.join();
+                if (reply != null) combined.add(reply); // notifications get no entry
+            }
+            return combined.isEmpty() ? null : McpResponse.batch(combined);
+        });
+    }
 
-    public McpProtocol(McpPlugin plugin) {
-        this.toolHandler = new ToolHandler(plugin);
+    private CompletableFuture<McpResponse> handleMessage(JsonNode request, ToolContext ctx) {
+        long start = System.nanoTime();
+        return dispatch(request, ctx).whenComplete((response, error) ->
+                metrics.recordMethod(metricName(request, response), System.nanoTime() - start,
+                        error != null || (response != null && response.isError())));
     }
 
-    public String handleRequest(String jsonBody) {
-        McpPlugin.getPlugin(McpPlugin.class).getLogger().info("Incoming MCP Request: " + jsonBody);
-        Object id = null;
+    // Unknown and notification methods share a series each, so clients can't
+    // create new metrics just by sending made-up method names.
+    private static String metricName(JsonNode request, McpResponse response) {
+        String method = request.path("method").asText("");
+        if (method.isEmpty()) return "invalid";
+        if (response != null && response.getErrorCode() == -32601) return "unknown";
+        if (method.startsWith("notifications/")) return "notifications";
+        return method;
+    }
+
+    private CompletableFuture<McpResponse> dispatch(JsonNode request, ToolContext ctx) {
+        JsonNode id = null;
         try {
-            JsonNode request = mapper.readTree(jsonBody);
             if (!request.has("method")) {
-                 return createError(null, -32600, "Invalid Request: missing method");
+                 return completedFuture(McpResponse.error(null, -32600, "Invalid Request: missing method"));
             }
             
             String method = request.get("method").asText();
-            JsonNode idNode = request.get("id");
-            if (idNode != null && !idNode.isNull()) {
-                id = idNode.isNumber() ? idNode.asInt() : idNode.asText();
-            }
+            // Echoed back exactly as sent, numbers keep their full precision
+            id = request.get("id");
 
             if (method.equals("initialize")) {
-                // Check for protocol version if needed, but we'll be lenient
+                String requested = request.path("params").path("protocolVersion").asText("");
                  ObjectNode result = mapper.createObjectNode()
-                        .put("protocolVersion", "2024-11-05");
+                        .put("protocolVersion", PROTOCOL_VERSIONS.contains(requested) ? requested : PROTOCOL_VERSIONS.get(0));
                  
                  ObjectNode capabilities = result.putObject("capabilities");
                  ObjectNode toolsCap = capabilities.putObject("tools");
@@ -40,100 +164,88 @@ public class McpProtocol {
                  
                  capabilities.putObject("resources"); 
                  capabilities.putObject("prompts"); // Add prompts capability
+                 capabilities.putObject("logging");
                  
                  ObjectNode serverInfo = result.putObject("serverInfo");
                  serverInfo.put("name", "MCPMinecraft");
-                 serverInfo.put("version", "1.2.3");
+                 serverInfo.put("version", version);
                  
-                 return createResponse(id, result);
+                 return completedFuture(McpResponse.result(id, result));
             }
 
             if (method.equals("notifications/initialized")) {
                 // Handshake complete
-                return null;
+                return completedFuture(null);
             }
 
             if (method.equals("tools/list")) {
-                return createResponse(id, toolHandler.listTools());
+                // Serialized once per registry change, not per request
+                return completedFuture(McpResponse.raw(id, toolRegistry.getToolsListJson()));
             }
 
             if (method.equals("resources/list")) {
                  ObjectNode result = mapper.createObjectNode();
                  result.putArray("resources");
-                 return createResponse(id, result);
+                 return completedFuture(McpResponse.result(id, result));
             }
 
             if (method.equals("prompts/list")) {
                  ObjectNode result = mapper.createObjectNode();
                  result.putArray("prompts");
-                 return createResponse(id, result);
+                 return completedFuture(McpResponse.result(id, result));
+            }
+
+            if (method.equals("logging/setLevel")) {
+                if (ctx.getSessionId() == null) {
+                    return completedFuture(McpResponse.error(id, -32602, "logging/setLevel requires a session (/sse, or /mcp with Mcp-Session-Id)"));
+                }
+                JsonNode params = request.get("params");
+                if (params == null || !params.hasNonNull("level")) throw new IllegalArgumentException("Missing level");
+                logStreamer.subscribe(ctx.getSessionId(), LogStreamer.parseLevel(params.get("level").asText()), List.of(), 0);
+                return completedFuture(McpResponse.result(id, mapper.createObjectNode()));
             }
 
             if (method.equals("tools/call")) {
                 JsonNode params = request.get("params");
                 if (params == null) throw new IllegalArgumentException("Missing params");
                 
+                if (!params.hasNonNull("name")) throw new IllegalArgumentException("Missing tool name");
                 String toolName = params.get("name").asText();
                 JsonNode args = params.get("arguments");
                 if (args == null) args = mapper.createObjectNode();
                 
-                Object result = toolHandler.callTool(toolName, args);
-                return createResponse(id, result);
+                JsonNode requestId = id;
+                boolean known = toolRegistry.get(toolName) != null;
+                long start = System.nanoTime();
+                return toolRegistry.call(toolName, args, ctx).handle((result, error) -> {
+                    if (known) {
+                        metrics.recordTool(toolName, System.nanoTime() - start, error != null);
+                    }
+                    if (error == null) {
+                        return McpResponse.result(requestId, result);
+                    }
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                    logger.severe("Error calling tool " + toolName + ": " + cause.getMessage());
+                    return McpResponse.error(requestId, -32700, "Error: " + cause.getMessage());
+                });
             }
             
             if (method.equals("ping")) {
-                return createResponse(id, mapper.createObjectNode());
+                return completedFuture(McpResponse.result(id, mapper.createObjectNode()));
             }
 
             // Notifications that don't expect response
             if (method.startsWith("notifications/")) {
-                return null; 
+                return completedFuture(null); 
             }
 
-            McpPlugin.getPlugin(McpPlugin.class).getLogger().warning("Unknown method: " + method);
-            return createError(id, -32601, "Method not found: " + method);
+            logger.warning("Unknown method: " + method);
+            return completedFuture(McpResponse.error(id, -32601, "Method not found: " + method));
 
         } catch (Exception e) {
-            McpPlugin.getPlugin(McpPlugin.class).getLogger().severe("Error handling request: " + e.getMessage());
+            logger.severe("Error handling request: " + e.getMessage());
             e.printStackTrace();
-            return createError(id, -32700, "Error: " + e.getMessage());
-        }
-    }
-
-    private String createResponse(Object id, Object result) {
-        ObjectNode response = mapper.createObjectNode();
-        response.put("jsonrpc", "2.0");
-        
-        if (id == null) {
-             response.putNull("id");
-        } else if (id instanceof Integer) {
-            response.put("id", (Integer) id);
-        } else {
-            response.put("id", (String) id);
-        }
-        
-        response.set("result", mapper.valueToTree(result));
-        return response.toString();
-    }
-
-    private String createError(Object id, int code, String message) {
-        ObjectNode response = mapper.createObjectNode();
-        response.put("jsonrpc", "2.0");
-        
-        if (id == null) {
-             response.putNull("id");
-        } else if (id instanceof Integer) {
-            response.put("id", (Integer) id);
-        } else {
-            response.put("id", (String) id);
+            return completedFuture(McpResponse.error(id, -32700, "Error: " + e.getMessage()));
         }
-
-        ObjectNode error = response.putObject("error");
-        error.put("code", code);
-        error.put("message", message);
-        
-        return response.toString();
     }
 }
-
-
@@ -0,0 +1,146 @@
+package com.cursor.mcp.protocol;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A JSON-RPC message or batch, parsed once from the request body and shared by
+ * the HTTP transport and {@link McpProtocol}.
+ */
+public final class McpRequest {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final JsonNode root;
+    private final long size;
+
+    private McpRequest(JsonNode root, long size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    // Reads straight from the request stream, the body is never held as a String
+    public static McpRequest parse(InputStream body) throws IOException {
+        CountingInputStream counting = new CountingInputStream(body);
+        return of(MAPPER.readTree(counting), counting.count);
+    }
+
+    public static McpRequest parse(String json) throws IOException {
+        return of(MAPPER.readTree(json), json.length());
+    }
+
+    private static McpRequest of(JsonNode root, long size) throws IOException {
+        if (root == null || root.isMissingNode()) {
+            throw new IOException("Empty request body");
+        }
+        return new McpRequest(root, size);
+    }
+
+    // Bytes read from the body (characters when parsed from a String)
+    public long getSize() {
+        return size;
+    }
+
+    public boolean isBatch() {
+        return root.isArray();
+    }
+
+    public JsonNode getRoot() {
+        return root;
+    }
+
+    public List<JsonNode> getMessages() {
+        if (!root.isArray()) {
+            return List.of(root);
+        }
+        List<JsonNode> messages = new ArrayList<>(root.size());
+        root.forEach(messages::add);
+        return messages;
+    }
+
+    // True if the message, or any message in the batch, calls this method
+    public boolean hasMethod(String method) {
+        for (JsonNode message : root.isArray() ? root : List.of(root)) {
+            if (method.equals(message.path("method").asText())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return root.toString();
+    }
+
+    // Stops serializing once maxChars have been produced, so logging a
+    // multi-megabyte upload costs about as much as logging a ping.
+    public String toString(int maxChars) {
+        StringBuilder out = new StringBuilder(Math.min(maxChars, 1024) + 16);
+        Writer limited = new Writer() {
+            @Override
+            public void write(char[] chars, int off, int len) throws IOException {
+                int room = maxChars - out.length();
+                if (len > room) {
+                    out.append(chars, off, Math.max(0, room));
+                    throw new Truncated();
+                }
+                out.append(chars, off, len);
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        try {
+            JsonGenerator gen = MAPPER.createGenerator(limited);
+            gen.writeTree(root);
+            gen.flush();
+        } catch (Truncated e) {
+            out.append("... (").append(size).append(" bytes)");
+        } catch (IOException e) {
+            out.append("...");
+        }
+        return out.toString();
+    }
+
+    private static final class Truncated extends IOException {
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0) count += n;
+            return n;
+        }
+    }
+}
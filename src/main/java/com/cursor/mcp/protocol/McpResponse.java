@@ -0,0 +1,147 @@
+package com.cursor.mcp.protocol;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * A JSON-RPC response, or a batch of them, written to an output stream with a
+ * JsonGenerator. The result tree is serialized exactly once, at the point it is
+ * sent, so {@link StreamedValue}s and binary values inside it go to the socket
+ * without an intermediate String.
+ */
+public final class McpResponse {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final JsonNode id;
+    private final JsonNode result;
+    private final String rawResult;
+    private final int errorCode;
+    private final String errorMessage;
+    private final List<McpResponse> batch;
+
+    private McpResponse(JsonNode id, JsonNode result, String rawResult, int errorCode, String errorMessage,
+                        List<McpResponse> batch) {
+        this.id = id;
+        this.result = result;
+        this.rawResult = rawResult;
+        this.errorCode = errorCode;
+        this.errorMessage = errorMessage;
+        this.batch = batch;
+    }
+
+    public static McpResponse result(JsonNode id, JsonNode result) {
+        return new McpResponse(id, result, null, 0, null, null);
+    }
+
+    // resultJson is already serialized and is copied into the output as is
+    public static McpResponse raw(JsonNode id, String resultJson) {
+        return new McpResponse(id, null, resultJson, 0, null, null);
+    }
+
+    public static McpResponse error(JsonNode id, int code, String message) {
+        return new McpResponse(id, null, null, code, message, null);
+    }
+
+    public static McpResponse batch(List<McpResponse> responses) {
+        return new McpResponse(null, null, null, 0, null, responses);
+    }
+
+    public boolean isError() {
+        return errorMessage != null;
+    }
+
+    // 0 unless this is an error response
+    public int getErrorCode() {
+        return errorCode;
+    }
+
+    // Returns the number of bytes written
+    public long writeTo(OutputStream out) throws IOException {
+        CountingOutputStream counting = new CountingOutputStream(out);
+        JsonGenerator gen = MAPPER.createGenerator(counting);
+        // The caller owns the stream (servlet output, SSE buffer)
+        gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        try {
+            write(gen);
+        } finally {
+            gen.close();
+        }
+        return counting.count;
+    }
+
+    public byte[] toBytes() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        try {
+            writeTo(out);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to serialize response: " + e.getMessage(), e);
+        }
+        return out.toByteArray();
+    }
+
+    private void write(JsonGenerator gen) throws IOException {
+        if (batch != null) {
+            gen.writeStartArray();
+            for (McpResponse response : batch) {
+                response.write(gen);
+            }
+            gen.writeEndArray();
+            return;
+        }
+
+        gen.writeStartObject();
+        gen.writeStringField("jsonrpc", "2.0");
+        gen.writeFieldName("id");
+        if (id == null) {
+            gen.writeNull();
+        } else {
+            gen.writeTree(id);
+        }
+        if (errorMessage != null) {
+            gen.writeObjectFieldStart("error");
+            gen.writeNumberField("code", errorCode);
+            gen.writeStringField("message", errorMessage);
+            gen.writeEndObject();
+        } else if (rawResult != null) {
+            gen.writeFieldName("result");
+            gen.writeRawValue(rawResult);
+        } else {
+            gen.writeFieldName("result");
+            gen.writeTree(result);
+        }
+        gen.writeEndObject();
+    }
+
+    @Override
+    public String toString() {
+        return new String(toBytes(), StandardCharsets.UTF_8);
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
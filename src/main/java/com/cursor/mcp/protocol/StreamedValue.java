@@ -0,0 +1,33 @@
+package com.cursor.mcp.protocol;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+
+import java.io.IOException;
+
+/**
+ * A JSON value written as is when the response is serialized, e.g. text the
+ * file cache already holds JSON-encoded. Put one into a result with
+ * {@code ObjectNode.putPOJO}. Nothing here may read files: a read that fails
+ * after the status is committed would send a truncated body.
+ */
+public abstract class StreamedValue extends JsonSerializable.Base {
+
+    // A string already encoded as a JSON literal (quotes included), written as is
+    public static StreamedValue encoded(String json) {
+        return new StreamedValue() {
+            @Override
+            public void serialize(JsonGenerator gen, SerializerProvider provider) throws IOException {
+                gen.writeRawValue(json);
+            }
+        };
+    }
+
+    @Override
+    public void serializeWithType(JsonGenerator gen, SerializerProvider provider, TypeSerializer typeSer)
+            throws IOException {
+        serialize(gen, provider);
+    }
+}
@@ -0,0 +1,287 @@
+package com.cursor.mcp.scheduler;
+
+import com.cursor.mcp.metrics.McpMetrics;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single queue for all MCP work that has to run on the server thread. One
+ * repeating task drains it every tick until the configured nanosecond budget is
+ * used up, so a burst of agent requests is spread over several ticks instead of
+ * landing in one.
+ */
+public class MainThreadScheduler {
+    public enum Priority {
+        HIGH, NORMAL, LOW
+    }
+
+    /**
+     * Work that may need more than one tick. {@code run} is called once per tick
+     * with the time it should stop by, and returns true when it is finished.
+     */
+    public interface TickJob {
+        boolean run(long deadlineNanos) throws Exception;
+    }
+
+    private final Plugin plugin;
+    private final McpMetrics metrics;
+    private final long budgetNanos;
+    private final long defaultDeadlineMillis;
+    private final int maxQueueSize;
+    private final PriorityBlockingQueue<Job> queue = new PriorityBlockingQueue<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private BukkitTask task;
+
+    // Statistics, written on the main thread only
+    private volatile long ticks;
+    private volatile long jobsRun;
+    private volatile long overrunTicks;
+    private volatile long lastTickNanos;
+    private volatile long maxTickNanos;
+    private volatile long totalTickNanos;
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public MainThreadScheduler(Plugin plugin, McpMetrics metrics, long budgetNanos, long defaultDeadlineMillis,
+                               int maxQueueSize) {
+        this.plugin = plugin;
+        this.metrics = metrics;
+        this.budgetNanos = budgetNanos;
+        this.defaultDeadlineMillis = defaultDeadlineMillis;
+        this.maxQueueSize = maxQueueSize;
+    }
+
+    public void start() {
+        task = Bukkit.getScheduler().runTaskTimer(plugin, this::drain, 1L, 1L);
+    }
+
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        Job job;
+        while ((job = queue.poll()) != null) {
+            job.future.completeExceptionally(new CancellationException("MCP scheduler stopped"));
+        }
+    }
+
+    public <T> CompletableFuture<T> submit(Callable<T> callable) {
+        return submit(Priority.NORMAL, defaultDeadlineMillis, callable);
+    }
+
+    public <T> CompletableFuture<T> submit(Priority priority, Callable<T> callable) {
+        return submit(priority, defaultDeadlineMillis, callable);
+    }
+
+    /**
+     * Queues {@code callable} to run on the main thread. If it has not started
+     * within {@code deadlineMillis} the future fails with a TimeoutException.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> submit(Priority priority, long deadlineMillis, Callable<T> callable) {
+        Job job = new Job(priority, deadlineMillis, null, callable);
+        return (CompletableFuture<T>) enqueue(job);
+    }
+
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<Void> submitTicking(Priority priority, long deadlineMillis, TickJob tickJob) {
+        Job job = new Job(priority, deadlineMillis, tickJob, null);
+        return (CompletableFuture<Void>) enqueue(job);
+    }
+
+    /**
+     * Starts a group of callables that will share a single queue entry. Add the
+     * callables, then call {@link Group#submit()} once; they run back to back on
+     * the main thread, continuing on the next tick if the budget runs out.
+     */
+    public Group newGroup() {
+        return new Group();
+    }
+
+    private CompletableFuture<?> enqueue(Job job) {
+        if (queue.size() >= maxQueueSize) {
+            rejected.incrementAndGet();
+            job.future.completeExceptionally(new RejectedExecutionException(
+                    "MCP main-thread queue is full (" + maxQueueSize + " jobs), try again later"));
+            return job.future;
+        }
+        queue.add(job);
+        return job.future;
+    }
+
+    private void drain() {
+        long start = System.nanoTime();
+        long deadline = start + budgetNanos;
+        List<Job> unfinished = new ArrayList<>();
+        int ran = 0;
+
+        while (true) {
+            long now = System.nanoTime();
+            // Always make progress on at least one job per tick
+            if (ran > 0 && now >= deadline) break;
+            Job job = queue.poll();
+            if (job == null) break;
+            if (job.future.isDone()) continue;
+            if (!job.started && now > job.deadlineNanos) {
+                expired.incrementAndGet();
+                job.future.completeExceptionally(new TimeoutException("Main-thread job expired before it could run"));
+                continue;
+            }
+
+            if (!job.started) {
+                metrics.recordMainThreadWait(now - job.queuedNanos);
+                job.started = true;
+            }
+            ran++;
+            long runStart = System.nanoTime();
+            try {
+                boolean finished = job.run(deadline);
+                job.runNanos += System.nanoTime() - runStart;
+                if (finished) {
+                    metrics.recordMainThreadRun(job.runNanos);
+                    job.complete();
+                } else {
+                    unfinished.add(job);
+                }
+            } catch (Throwable t) {
+                metrics.recordMainThreadRun(job.runNanos + System.nanoTime() - runStart);
+                job.future.completeExceptionally(t);
+            }
+        }
+        // Multi-tick jobs go to the back of their priority class so they can't
+        // monopolise the budget.
+        for (Job job : unfinished) {
+            job.sequence = sequence.getAndIncrement();
+            queue.add(job);
+        }
+
+        long elapsed = System.nanoTime() - start;
+        ticks++;
+        jobsRun += ran;
+        lastTickNanos = elapsed;
+        totalTickNanos += elapsed;
+        if (elapsed > maxTickNanos) maxTickNanos = elapsed;
+        if (elapsed > budgetNanos) overrunTicks++;
+    }
+
+    // Ticks the scheduler has run; a change means a tick boundary has passed
+    public long getTicks() {
+        return ticks;
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public String describe() {
+        long tickCount = ticks;
+        return "Main-thread queue: " + queue.size() + " waiting (max " + maxQueueSize + ")\n"
+                + "Tick budget: " + TimeUnit.NANOSECONDS.toMicros(budgetNanos) + " us\n"
+                + "Jobs run: " + jobsRun + ", expired: " + expired.get() + ", rejected: " + rejected.get() + "\n"
+                + "Ticks: " + tickCount + ", over budget: " + overrunTicks + "\n"
+                + "MCP time per tick: last " + TimeUnit.NANOSECONDS.toMicros(lastTickNanos) + " us, avg "
+                + (tickCount == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalTickNanos / tickCount)) + " us, max "
+                + TimeUnit.NANOSECONDS.toMicros(maxTickNanos) + " us";
+    }
+
+    public final class Group implements TickJob {
+        private final List<Callable<?>> tasks = new ArrayList<>();
+        private final List<CompletableFuture<Object>> futures = new ArrayList<>();
+        private Priority priority = Priority.LOW;
+        private int next;
+        private boolean submitted;
+
+        // Once the group is submitted, later adds are submitted on their own
+        @SuppressWarnings("unchecked")
+        public synchronized <T> CompletableFuture<T> add(Priority priority, Callable<T> callable) {
+            if (submitted) return MainThreadScheduler.this.submit(priority, callable);
+            CompletableFuture<Object> future = new CompletableFuture<>();
+            tasks.add(callable);
+            futures.add(future);
+            if (priority.compareTo(this.priority) < 0) {
+                this.priority = priority;
+            }
+            return (CompletableFuture<T>) future;
+        }
+
+        public synchronized void submit() {
+            if (submitted) return;
+            submitted = true;
+            if (tasks.isEmpty()) return;
+            submitTicking(priority, defaultDeadlineMillis, this).whenComplete((ignored, error) -> {
+                // Expired, rejected or cancelled: fail whatever did not get to run
+                if (error != null) {
+                    for (CompletableFuture<Object> future : futures) {
+                        future.completeExceptionally(error);
+                    }
+                }
+            });
+        }
+
+        @Override
+        public synchronized boolean run(long deadlineNanos) {
+            while (next < tasks.size()) {
+                CompletableFuture<Object> future = futures.get(next);
+                try {
+                    future.complete(tasks.get(next).call());
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                }
+                next++;
+                if (System.nanoTime() >= deadlineNanos) break;
+            }
+            return next >= tasks.size();
+        }
+    }
+
+    private final class Job implements Comparable<Job> {
+        final Priority priority;
+        final long queuedNanos = System.nanoTime();
+        final long deadlineNanos;
+        final TickJob tickJob;
+        final Callable<?> callable;
+        final CompletableFuture<Object> future = new CompletableFuture<>();
+        long sequence = MainThreadScheduler.this.sequence.getAndIncrement();
+        boolean started;
+        long runNanos;
+        Object result;
+
+        Job(Priority priority, long deadlineMillis, TickJob tickJob, Callable<?> callable) {
+            this.priority = priority;
+            this.deadlineNanos = queuedNanos + TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+            this.tickJob = tickJob;
+            this.callable = callable;
+        }
+
+        boolean run(long deadline) throws Exception {
+            if (callable != null) {
+                result = callable.call();
+                return true;
+            }
+            return tickJob.run(deadline);
+        }
+
+        void complete() {
+            future.complete(result);
+        }
+
+        @Override
+        public int compareTo(Job other) {
+            int byPriority = priority.compareTo(other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+}
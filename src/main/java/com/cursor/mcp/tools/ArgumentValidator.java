@@ -0,0 +1,149 @@
+package com.cursor.mcp.tools;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Checks tool arguments against the subset of JSON Schema used by tool input
+ * schemas (type, properties, required, items, enum, minimum, maximum). The
+ * schema is compiled once into a tree of checks when the tool is registered.
+ */
+public final class ArgumentValidator {
+    private final Check check;
+
+    private ArgumentValidator(Check check) {
+        this.check = check;
+    }
+
+    public static ArgumentValidator compile(JsonNode schema) {
+        return new ArgumentValidator(compileNode(schema));
+    }
+
+    // Throws IllegalArgumentException describing the first problem found
+    public void validate(JsonNode args) {
+        check.apply(args, "arguments");
+    }
+
+    private interface Check {
+        void apply(JsonNode value, String path);
+    }
+
+    private static Check compileNode(JsonNode schema) {
+        List<Check> checks = new ArrayList<>();
+        String type = schema.path("type").asText(null);
+        if (type != null) {
+            checks.add(typeCheck(type));
+        }
+
+        JsonNode enumNode = schema.get("enum");
+        if (enumNode != null && enumNode.isArray()) {
+            Set<JsonNode> allowed = new HashSet<>();
+            enumNode.forEach(allowed::add);
+            checks.add((value, path) -> {
+                if (!allowed.contains(value)) {
+                    throw new IllegalArgumentException(path + " must be one of " + enumNode);
+                }
+            });
+        }
+
+        if (schema.has("minimum")) {
+            double min = schema.get("minimum").asDouble();
+            checks.add((value, path) -> {
+                if (value.isNumber() && value.asDouble() < min) {
+                    throw new IllegalArgumentException(path + " must be >= " + schema.get("minimum"));
+                }
+            });
+        }
+        if (schema.has("maximum")) {
+            double max = schema.get("maximum").asDouble();
+            checks.add((value, path) -> {
+                if (value.isNumber() && value.asDouble() > max) {
+                    throw new IllegalArgumentException(path + " must be <= " + schema.get("maximum"));
+                }
+            });
+        }
+
+        List<String> required = new ArrayList<>();
+        schema.path("required").forEach(name -> required.add(name.asText()));
+        if (!required.isEmpty()) {
+            checks.add((value, path) -> {
+                for (String name : required) {
+                    if (!value.hasNonNull(name)) {
+                        throw new IllegalArgumentException("Missing required argument '" + name + "'");
+                    }
+                }
+            });
+        }
+
+        JsonNode properties = schema.get("properties");
+        if (properties != null && properties.isObject()) {
+            List<Map.Entry<String, Check>> propertyChecks = new ArrayList<>();
+            Iterator<Map.Entry<String, JsonNode>> fields = properties.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                propertyChecks.add(Map.entry(field.getKey(), compileNode(field.getValue())));
+            }
+            checks.add((value, path) -> {
+                for (Map.Entry<String, Check> property : propertyChecks) {
+                    JsonNode child = value.get(property.getKey());
+                    // Absent and null optional arguments are both treated as "not given"
+                    if (child != null && !child.isNull()) {
+                        property.getValue().apply(child, "'" + property.getKey() + "'");
+                    }
+                }
+            });
+        }
+
+        JsonNode items = schema.get("items");
+        if (items != null && items.isObject()) {
+            Check itemCheck = compileNode(items);
+            checks.add((value, path) -> {
+                for (int i = 0; i < value.size(); i++) {
+                    itemCheck.apply(value.get(i), path + "[" + i + "]");
+                }
+            });
+        }
+
+        if (checks.size() == 1) {
+            return checks.get(0);
+        }
+        Check[] all = checks.toArray(new Check[0]);
+        return (value, path) -> {
+            for (Check c : all) {
+                c.apply(value, path);
+            }
+        };
+    }
+
+    private static Check typeCheck(String type) {
+        switch (type) {
+            case "object":
+                return (value, path) -> require(value.isObject(), path, type);
+            case "array":
+                return (value, path) -> require(value.isArray(), path, type);
+            case "string":
+                return (value, path) -> require(value.isTextual(), path, type);
+            case "boolean":
+                return (value, path) -> require(value.isBoolean(), path, type);
+            case "integer":
+                return (value, path) -> require(value.isIntegralNumber()
+                        || (value.isNumber() && value.asDouble() == Math.rint(value.asDouble())), path, type);
+            case "number":
+                return (value, path) -> require(value.isNumber(), path, type);
+            default:
+                return (value, path) -> {};
+        }
+    }
+
+    private static void require(boolean ok, String path, String type) {
+        if (!ok) {
+            throw new IllegalArgumentException(path + " must be of type " + type);
+        }
+    }
+}
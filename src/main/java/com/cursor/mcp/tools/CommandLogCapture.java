@@ -0,0 +1,152 @@
+package com.cursor.mcp.tools;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
+
+/**
+ * Collects the log output of a command run as the real console sender, for
+ * plugins that reject {@link McpCommandSender}. Everything the main thread
+ * logs while the command dispatches belongs to it. After that, a record from
+ * another thread (a plugin answering asynchronously) belongs to the command
+ * only if it comes from the logger of the plugin that owns the command and
+ * no other open window has that owner; ambiguous records are dropped rather
+ * than guessed, so concurrent commands never get each other's lines.
+ *
+ * <p>Each window is closed off the main thread once a tick has passed and
+ * the log has been quiet for a moment, or after a hard limit.
+ */
+final class CommandLogCapture {
+    private static final int MAX_LINES = 1000;
+
+    private final Logger logger;
+    private final LongSupplier ticks;
+    private final Executor pollExecutor;
+    private final long quietNanos;
+    private final long maxNanos;
+    private final Handler handler = new CaptureHandler();
+    private final SimpleFormatter formatter = new SimpleFormatter();
+    private volatile Window dispatching;
+    private volatile long mainThread = -1;
+    private final List<Window> tails = new CopyOnWriteArrayList<>();
+    private int open;
+
+    CommandLogCapture(Logger logger, LongSupplier ticks, Executor workers, long quietMillis, long maxMillis) {
+        this.logger = logger;
+        this.ticks = ticks;
+        this.quietNanos = TimeUnit.MILLISECONDS.toNanos(quietMillis);
+        this.maxNanos = TimeUnit.MILLISECONDS.toNanos(maxMillis);
+        this.pollExecutor = CompletableFuture.delayedExecutor(Math.max(1, quietMillis / 2), TimeUnit.MILLISECONDS, workers);
+    }
+
+    // Must be called on the main thread. ownerLogger is the logger name of the
+    // plugin owning the command, null if none (then only the dispatch itself is
+    // captured). The future completes off the main thread once the window
+    // closes, with the captured lines (empty if there were none).
+    CompletableFuture<String> run(String ownerLogger, Runnable dispatch) {
+        mainThread = Thread.currentThread().getId();
+        Window window = new Window(mainThread, ticks.getAsLong(), ownerLogger);
+        synchronized (this) {
+            if (open++ == 0) logger.addHandler(handler);
+        }
+        // Async replies can start before the dispatch returns
+        if (ownerLogger != null) tails.add(window);
+        dispatching = window;
+        try {
+            dispatch.run();
+        } catch (RuntimeException e) {
+            dispatching = null;
+            close(window);
+            throw e;
+        }
+        dispatching = null;
+        window.lastRecord = System.nanoTime();
+        pollExecutor.execute(() -> check(window));
+        return window.result;
+    }
+
+    private void check(Window window) {
+        if (window.result.isDone()) return;
+        long now = System.nanoTime();
+        boolean tickPassed = ticks.getAsLong() != window.tick;
+        if ((tickPassed && now - window.lastRecord >= quietNanos) || now - window.opened >= maxNanos) {
+            close(window);
+        } else {
+            pollExecutor.execute(() -> check(window));
+        }
+    }
+
+    private void close(Window window) {
+        String text;
+        synchronized (window) {
+            if (window.closed) return;
+            window.closed = true;
+            text = String.join("\n", window.lines);
+        }
+        tails.remove(window);
+        synchronized (this) {
+            if (--open == 0) logger.removeHandler(handler);
+        }
+        window.result.complete(text);
+    }
+
+    private static final class Window {
+        final long thread;
+        final long tick;
+        final String ownerLogger;
+        final long opened = System.nanoTime();
+        final List<String> lines = new ArrayList<>();
+        final CompletableFuture<String> result = new CompletableFuture<>();
+        volatile long lastRecord;
+        boolean closed;
+
+        Window(long thread, long tick, String ownerLogger) {
+            this.thread = thread;
+            this.tick = tick;
+            this.ownerLogger = ownerLogger;
+        }
+
+        synchronized void add(String line) {
+            if (closed || lines.size() >= MAX_LINES) return;
+            lines.add(line);
+            lastRecord = System.nanoTime();
+        }
+    }
+
+    private final class CaptureHandler extends Handler {
+        @Override
+        public void publish(LogRecord record) {
+            if (record == null || record.getMessage() == null) return;
+            Window window = dispatching;
+            if (window != null && record.getLongThreadID() == window.thread) {
+                window.add(formatter.formatMessage(record));
+                return;
+            }
+            // Other main-thread records are ordinary server output
+            if (record.getLongThreadID() == mainThread) return;
+            Window match = null;
+            for (Window candidate : tails) {
+                if (!candidate.ownerLogger.equals(record.getLoggerName())) continue;
+                if (match != null) return; // two commands of the same plugin: cannot tell
+                match = candidate;
+            }
+            if (match != null) {
+                match.add(formatter.formatMessage(record));
+            }
+        }
+
+        @Override
+        public void flush() {}
+
+        @Override
+        public void close() throws SecurityException {}
+    }
+}
@@ -0,0 +1,155 @@
+package com.cursor.mcp.tools;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Output a command sends to {@link McpCommandSender}, which plugins may keep
+ * writing to from other threads after the command returned. Only the first
+ * and last lines are kept (a fixed number each), so a chatty command cannot
+ * grow it without bound.
+ *
+ * <p>With a progress listener, lines are also streamed as they arrive,
+ * coalesced over a short interval so a burst of lines becomes one
+ * notification. Call {@link #finish} before the result is sent: it streams
+ * what is pending and nothing is streamed after it, since progress must not
+ * follow the response.
+ */
+public final class CommandOutput {
+    /** Receives the lines that arrived since the last call, and how many there are. */
+    public interface ProgressListener {
+        void progress(int lines, String text);
+    }
+
+    // Largest chunk of text held for one progress notification
+    private static final int MAX_PENDING_CHARS = 64 * 1024;
+
+    private final int headLines;
+    private final int tailLines;
+    private final List<String> head = new ArrayList<>();
+    private final Deque<String> tail = new ArrayDeque<>();
+    private final ProgressListener listener;
+    private final Executor flushExecutor;
+    private final Executor pollExecutor;
+    // Held while a chunk is handed to the listener, so finish waits for a flush in progress
+    private final Object flushLock = new Object();
+    private long lines;
+    private volatile long lastActivity = System.nanoTime();
+    private StringBuilder pending = new StringBuilder();
+    private int pendingLines;
+    private long pendingDropped;
+    private boolean flushScheduled;
+    private boolean finished;
+
+    // listener may be null; flushes and polls run on workers
+    public CommandOutput(int maxLines, ProgressListener listener, long flushIntervalMillis, Executor workers) {
+        this.headLines = Math.max(1, maxLines / 2);
+        this.tailLines = Math.max(1, maxLines - headLines);
+        this.listener = listener;
+        this.flushExecutor = CompletableFuture.delayedExecutor(Math.max(1, flushIntervalMillis), TimeUnit.MILLISECONDS, workers);
+        this.pollExecutor = CompletableFuture.delayedExecutor(100, TimeUnit.MILLISECONDS, workers);
+    }
+
+    public void add(String line) {
+        boolean schedule = false;
+        synchronized (this) {
+            lines++;
+            if (head.size() < headLines) {
+                head.add(line);
+            } else {
+                tail.addLast(line);
+                if (tail.size() > tailLines) tail.removeFirst();
+            }
+            if (listener != null && !finished) {
+                pendingLines++;
+                if (pending.length() + line.length() < MAX_PENDING_CHARS) {
+                    pending.append(line).append('\n');
+                } else {
+                    pendingDropped++;
+                }
+                if (!flushScheduled) {
+                    flushScheduled = true;
+                    schedule = true;
+                }
+            }
+        }
+        lastActivity = System.nanoTime();
+        if (schedule) {
+            flushExecutor.execute(this::flush);
+        }
+    }
+
+    public synchronized long getLines() {
+        return lines;
+    }
+
+    public synchronized boolean isEmpty() {
+        return lines == 0;
+    }
+
+    // The kept lines, with a marker where lines were left out
+    public synchronized String getText() {
+        StringBuilder sb = new StringBuilder();
+        for (String line : head) sb.append(line).append('\n');
+        long omitted = lines - head.size() - tail.size();
+        if (omitted > 0) sb.append("... ").append(omitted).append(" lines omitted ...\n");
+        for (String line : tail) sb.append(line).append('\n');
+        return sb.toString();
+    }
+
+    public long getIdleNanos() {
+        return System.nanoTime() - lastActivity;
+    }
+
+    // Completes once no line arrived for quietMillis, or after maxMillis
+    public CompletableFuture<Void> settled(long quietMillis, long maxMillis) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxMillis);
+        poll(done, TimeUnit.MILLISECONDS.toNanos(quietMillis), deadline);
+        return done;
+    }
+
+    private void poll(CompletableFuture<Void> done, long quietNanos, long deadline) {
+        if (getIdleNanos() >= quietNanos || System.nanoTime() - deadline >= 0) {
+            flush();
+            done.complete(null);
+        } else {
+            pollExecutor.execute(() -> poll(done, quietNanos, deadline));
+        }
+    }
+
+    // Streams the lines that arrived since the last flush now
+    public void flush() {
+        synchronized (flushLock) {
+            String text;
+            int count;
+            synchronized (this) {
+                flushScheduled = false;
+                if (pendingLines == 0) return;
+                if (pendingDropped > 0) {
+                    pending.append("... ").append(pendingDropped).append(" lines not streamed ...\n");
+                    pendingDropped = 0;
+                }
+                text = pending.toString();
+                count = pendingLines;
+                pending = new StringBuilder();
+                pendingLines = 0;
+            }
+            listener.progress(count, text);
+        }
+    }
+
+    // Streams what is pending and stops streaming; lines added later are still kept
+    public void finish() {
+        synchronized (this) {
+            if (finished) return;
+            finished = true;
+        }
+        flush();
+    }
+}
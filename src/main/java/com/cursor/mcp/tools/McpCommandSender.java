@@ -13,39 +13,45 @@ import java.util.UUID;
 
 public class McpCommandSender implements CommandSender {
     private final Server server;
-    private final StringBuilder output = new StringBuilder();
+    private final CommandOutput output;
     private final CommandSender wrappedSender;
 
     public McpCommandSender(CommandSender wrappedSender) {
+        this(wrappedSender, new CommandOutput(1000, null, 100, Runnable::run));
+    }
+
+    public McpCommandSender(CommandSender wrappedSender, CommandOutput output) {
         this.server = Bukkit.getServer();
         this.wrappedSender = wrappedSender;
+        this.output = output;
     }
 
     public String getOutput() {
-        return output.toString();
+        return output.getText();
     }
 
+    // Plugins may call these from their own threads, also after the command returned
     @Override
     public void sendMessage(String message) {
-        output.append(message).append("\n");
+        output.add(message);
     }
 
     @Override
     public void sendMessage(String[] messages) {
         for (String msg : messages) {
-            output.append(msg).append("\n");
+            output.add(msg);
         }
     }
 
     @Override
     public void sendMessage(UUID sender, String message) {
-        output.append(message).append("\n");
+        output.add(message);
     }
 
     @Override
     public void sendMessage(UUID sender, String[] messages) {
         for (String msg : messages) {
-            output.append(msg).append("\n");
+            output.add(msg);
         }
     }
 
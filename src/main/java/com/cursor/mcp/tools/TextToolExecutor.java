@@ -0,0 +1,14 @@
+package com.cursor.mcp.tools;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+// Runs a tool call for another plugin, without Jackson types: the shaded jar
+// relocates Jackson, so ToolExecutor's JsonNode and ObjectNode are not the
+// classes a plugin compiles against. Arguments arrive as plain maps, lists,
+// strings, numbers and booleans; the result is the text the client sees, and
+// a failed future is reported as an error. Same threading rules as ToolExecutor.
+@FunctionalInterface
+public interface TextToolExecutor {
+    CompletableFuture<String> call(Map<String, Object> args, ToolContext ctx) throws Exception;
+}
@@ -0,0 +1,62 @@
+package com.cursor.mcp.tools;
+
+import com.cursor.mcp.scheduler.MainThreadScheduler;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+// Per-call state handed to tools: which session the call came from and where
+// main-thread work should be queued. Calls that are part of a JSON-RPC batch
+// share one scheduler group so they cost a single main-thread hop.
+public class ToolContext {
+    private final String sessionId;
+    private final MainThreadScheduler scheduler;
+    private final MainThreadScheduler.Group group;
+    private final Consumer<String> notifier;
+    private final JsonNode progressToken;
+
+    public ToolContext(String sessionId, MainThreadScheduler scheduler, MainThreadScheduler.Group group) {
+        this(sessionId, scheduler, group, null, null);
+    }
+
+    public ToolContext(String sessionId, MainThreadScheduler scheduler, MainThreadScheduler.Group group,
+                       Consumer<String> notifier, JsonNode progressToken) {
+        this.sessionId = sessionId;
+        this.scheduler = scheduler;
+        this.group = group;
+        this.notifier = notifier;
+        this.progressToken = progressToken;
+    }
+
+    // Session the call arrived on (/sse, or /mcp with Mcp-Session-Id), or null for /api
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    // True if the client sent a progressToken and the transport can deliver notifications
+    public boolean canReportProgress() {
+        return notifier != null && progressToken != null;
+    }
+
+    // Sends notifications/progress for this call; total <= 0 means unknown
+    public void reportProgress(long progress, long total, String message) {
+        if (!canReportProgress()) return;
+        ObjectNode notification = JsonNodeFactory.instance.objectNode();
+        notification.put("jsonrpc", "2.0");
+        notification.put("method", "notifications/progress");
+        ObjectNode params = notification.putObject("params");
+        params.set("progressToken", progressToken);
+        params.put("progress", progress);
+        if (total > 0) params.put("total", total);
+        if (message != null) params.put("message", message);
+        notifier.accept(notification.toString());
+    }
+
+    public <T> CompletableFuture<T> runOnMain(MainThreadScheduler.Priority priority, Callable<T> task) {
+        return group != null ? group.add(priority, task) : scheduler.submit(priority, task);
+    }
+}
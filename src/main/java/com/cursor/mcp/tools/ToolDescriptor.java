@@ -0,0 +1,172 @@
+package com.cursor.mcp.tools;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Everything the registry needs to list and dispatch one tool: name,
+ * description, input schema and executor. The argument validator is compiled
+ * from the schema when the descriptor is built.
+ *
+ * <p>Jackson is relocated in the shaded jar, so other plugins must stick to
+ * the methods without Jackson types: param/arrayParam with strings or maps
+ * and textExecutor instead of executor.
+ */
+public final class ToolDescriptor {
+    private final String name;
+    private final String description;
+    private final ObjectNode inputSchema;
+    private final boolean readOnly;
+    private final String owner;
+    private final ToolExecutor executor;
+    private final ArgumentValidator validator;
+
+    private ToolDescriptor(Builder builder) {
+        this.name = builder.name;
+        this.description = builder.description;
+        this.inputSchema = builder.schema;
+        this.readOnly = builder.readOnly;
+        this.owner = builder.owner;
+        this.executor = builder.executor;
+        this.validator = ArgumentValidator.compile(inputSchema);
+    }
+
+    public static Builder builder(String name) {
+        return new Builder(name);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public ObjectNode getInputSchema() {
+        return inputSchema;
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    // Name of the plugin that registered the tool, or null for built-in tools
+    public String getOwner() {
+        return owner;
+    }
+
+    public ToolExecutor getExecutor() {
+        return executor;
+    }
+
+    public ArgumentValidator getValidator() {
+        return validator;
+    }
+
+    public static final class Builder {
+        private static final JsonNodeFactory NODES = JsonNodeFactory.instance;
+        private static final ObjectMapper MAPPER = new ObjectMapper();
+
+        private final String name;
+        private String description = "";
+        private ObjectNode schema = NODES.objectNode().put("type", "object");
+        private boolean readOnly;
+        private String owner;
+        private ToolExecutor executor;
+
+        private Builder(String name) {
+            this.name = name;
+        }
+
+        public Builder description(String description) {
+            this.description = description;
+            return this;
+        }
+
+        // Replaces the generated schema entirely
+        public Builder inputSchema(ObjectNode schema) {
+            this.schema = schema;
+            return this;
+        }
+
+        public Builder param(String name, String type, String description, boolean required) {
+            ObjectNode property = NODES.objectNode().put("type", type);
+            if (description != null) {
+                property.put("description", description);
+            }
+            return param(name, property, required);
+        }
+
+        public Builder arrayParam(String name, String itemType, String description, boolean required) {
+            ObjectNode property = NODES.objectNode().put("type", "array");
+            property.set("items", NODES.objectNode().put("type", itemType));
+            if (description != null) {
+                property.put("description", description);
+            }
+            return param(name, property, required);
+        }
+
+        // A JSON schema property given as plain maps and lists
+        public Builder param(String name, Map<String, ?> property, boolean required) {
+            return param(name, (ObjectNode) MAPPER.valueToTree(property), required);
+        }
+
+        public Builder param(String name, ObjectNode property, boolean required) {
+            JsonNode properties = schema.get("properties");
+            ObjectNode props = properties instanceof ObjectNode ? (ObjectNode) properties : schema.putObject("properties");
+            props.set(name, property);
+            if (required) {
+                JsonNode existing = schema.get("required");
+                ArrayNode list = existing instanceof ArrayNode ? (ArrayNode) existing : schema.putArray("required");
+                list.add(name);
+            }
+            return this;
+        }
+
+        // Marks the tool as free of side effects (advertised as readOnlyHint)
+        public Builder readOnly() {
+            this.readOnly = true;
+            return this;
+        }
+
+        public Builder owner(String pluginName) {
+            this.owner = pluginName;
+            return this;
+        }
+
+        public Builder executor(ToolExecutor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        @SuppressWarnings("unchecked")
+        public Builder textExecutor(TextToolExecutor executor) {
+            this.executor = (args, ctx) -> {
+                Map<String, Object> map = args == null ? new LinkedHashMap<>() : MAPPER.convertValue(args, Map.class);
+                return executor.call(map, ctx).thenApply(text -> {
+                    ObjectNode result = NODES.objectNode();
+                    result.putArray("content").addObject().put("type", "text").put("text", text);
+                    return result;
+                });
+            };
+            return this;
+        }
+
+        public ToolDescriptor build() {
+            if (name == null || name.isEmpty()) {
+                throw new IllegalStateException("Tool name is required");
+            }
+            if (executor == null) {
+                throw new IllegalStateException("Tool " + name + " has no executor");
+            }
+            return new ToolDescriptor(this);
+        }
+    }
+}
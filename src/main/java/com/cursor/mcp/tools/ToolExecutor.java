@@ -0,0 +1,14 @@
+package com.cursor.mcp.tools;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.concurrent.CompletableFuture;
+
+// Runs a tool call. Arguments have already been checked against the tool's
+// input schema. Implementations must not block the calling thread; use
+// ToolContext.runOnMain for server-thread work.
+@FunctionalInterface
+public interface ToolExecutor {
+    CompletableFuture<ObjectNode> call(JsonNode args, ToolContext ctx) throws Exception;
+}
@@ -1,129 +1,434 @@
 package com.cursor.mcp.tools;
 
 import com.cursor.mcp.McpPlugin;
+import com.cursor.mcp.files.ChunkedUploads;
+import com.cursor.mcp.files.DirectoryIndex;
+import com.cursor.mcp.files.FileCache;
+import com.cursor.mcp.files.FileSearch;
+import com.cursor.mcp.files.FileUrlSigner;
+import com.cursor.mcp.files.FileWatcher;
+import com.cursor.mcp.files.LogTailer;
+import com.cursor.mcp.files.PagedFileReader;
+import com.cursor.mcp.files.TextPatcher;
+import com.cursor.mcp.logging.LogStreamer;
+import com.cursor.mcp.metrics.McpMetrics;
+import com.cursor.mcp.protocol.StreamedValue;
+import com.cursor.mcp.scheduler.MainThreadScheduler;
+import com.cursor.mcp.world.BlockEditor;
+import com.cursor.mcp.world.LagCensus;
+import com.cursor.mcp.world.RegionScanner;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.command.PluginCommand;
+import org.bukkit.entity.EntityType;
 import org.bukkit.plugin.Plugin;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
-import java.util.Base64;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
-import java.util.logging.Handler;
-import java.util.logging.LogRecord;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.regex.Pattern;
 
 public class ToolHandler {
+    private static final int MAX_LIST_DEPTH = 32;
+    private static final int DEFAULT_LIST_LIMIT = 500;
+    private static final int MAX_LIST_LIMIT = 5000;
+    private static final int DEFAULT_MAX_MATCHES = 200;
+    private static final int MAX_MATCHES = 5000;
+    private static final int SEARCH_BATCH = 50;
+    private static final long MAX_FOLLOW_SECONDS = 300;
+
     private final McpPlugin plugin;
+    private final LogStreamer logStreamer;
+    private final MainThreadScheduler scheduler;
+    private final Executor workers;
+    private final McpMetrics metrics;
+    private final FileUrlSigner fileUrls;
     private final ObjectMapper mapper = new ObjectMapper();
     private final Path serverRoot;
+    private final PagedFileReader fileReader = new PagedFileReader();
+    private final FileCache fileCache;
+    private final DirectoryIndex directoryIndex;
+    private final CommandLogCapture logCapture;
+    private final int maxOutputLines;
+    private final long progressIntervalMillis;
+    private final long followQuietMillis;
+    private final long commandIdleTimeoutMillis;
+    private final FileSearch fileSearch;
+    private final ForkJoinPool searchPool;
+    private final long searchTimeoutMillis;
+    private final RegionScanner regionScanner;
+    private final long regionTickBudgetNanos;
+    private final BlockEditor blockEditor;
+    private final long editTickBudgetNanos;
+    private final LagCensus lagCensus;
+    private final int maxCensusRows;
+    private final long censusTickBudgetNanos;
+    private final LogTailer logTailer = new LogTailer();
+    private final int maxPageBytes;
+    private final int maxChunkBytes;
+    private final ChunkedUploads uploads;
+    private final TextPatcher patcher;
+    private final long inlineMaxBytes;
+    private final long urlTtlSeconds;
+    private final String publicUrl;
 
-    public ToolHandler(McpPlugin plugin) {
+    public ToolHandler(McpPlugin plugin, LogStreamer logStreamer, MainThreadScheduler scheduler, Executor workers,
+                       McpMetrics metrics, FileUrlSigner fileUrls,
+                       FileWatcher fileWatcher) {
         this.plugin = plugin;
+        this.logStreamer = logStreamer;
+        this.scheduler = scheduler;
+        this.workers = workers;
+        this.metrics = metrics;
+        this.fileUrls = fileUrls;
         this.serverRoot = new File(".").toPath().toAbsolutePath().normalize();
+        this.maxPageBytes = plugin.getConfig().getInt("tools.read-file.max-page-bytes", 1024 * 1024);
+        this.fileCache = new FileCache(plugin.getConfig().getLong("tools.read-file.cache-bytes", 32L * 1024 * 1024));
+        fileWatcher.addListener(changed -> {
+            fileCache.invalidate(changed);
+            fileReader.invalidate(changed);
+        });
+        this.directoryIndex = new DirectoryIndex(fileWatcher,
+                plugin.getConfig().getInt("tools.list-directory.max-indexed-entries", 500_000), plugin.getLogger());
+        directoryIndex.start();
+        metrics.addGauge("mcp_directory_index_entries", "Files and directories held by the directory index",
+                directoryIndex::entryCount);
+        this.logCapture = new CommandLogCapture(Bukkit.getLogger(), scheduler::getTicks, workers,
+                plugin.getConfig().getLong("tools.commands.capture-quiet-ms", 50L),
+                plugin.getConfig().getLong("tools.commands.capture-max-ms", 1000L));
+        this.maxOutputLines = Math.max(2, plugin.getConfig().getInt("tools.commands.max-output-lines", 1000));
+        this.progressIntervalMillis = plugin.getConfig().getLong("tools.commands.progress-interval-ms", 100L);
+        this.followQuietMillis = plugin.getConfig().getLong("tools.commands.follow-quiet-ms", 2000L);
+        this.commandIdleTimeoutMillis = plugin.getConfig().getLong("tools.commands.idle-timeout-ms", 10_000L);
+        this.fileSearch = new FileSearch(plugin.getConfig().getLong("tools.search.max-file-bytes", 8L * 1024 * 1024));
+        this.searchPool = createSearchPool(plugin.getConfig().getInt("tools.search.threads",
+                Math.max(1, Runtime.getRuntime().availableProcessors() / 2)));
+        this.searchTimeoutMillis = plugin.getConfig().getLong("tools.search.timeout-ms", 30_000L);
+        this.regionScanner = new RegionScanner(plugin.getConfig().getInt("tools.region.max-chunks", 1024),
+                plugin.getConfig().getLong("tools.region.max-dump-blocks", 1_048_576L));
+        this.regionTickBudgetNanos = TimeUnit.MILLISECONDS.toNanos(plugin.getConfig().getLong("tools.region.tick-budget-ms", 5L));
+        this.blockEditor = new BlockEditor(new File(plugin.getDataFolder(), "undo").toPath(),
+                plugin.getConfig().getLong("tools.edit.max-blocks", 4L * 1024 * 1024),
+                plugin.getConfig().getInt("tools.edit.keep-journals", 100));
+        this.editTickBudgetNanos = TimeUnit.MILLISECONDS.toNanos(plugin.getConfig().getLong("tools.edit.tick-budget-ms", 10L));
+        this.maxCensusRows = Math.max(1, plugin.getConfig().getInt("tools.census.max-rows", 100));
+        this.lagCensus = new LagCensus(plugin.getConfig().getInt("tools.census.max-entities", 200_000),
+                plugin.getConfig().getInt("tools.census.max-tile-entity-copies", 20_000), maxCensusRows,
+                plugin.getConfig().getLong("tools.census.cache-ms", 5000L));
+        this.censusTickBudgetNanos = TimeUnit.MILLISECONDS.toNanos(plugin.getConfig().getLong("tools.census.tick-budget-ms", 5L));
+        metrics.addCounter("mcp_file_cache_hits_total", "read_file calls answered from the file cache", fileCache::getHits);
+        metrics.addCounter("mcp_file_cache_misses_total", "read_file calls that had to read the file", fileCache::getMisses);
+        metrics.addGauge("mcp_file_cache_bytes", "Approximate memory held by the file cache", fileCache::getUsedBytes);
+        this.maxChunkBytes = plugin.getConfig().getInt("tools.transfer.max-chunk-bytes", 4 * 1024 * 1024);
+        this.uploads = new ChunkedUploads(plugin.getConfig().getLong("tools.transfer.upload-timeout-ms", 3_600_000L));
+        this.patcher = new TextPatcher(plugin.getConfig().getLong("tools.patch.max-file-bytes", 16L * 1024 * 1024));
+        this.inlineMaxBytes = plugin.getConfig().getLong("tools.transfer.inline-max-bytes", 16L * 1024 * 1024);
+        this.urlTtlSeconds = plugin.getConfig().getLong("tools.transfer.url-ttl-seconds", 300L);
+        String base = plugin.getConfig().getString("server.public-url", "");
+        this.publicUrl = base == null ? "" : base.replaceAll("/+$", "");
     }
 
-    public ObjectNode listTools() {
-        ObjectNode result = mapper.createObjectNode();
-        ArrayNode tools = result.putArray("tools");
-
-        ObjectNode commandSchema = mapper.createObjectNode();
-        commandSchema.put("type", "object");
-        commandSchema.set("required", mapper.createArrayNode().add("command"));
-        ObjectNode commandProps = mapper.createObjectNode();
-        commandProps.set("command", mapper.createObjectNode().put("type", "string"));
-        commandSchema.set("properties", commandProps);
-        addTool(tools, "execute_command", "Execute a Minecraft command", commandSchema);
-
-        ObjectNode readFileSchema = mapper.createObjectNode();
-        readFileSchema.put("type", "object");
-        readFileSchema.set("required", mapper.createArrayNode().add("path"));
-        ObjectNode readFileProps = mapper.createObjectNode();
-        readFileProps.set("path", mapper.createObjectNode().put("type", "string"));
-        readFileSchema.set("properties", readFileProps);
-        addTool(tools, "read_file", "Read a file from the server", readFileSchema);
-
-        ObjectNode writeFileSchema = mapper.createObjectNode();
-        writeFileSchema.put("type", "object");
-        writeFileSchema.set("required", mapper.createArrayNode().add("path").add("content"));
-        ObjectNode writeFileProps = mapper.createObjectNode();
-        writeFileProps.set("path", mapper.createObjectNode().put("type", "string"));
-        writeFileProps.set("content", mapper.createObjectNode().put("type", "string"));
-        writeFileSchema.set("properties", writeFileProps);
-        addTool(tools, "write_file", "Write to a file on the server", writeFileSchema);
-        
-        addTool(tools, "list_plugins", "List installed plugins", mapper.createObjectNode().put("type", "object"));
-        addTool(tools, "get_logs", "Get recent log lines", mapper.createObjectNode().put("type", "object"));
+    public void registerTools(ToolRegistry registry) {
+        registry.register(ToolDescriptor.builder("execute_command")
+                .description("Execute a Minecraft command. With a progressToken, output is streamed as progress notifications while it arrives.")
+                .param("command", "string", null, true)
+                .param("followSeconds", "integer", "Keep collecting output the command sends after it returns (async plugins such as "
+                        + "WorldEdit or pregenerators) for up to this long, until it goes quiet (default 0, at most " + MAX_FOLLOW_SECONDS + ")", false)
+                .executor(this::executeCommand)
+                .build());
+
+        registry.register(ToolDescriptor.builder("execute_commands")
+                .description("Execute a list of Minecraft commands in order, returning output and status for each")
+                .arrayParam("commands", "string", null, true)
+                .param("stopOnError", "boolean", "Skip the remaining commands after one fails (default false)", false)
+                .param("maxTicks", "integer", "Maximum server ticks to spread the batch over (default 100)", false)
+                .param("tickBudgetMs", "integer", "Milliseconds of command execution allowed per tick (default 20)", false)
+                .executor(this::executeCommands)
+                .build());
+
+        registry.register(ToolDescriptor.builder("read_file")
+                .description("Read a file from the server. Large files are returned in pages; use offset/length or startLine/lineCount to continue.")
+                .param("path", "string", null, true)
+                .param("offset", "integer", "Byte offset to start reading at", false)
+                .param("length", "integer", "Number of bytes to read", false)
+                .param("startLine", "integer", "First line to read (1-based)", false)
+                .param("lineCount", "integer", "Number of lines to read (default 200)", false)
+                .param("ifNoneMatch", "string", "sha256 from an earlier whole-file read; returns \"unchanged\" instead of the content if it still matches", false)
+                .readOnly()
+                .executor((args, ctx) -> offThread(() -> readFile(args)))
+                .build());
+
+        registry.register(ToolDescriptor.builder("write_file")
+                .description("Write to a file on the server")
+                .param("path", "string", null, true)
+                .param("content", "string", null, true)
+                .executor((args, ctx) -> offThread(() -> writeFile(args.get("path").asText(), args.get("content").asText())))
+                .build());
+
+        ObjectNode edit = mapper.createObjectNode().put("type", "object");
+        ObjectNode editProps = edit.putObject("properties");
+        editProps.putObject("startLine").put("type", "integer").put("minimum", 1)
+                .put("description", "First line to replace (1-based)");
+        editProps.putObject("endLine").put("type", "integer").put("minimum", 0)
+                .put("description", "Last line to replace, inclusive; startLine - 1 inserts before startLine");
+        editProps.putObject("content").put("type", "string").put("description", "Replacement lines; empty deletes");
+        edit.putArray("required").add("startLine").add("endLine").add("content");
+        ObjectNode edits = mapper.createObjectNode().put("type", "array")
+                .put("description", "Line-range replacements, as line numbers of the current file");
+        edits.set("items", edit);
+        registry.register(ToolDescriptor.builder("apply_patch")
+                .description("Edit a text file in place with a unified diff or line-range edits instead of rewriting it whole. "
+                        + "Nothing is written unless every hunk applies; the file is replaced atomically. "
+                        + "Returns only the changed hunks and the new sha256 (pass it as baseSha256 to the next patch).")
+                .param("path", "string", null, true)
+                .param("diff", "string", "Unified diff (@@ -a,b +c,d @@ hunks) against the current file", false)
+                .param("edits", edits, false)
+                .param("baseSha256", "string", "SHA-256 the file must still have (from file_checksum or a previous patch)", false)
+                .executor((args, ctx) -> offThread(() -> applyPatch(args)))
+                .build());
+
+        registry.register(ToolDescriptor.builder("list_plugins")
+                .description("List installed plugins")
+                .readOnly()
+                .executor((args, ctx) -> listPlugins(ctx))
+                .build());
+
+        registry.register(ToolDescriptor.builder("mcp_status")
+                .description("Show MCP main-thread queue depth and per-tick load")
+                .readOnly()
+                .executor((args, ctx) -> CompletableFuture.completedFuture(mcpStatus()))
+                .build());
+
+        ObjectNode format = mapper.createObjectNode().put("type", "string")
+                .put("description", "\"text\" for a summary (default) or \"prometheus\" for the /metrics exposition");
+        format.putArray("enum").add("text").add("prometheus");
+        registry.register(ToolDescriptor.builder("get_metrics")
+                .description("Show per-method and per-tool call counts, errors and latency (p50/p99/max), main-thread wait and run time, and payload sizes")
+                .param("format", format, false)
+                .readOnly()
+                .executor((args, ctx) -> CompletableFuture.completedFuture(createTextResult(
+                        "prometheus".equals(args.path("format").asText()) ? metrics.toPrometheus() : metrics.describe())))
+                .build());
+
+        registry.register(ToolDescriptor.builder("get_logs")
+                .description("Get recent log lines. Pass the returned cursor as 'since' to fetch only new lines.")
+                .param("lines", "integer", "Maximum number of lines to return (default 100)", false)
+                .param("since", "string", "Cursor from a previous call; only newer lines are returned", false)
+                .param("level", "string", "Minimum level, e.g. WARN or ERROR", false)
+                .param("filter", "string", "Regular expression entries must match", false)
+                .readOnly()
+                .executor((args, ctx) -> offThread(() -> getLogs(args)))
+                .build());
+
+        registry.register(ToolDescriptor.builder("subscribe_logs")
+                .description("Stream live server log records to this session as notifications/message (sessions on /sse or /mcp only)")
+                .param("level", "string", "Minimum level to stream (default info)", false)
+                .arrayParam("loggers", "string", null, false)
+                .param("backlog", "integer", "Number of already buffered records to send first", false)
+                .param("unsubscribe", "boolean", null, false)
+                .executor((args, ctx) -> CompletableFuture.completedFuture(subscribeLogs(args, ctx.getSessionId())))
+                .build());
 
         // Binary file tools
-        ObjectNode readBinarySchema = mapper.createObjectNode();
-        readBinarySchema.put("type", "object");
-        readBinarySchema.set("required", mapper.createArrayNode().add("path"));
-        ObjectNode readBinaryProps = mapper.createObjectNode();
-        readBinaryProps.set("path", mapper.createObjectNode().put("type", "string"));
-        readBinarySchema.set("properties", readBinaryProps);
-        addTool(tools, "read_file_base64", "Read a binary file and return as base64", readBinarySchema);
-
-        ObjectNode writeBinarySchema = mapper.createObjectNode();
-        writeBinarySchema.put("type", "object");
-        writeBinarySchema.set("required", mapper.createArrayNode().add("path").add("content"));
-        ObjectNode writeBinaryProps = mapper.createObjectNode();
-        writeBinaryProps.set("path", mapper.createObjectNode().put("type", "string"));
-        writeBinaryProps.set("content", mapper.createObjectNode().put("type", "string").put("description", "Base64 encoded file content"));
-        writeBinarySchema.set("properties", writeBinaryProps);
-        addTool(tools, "write_file_base64", "Write a binary file from base64 encoded content", writeBinarySchema);
+        registry.register(ToolDescriptor.builder("read_file_base64")
+                .description("Read a binary file and return as base64 (use read_file_chunk for large files)")
+                .param("path", "string", null, true)
+                .readOnly()
+                .executor((args, ctx) -> offThread(() -> readFileBase64(args.get("path").asText())))
+                .build());
+
+        registry.register(ToolDescriptor.builder("write_file_base64")
+                .description("Write a binary file from base64 encoded content (use write_file_chunk for large files)")
+                .param("path", "string", null, true)
+                .param("content", "string", "Base64 encoded file content", true)
+                .executor((args, ctx) -> offThread(() -> writeFileBase64(args.get("path").asText(), args.get("content").asText())))
+                .build());
+
+        // Chunked transfers for files too big for a single call
+        registry.register(ToolDescriptor.builder("read_file_chunk")
+                .description("Read part of a binary file as base64. Continue at the returned next offset; verify with file_checksum.")
+                .param("path", "string", null, true)
+                .param("offset", "integer", "Byte offset to start at (default 0)", false)
+                .param("length", "integer", "Bytes to read (default and maximum: the configured chunk size)", false)
+                .readOnly()
+                .executor((args, ctx) -> offThread(() -> readFileChunk(args)))
+                .build());
+
+        registry.register(ToolDescriptor.builder("write_file_chunk")
+                .description("Upload a binary file in base64 chunks. Omit uploadId on the first chunk and pass the returned one on the rest; "
+                        + "send sha256 with the last chunk (or alone) to verify and atomically replace the file. "
+                        + "After an interruption, call file_upload_status and resume at its offset.")
+                .param("path", "string", null, true)
+                .param("uploadId", "string", "Id returned by the first chunk", false)
+                .param("offset", "integer", "Byte offset of this chunk; must equal the bytes received so far (or be earlier, to retry)", false)
+                .param("content", "string", "Base64 encoded chunk", false)
+                .param("sha256", "string", "Hex SHA-256 of the whole file; commits the upload", false)
+                .executor((args, ctx) -> offThread(() -> writeFileChunk(args)))
+                .build());
+
+        registry.register(ToolDescriptor.builder("file_upload_status")
+                .description("Show how many bytes of a chunked upload were received (the offset to resume at), or abort it")
+                .param("uploadId", "string", null, true)
+                .param("path", "string", "Target path, to pick up an upload from before a server restart", false)
+                .param("abort", "boolean", "Discard the upload and its temp file", false)
+                .executor((args, ctx) -> offThread(() -> uploadStatus(args)))
+                .build());
+
+        ObjectNode method = mapper.createObjectNode().put("type", "string")
+                .put("description", "\"GET\" to download (default) or \"PUT\" to upload the raw bytes");
+        method.putArray("enum").add("GET").add("PUT");
+        registry.register(ToolDescriptor.builder("create_file_url")
+                .description("Create a short-lived URL for transferring a file as raw bytes over HTTP (supports Range; PUT replaces the file atomically), "
+                        + "instead of passing base64 through MCP")
+                .param("path", "string", null, true)
+                .param("method", method, false)
+                .param("ttlSeconds", "integer", "How long the URL stays valid (default from config, at most 1 day)", false)
+                // Not read-only: a PUT URL is a credential to overwrite the file
+                .executor((args, ctx) -> offThread(() -> createFileUrl(args)))
+                .build());
+
+        registry.register(ToolDescriptor.builder("file_checksum")
+                .description("SHA-256 and size of a file, e.g. to verify a chunked download")
+                .param("path", "string", null, true)
+                .readOnly()
+                .executor((args, ctx) -> offThread(() -> fileChecksum(args.get("path").asText())))
+                .build());
+
+        registry.register(ToolDescriptor.builder("grep_files")
+                .description("Search file contents under a directory (regex or literal), like grep -rn. Binary files are skipped. "
+                        + "Returns path:line: text for each matching line; with a progressToken, matches also arrive in batches as progress notifications.")
+                .param("pattern", "string", "Java regular expression, or plain text with literal=true", true)
+                .param("path", "string", "Directory to search (default: the server folder)", false)
+                .param("literal", "boolean", "Treat pattern as plain text", false)
+                .param("ignoreCase", "boolean", null, false)
+                .arrayParam("include", "string", "Only files matching one of these globs, e.g. *.yml", false)
+                .arrayParam("exclude", "string", "Skip files and directories matching these globs, e.g. logs or *.log", false)
+                .param("maxMatches", "integer", "Stop after this many matching lines (default " + DEFAULT_MAX_MATCHES + ")", false)
+                .readOnly()
+                .executor(this::grepFiles)
+                .build());
+
+        registry.register(ToolDescriptor.builder("query_region")
+                .description("Inspect the blocks in a box of the world without commands: counts per block type, coordinates of "
+                        + "matching blocks and optionally a palette + run-length dump. Chunks are copied a few per tick and scanned off the server thread.")
+                .param("world", "string", "World name (default: the first world)", false)
+                .param("x1", "integer", null, true)
+                .param("y1", "integer", null, true)
+                .param("z1", "integer", null, true)
+                .param("x2", "integer", null, true)
+                .param("y2", "integer", null, true)
+                .param("z2", "integer", null, true)
+                .arrayParam("match", "string", "Block types to return coordinates of, e.g. minecraft:diamond_ore", false)
+                .param("maxMatches", "integer", "Coordinates to return at most (default " + DEFAULT_MAX_MATCHES + ")", false)
+                .param("dump", "boolean", "Include every block as palette indexes with run lengths, in y, z, x order", false)
+                .param("loadChunks", "boolean", "Load chunks that are not loaded instead of skipping them (slow)", false)
+                .readOnly()
+                .executor(this::queryRegion)
+                .build());
+
+        registry.register(ToolDescriptor.builder("edit_blocks")
+                .description("Set the blocks of a box of the world, spread over ticks so large edits neither hit the /fill limit nor "
+                        + "stall the server. Either fill with one block, or place palette + runs in the format query_region dumps. "
+                        + "Returns an id for undo_edit; with a progressToken, blocks done are reported as progress. "
+                        + "Blocks with contents (chests, signs, spawners...) are left alone unless replaceTileEntities is set; "
+                        + "undo_edit cannot bring their contents back.")
+                .param("world", "string", "World name (default: the first world)", false)
+                .param("x1", "integer", null, true)
+                .param("y1", "integer", null, true)
+                .param("z1", "integer", null, true)
+                .param("x2", "integer", null, true)
+                .param("y2", "integer", null, true)
+                .param("z2", "integer", null, true)
+                .param("block", "string", "Block data to fill with, e.g. minecraft:oak_stairs[facing=north]", false)
+                .arrayParam("palette", "string", "Block data per index; keep (or unloaded) leaves the block as it is", false)
+                .param("runs", "string", "Space separated palette indexes in y, z, x order, count*index for runs", false)
+                .param("replaceTileEntities", "boolean", "Also replace chests, signs and other tile entities, losing their contents (default false)", false)
+                .executor(this::editBlocks)
+                .build());
+
+        registry.register(ToolDescriptor.builder("undo_edit")
+                .description("Revert an edit_blocks edit from its undo journal. The undo can itself be reverted with the id it returns.")
+                .param("id", "string", null, true)
+                .executor((args, ctx) -> runEdit(supplyOffThread(() -> blockEditor.undo(args.get("id").asText(),
+                        editTickBudgetNanos)), ctx, "Reverted " + args.get("id").asText() + ": "))
+                .build());
+
+        registry.register(ToolDescriptor.builder("lag_census")
+                .description("Find what is lagging: loaded chunks, entities and tile entities per world, the busiest chunks and the "
+                        + "most common entity and tile entity types. Read on the server thread a few milliseconds per tick and counted off it; "
+                        + "calls within a few seconds share one census.")
+                .param("world", "string", "Only this world (default: all worlds)", false)
+                .param("limit", "integer", "Rows per list (default 10, at most " + maxCensusRows + ")", false)
+                .readOnly()
+                .executor((args, ctx) -> lagCensus(args))
+                .build());
 
         // List directory tool
-        ObjectNode listDirSchema = mapper.createObjectNode();
-        listDirSchema.put("type", "object");
-        listDirSchema.set("required", mapper.createArrayNode().add("path"));
-        ObjectNode listDirProps = mapper.createObjectNode();
-        listDirProps.set("path", mapper.createObjectNode().put("type", "string"));
-        listDirSchema.set("properties", listDirProps);
-        addTool(tools, "list_directory", "List files and directories in a path", listDirSchema);
+        registry.register(ToolDescriptor.builder("list_directory")
+                .description("List files and directories in a path, optionally recursively with glob and size filters. "
+                        + "Long listings are paged; pass the returned cursor to continue.")
+                .param("path", "string", null, true)
+                .param("depth", "integer", "Levels to descend (default 1, at most " + MAX_LIST_DEPTH + ")", false)
+                .param("glob", "string", "Only files matching this glob, e.g. *.yml (matched against names) or plugins/*/config.yml", false)
+                .param("minSize", "integer", "Only files of at least this many bytes", false)
+                .param("maxSize", "integer", "Only files of at most this many bytes", false)
+                .param("cursor", "string", "Continue a paged listing", false)
+                .param("limit", "integer", "Entries per page (default " + DEFAULT_LIST_LIMIT + ")", false)
+                .readOnly()
+                .executor((args, ctx) -> offThread(() -> listDirectory(args)))
+                .build());
+    }
 
-        return result;
+    // File and log tools block on disk I/O, so they run on the worker pool
+    // rather than on the HTTP thread that received the request.
+    private CompletableFuture<ObjectNode> offThread(Callable<ObjectNode> task) {
+        CompletableFuture<ObjectNode> future = new CompletableFuture<>();
+        workers.execute(() -> {
+            try {
+                future.complete(task.call());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        return future;
     }
 
-    private void addTool(ArrayNode tools, String name, String description, JsonNode schema) {
-        ObjectNode tool = tools.addObject();
-        tool.put("name", name);
-        tool.put("description", description);
-        tool.set("inputSchema", schema);
-    }
-
-    public Object callTool(String name, JsonNode args) throws Exception {
-        switch (name) {
-            case "execute_command":
-                return executeCommand(args.get("command").asText());
-            case "read_file":
-                return readFile(args.get("path").asText());
-            case "write_file":
-                return writeFile(args.get("path").asText(), args.get("content").asText());
-            case "read_file_base64":
-                return readFileBase64(args.get("path").asText());
-            case "write_file_base64":
-                return writeFileBase64(args.get("path").asText(), args.get("content").asText());
-            case "list_directory":
-                return listDirectory(args.has("path") ? args.get("path").asText() : ".");
-            case "list_plugins":
-                return listPlugins();
-            case "get_logs":
-                return getLogs();
-            default:
-                throw new IllegalArgumentException("Unknown tool: " + name);
-        }
+    private static CompletionException asCompletionException(Throwable e) {
+        return e instanceof CompletionException ? (CompletionException) e : new CompletionException(e);
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
     }
 
     private ObjectNode createTextResult(String text) {
@@ -133,80 +438,229 @@ public class ToolHandler {
         return result;
     }
 
-    private ObjectNode executeCommand(String command) throws Exception {
-        CompletableFuture<String> future = new CompletableFuture<>();
-        
-        Bukkit.getScheduler().runTask(plugin, () -> {
-            try {
-                // First try with custom sender (captures output directly)
-                McpCommandSender sender = new McpCommandSender(Bukkit.getConsoleSender());
-                try {
-                    Bukkit.dispatchCommand(sender, command);
-                    String output = sender.getOutput();
-                    if (output.isEmpty()) {
-                        output = "Command executed (no output captured).";
+    private CompletableFuture<ObjectNode> executeCommand(JsonNode args, ToolContext ctx) {
+        String command = args.get("command").asText();
+        long followMillis = TimeUnit.SECONDS.toMillis(Math.min(Math.max(0, args.path("followSeconds").asLong(0)), MAX_FOLLOW_SECONDS));
+        CommandOutput output = newOutput(ctx, "", new AtomicLong());
+        CompletableFuture<ObjectNode> result = ctx.runOnMain(MainThreadScheduler.Priority.HIGH,
+                        () -> dispatchCommand(command, output, followMillis))
+                .thenCompose(r -> r.output)
+                // Scheduler futures complete on the server thread; hop off it
+                // before building and sending the response.
+                .thenApplyAsync(text -> {
+                    output.finish();
+                    return createTextResult(withSummary(text, output, ctx));
+                }, workers)
+                .exceptionally(e -> {
+                    output.finish();
+                    if (unwrap(e) instanceof TimeoutException) {
+                        return createTextResult("Server is busy and the command was not run in time. Try again.");
                     }
-                    future.complete(output);
-                } catch (IllegalArgumentException e) {
-                    // Some plugins (like LuckPerms) reject custom senders
-                    // Fall back to real console sender with log capture
-                    if (e.getMessage() != null && e.getMessage().contains("vanilla command listener")) {
-                        String output = executeWithLogCapture(command);
-                        future.complete(output);
-                    } else {
-                        throw e;
-                    }
-                }
-            } catch (Exception e) {
-                future.completeExceptionally(e);
+                    throw asCompletionException(e);
+                });
+        return withIdleTimeout(result, output);
+    }
+
+    // Gives up once the command has been silent for the idle timeout rather
+    // than after a fixed time, so long commands that keep reporting are waited for
+    private CompletableFuture<ObjectNode> withIdleTimeout(CompletableFuture<ObjectNode> result, CommandOutput output) {
+        Executor poll = CompletableFuture.delayedExecutor(1, TimeUnit.SECONDS, workers);
+        Runnable[] check = new Runnable[1];
+        check[0] = () -> {
+            if (result.isDone()) return;
+            if (output.getIdleNanos() < TimeUnit.MILLISECONDS.toNanos(commandIdleTimeoutMillis)) {
+                poll.execute(check[0]);
+                return;
             }
-        });
+            output.finish();
+            String text = "Command sent but no output for " + commandIdleTimeoutMillis / 1000
+                    + " s, so stopped waiting. The command may still be running.";
+            if (!output.isEmpty()) text += " Output so far:\n" + output.getText();
+            result.complete(createTextResult(text));
+        };
+        poll.execute(check[0]);
+        return result;
+    }
 
+    // Adds a line about what the result does not show: lines left out, or that
+    // everything was streamed as progress already
+    private String withSummary(String text, CommandOutput output, ToolContext ctx) {
+        long lines = output.getLines();
+        if (lines <= maxOutputLines && !ctx.canReportProgress()) return text;
+        StringBuilder sb = new StringBuilder(text);
+        if (!text.endsWith("\n")) sb.append('\n');
+        sb.append("[").append(lines).append(lines == 1 ? " line of output" : " lines of output");
+        if (lines > maxOutputLines) sb.append(", ").append(lines - maxOutputLines).append(" omitted here");
+        if (ctx.canReportProgress()) sb.append(", all streamed as progress");
+        return sb.append("]").toString();
+    }
+
+    // Output of one command; with a progressToken, lines also go out as progress
+    // notifications, progress counting lines streamed (prefix marks the command in a batch)
+    private CommandOutput newOutput(ToolContext ctx, String prefix, AtomicLong streamed) {
+        CommandOutput.ProgressListener listener = null;
+        if (ctx.canReportProgress()) {
+            listener = (lines, text) -> ctx.reportProgress(streamed.addAndGet(lines), 0,
+                    prefix.isEmpty() ? text : prefix + text.replaceAll("\n(?=.)", "\n" + prefix));
+        }
+        return new CommandOutput(maxOutputLines, listener, progressIntervalMillis, workers);
+    }
+
+    private static String outputOrDefault(CommandOutput output) {
+        return output.isEmpty() ? "Command executed (no output captured)." : output.getText();
+    }
+
+    // Must be called on the main thread. With followMillis, the output is
+    // complete once the sender has been quiet for a while (or the time is up).
+    private CommandResult dispatchCommand(String command, CommandOutput out, long followMillis) {
+        // First try with custom sender (captures output directly)
+        McpCommandSender sender = new McpCommandSender(Bukkit.getConsoleSender(), out);
         try {
-            return createTextResult(future.get(10, TimeUnit.SECONDS));
-        } catch (TimeoutException e) {
-            return createTextResult("Command sent but response timed out. The command may still have executed.");
+            boolean handled = Bukkit.dispatchCommand(sender, command);
+            String status = handled ? "ok" : "failed";
+            if (followMillis > 0) {
+                return new CommandResult(command, status, out.settled(followQuietMillis, followMillis)
+                        .thenApply(v -> outputOrDefault(out)));
+            }
+            return new CommandResult(command, status, outputOrDefault(out));
+        } catch (IllegalArgumentException e) {
+            // Some plugins (like LuckPerms) reject custom senders
+            // Fall back to real console sender with log capture
+            if (e.getMessage() != null && e.getMessage().contains("vanilla command listener")) {
+                CompletableFuture<String> output = logCapture
+                        .run(ownerLogger(command), () -> Bukkit.dispatchCommand(Bukkit.getConsoleSender(), command))
+                        .thenApply(text -> text.isEmpty() ? "Command executed successfully (via console)." : text);
+                return new CommandResult(command, "ok", output);
+            }
+            throw e;
         }
     }
 
-    private String executeWithLogCapture(String command) {
-        // Capture log output during command execution
-        List<String> capturedLogs = new CopyOnWriteArrayList<>();
-        
-        Handler logHandler = new Handler() {
-            @Override
-            public void publish(LogRecord record) {
-                if (record.getMessage() != null) {
-                    capturedLogs.add(record.getMessage());
+    // Logger name of the plugin that owns the command, null for vanilla or unknown commands
+    private static String ownerLogger(String command) {
+        String label = command.startsWith("/") ? command.substring(1) : command;
+        int space = label.indexOf(' ');
+        PluginCommand owner = Bukkit.getPluginCommand(space < 0 ? label : label.substring(0, space));
+        return owner == null ? null : owner.getPlugin().getLogger().getName();
+    }
+
+    private CompletableFuture<ObjectNode> executeCommands(JsonNode args, ToolContext ctx) {
+        List<String> commands = new ArrayList<>();
+        for (JsonNode command : args.get("commands")) {
+            commands.add(command.asText());
+        }
+        boolean stopOnError = args.path("stopOnError").asBoolean(false);
+        int maxTicks = Math.max(1, args.path("maxTicks").asInt(100));
+        long tickBudgetNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, args.path("tickBudgetMs").asLong(20)));
+
+        CommandBatch batch = new CommandBatch(commands, stopOnError, maxTicks, tickBudgetNanos, ctx);
+        return scheduler.submitTicking(MainThreadScheduler.Priority.NORMAL, 10_000L, batch)
+                .thenCompose(v -> CompletableFuture.allOf(batch.results.stream()
+                        .map(result -> result.output).toArray(CompletableFuture[]::new)))
+                .thenApplyAsync(v -> formatBatch(batch), workers)
+                .completeOnTimeout(createTextResult("Batch sent but response timed out. Some commands may still have executed."),
+                        maxTicks * 50L + 10_000L, TimeUnit.MILLISECONDS)
+                // Also when timed out: no progress may follow the result
+                .whenComplete((result, error) -> batch.finishOutputs());
+    }
+
+    private ObjectNode formatBatch(CommandBatch batch) {
+        batch.finishOutputs();
+        List<String> commands = batch.commands;
+        List<CommandResult> results = batch.results;
+        int ticks = batch.ticks;
+
+        StringBuilder sb = new StringBuilder();
+        int ok = 0;
+        int failed = 0;
+        for (int i = 0; i < commands.size(); i++) {
+            CommandResult result = i < results.size() ? results.get(i) : null;
+            String status = result != null ? result.status : "skipped";
+            sb.append("[").append(i + 1).append("] ").append(status).append(": ").append(commands.get(i)).append("\n");
+            if (result == null) continue;
+            if ("ok".equals(status)) ok++; else failed++;
+            String text = result.output.join();
+            String output = text.endsWith("\n") ? text : text + "\n";
+            sb.append(output);
+        }
+        sb.append("Summary: ").append(ok).append(" ok, ").append(failed).append(" failed, ")
+                .append(commands.size() - results.size()).append(" skipped in ").append(ticks)
+                .append(ticks == 1 ? " tick" : " ticks");
+        return createTextResult(sb.toString());
+    }
+
+    // Runs as many commands as fit in the batch's own per-tick budget (capped by
+    // the scheduler's), always at least one, so a short batch completes in a
+    // single tick.
+    private final class CommandBatch implements MainThreadScheduler.TickJob {
+        final List<String> commands;
+        final boolean stopOnError;
+        final int maxTicks;
+        final long tickBudgetNanos;
+        final List<CommandResult> results;
+        final ToolContext ctx;
+        final AtomicLong streamed = new AtomicLong();
+        final List<CommandOutput> outputs = new CopyOnWriteArrayList<>();
+        volatile int ticks;
+        private boolean stopped;
+
+        CommandBatch(List<String> commands, boolean stopOnError, int maxTicks, long tickBudgetNanos, ToolContext ctx) {
+            this.commands = commands;
+            this.stopOnError = stopOnError;
+            this.maxTicks = maxTicks;
+            this.tickBudgetNanos = tickBudgetNanos;
+            this.results = new ArrayList<>(commands.size());
+            this.ctx = ctx;
+        }
+
+        @Override
+        public boolean run(long deadlineNanos) {
+            ticks++;
+            long stopAt = Math.min(deadlineNanos, System.nanoTime() + tickBudgetNanos);
+            while (!stopped && results.size() < commands.size()) {
+                String command = commands.get(results.size());
+                CommandResult result;
+                CommandOutput output = newOutput(ctx, "[" + (results.size() + 1) + "] ", streamed);
+                outputs.add(output);
+                try {
+                    result = dispatchCommand(command, output, 0);
+                } catch (Exception e) {
+                    result = new CommandResult(command, "error", String.valueOf(e.getMessage()));
                 }
+                results.add(result);
+                stopped = stopOnError && !"ok".equals(result.status);
+                // Console output is still being captured: give it a tick of its own
+                if (System.nanoTime() >= stopAt || !result.output.isDone()) break;
             }
-            @Override
-            public void flush() {}
-            @Override
-            public void close() throws SecurityException {}
-        };
-        
-        // Add handler to capture logs
-        java.util.logging.Logger bukkitLogger = Bukkit.getLogger();
-        bukkitLogger.addHandler(logHandler);
-        
-        try {
-            // Execute with real console sender
-            Bukkit.dispatchCommand(Bukkit.getConsoleSender(), command);
-            
-            // Small delay to let async log messages come through
-            try { Thread.sleep(100); } catch (InterruptedException ignored) {}
-            
-            if (capturedLogs.isEmpty()) {
-                return "Command executed successfully (via console).";
+            return stopped || results.size() == commands.size() || ticks >= maxTicks;
+        }
+
+        void finishOutputs() {
+            for (CommandOutput output : outputs) {
+                output.finish();
             }
-            return String.join("\n", capturedLogs);
-        } finally {
-            bukkitLogger.removeHandler(logHandler);
         }
     }
 
-    private ObjectNode readFile(String pathStr) throws Exception {
+    private static final class CommandResult {
+        final String command;
+        final String status;
+        // Completes off the main thread when captured from the console log
+        final CompletableFuture<String> output;
+
+        CommandResult(String command, String status, String output) {
+            this(command, status, CompletableFuture.completedFuture(output));
+        }
+
+        CommandResult(String command, String status, CompletableFuture<String> output) {
+            this.command = command;
+            this.status = status;
+            this.output = output;
+        }
+    }
+
+    private ObjectNode readFile(JsonNode args) throws Exception {
+        String pathStr = args.get("path").asText();
         Path path = serverRoot.resolve(pathStr).normalize();
         if (!path.startsWith(serverRoot)) {
             throw new SecurityException("Access denied: Path is outside server root.");
@@ -214,9 +668,64 @@ public class ToolHandler {
         if (!Files.exists(path)) {
             throw new IllegalArgumentException("File not found: " + pathStr);
         }
-        
-        String content = Files.readString(path, StandardCharsets.UTF_8);
-        return createTextResult(content);
+
+        if (args.has("startLine")) {
+            long startLine = args.get("startLine").asLong();
+            int lineCount = args.has("lineCount") ? Math.max(1, args.get("lineCount").asInt()) : 200;
+            PagedFileReader.Page page = fileReader.readLines(path, startLine, lineCount, maxPageBytes);
+            StringBuilder info = new StringBuilder("[lines ").append(page.startLine);
+            if (page.totalLines >= 0) info.append(" of ").append(page.totalLines);
+            if (page.nextLine > 0) {
+                info.append("; next startLine ").append(page.nextLine);
+            } else if (page.hasMore()) {
+                info.append("; line exceeds page size, continue with offset ").append(page.endByte);
+            }
+            return createPagedResult(page.text, info.append("]").toString());
+        }
+
+        // Anything that does not fit in one page is served by byte range, even
+        // when the caller did not ask for one.
+        long size = Files.size(path);
+        if (args.has("offset") || args.has("length") || size > maxPageBytes) {
+            long offset = args.has("offset") ? args.get("offset").asLong() : 0;
+            int length = args.has("length") ? (int) Math.min(Math.max(0, args.get("length").asLong()), maxPageBytes) : maxPageBytes;
+            PagedFileReader.Page page = fileReader.readBytes(path, offset, length);
+            StringBuilder info = new StringBuilder("[bytes ").append(page.startByte).append("-").append(page.endByte)
+                    .append(" of ").append(page.fileSize);
+            if (page.hasMore()) info.append("; next offset ").append(page.endByte);
+            return createPagedResult(page.text, info.append("]").toString());
+        }
+
+        FileCache.Entry entry = fileCache.get(path);
+        String tag = "[sha256 " + entry.sha256 + "]";
+        if (entry.sha256.equalsIgnoreCase(args.path("ifNoneMatch").asText(""))) {
+            return createTextResult("unchanged " + tag);
+        }
+        ObjectNode result = createStreamedResult(StreamedValue.encoded(entry.json));
+        result.withArray("content").addObject().put("type", "text").put("text", tag);
+        return result;
+    }
+
+    // The value is read while the response is written, not here
+    private ObjectNode createStreamedResult(StreamedValue value) {
+        ObjectNode result = mapper.createObjectNode();
+        ArrayNode content = result.putArray("content");
+        content.addObject().put("type", "text").putPOJO("text", value);
+        return result;
+    }
+
+    // Written as standard base64 without line breaks, with no intermediate String
+    private ObjectNode createBinaryResult(byte[] bytes) {
+        ObjectNode result = mapper.createObjectNode();
+        ArrayNode content = result.putArray("content");
+        content.addObject().put("type", "text").put("text", bytes);
+        return result;
+    }
+
+    private ObjectNode createPagedResult(String text, String pageInfo) {
+        ObjectNode result = createTextResult(text);
+        result.withArray("content").addObject().put("type", "text").put("text", pageInfo);
+        return result;
     }
 
     private ObjectNode writeFile(String pathStr, String content) throws Exception {
@@ -227,39 +736,88 @@ public class ToolHandler {
         
         Files.createDirectories(path.getParent());
         Files.writeString(path, content, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        fileCache.invalidate(path);
+        fileReader.invalidate(path);
         return createTextResult("File written successfully to " + pathStr);
     }
 
-    private ObjectNode listPlugins() throws Exception {
-        CompletableFuture<String> future = new CompletableFuture<>();
-        
-        Bukkit.getScheduler().runTask(plugin, () -> {
-            try {
-                StringBuilder sb = new StringBuilder();
-                for (Plugin p : Bukkit.getPluginManager().getPlugins()) {
-                    sb.append(p.getName()).append(" (").append(p.getDescription().getVersion()).append(")");
-                    if (!p.isEnabled()) sb.append(" [DISABLED]");
-                    sb.append("\n");
-                }
-                future.complete(sb.toString());
-            } catch (Exception e) {
-                future.completeExceptionally(e);
+    private ObjectNode applyPatch(JsonNode args) throws Exception {
+        String pathStr = args.get("path").asText();
+        Path path = resolveExisting(pathStr);
+        String baseSha256 = args.path("baseSha256").asText(null);
+        boolean hasDiff = args.hasNonNull("diff");
+        boolean hasEdits = args.hasNonNull("edits");
+        if (hasDiff == hasEdits) {
+            throw new IllegalArgumentException("Pass either diff or edits");
+        }
+
+        TextPatcher.Result result;
+        if (hasDiff) {
+            result = patcher.applyDiff(path, baseSha256, args.get("diff").asText());
+        } else {
+            List<TextPatcher.Edit> list = new ArrayList<>();
+            for (JsonNode e : args.get("edits")) {
+                list.add(new TextPatcher.Edit(e.get("startLine").asInt(), e.get("endLine").asInt(), e.get("content").asText()));
             }
-        });
+            result = patcher.applyEdits(path, baseSha256, list);
+        }
+        fileCache.invalidate(path);
+        fileReader.invalidate(path);
+        return createTextResult("Patched " + pathStr + ": " + result.hunkCount + (result.hunkCount == 1 ? " hunk" : " hunks")
+                + ", +" + result.added + " -" + result.removed + " lines, " + result.size + " bytes, sha256 " + result.sha256
+                + "\n" + result.hunks);
+    }
+
+    private CompletableFuture<ObjectNode> listPlugins(ToolContext ctx) {
+        return ctx.runOnMain(MainThreadScheduler.Priority.HIGH, () -> {
+            StringBuilder sb = new StringBuilder();
+            for (Plugin p : Bukkit.getPluginManager().getPlugins()) {
+                sb.append(p.getName()).append(" (").append(p.getDescription().getVersion()).append(")");
+                if (!p.isEnabled()) sb.append(" [DISABLED]");
+                sb.append("\n");
+            }
+            return sb.toString();
+        }).thenApplyAsync(this::createTextResult, workers).orTimeout(10, TimeUnit.SECONDS);
+    }
 
-        return createTextResult(future.get(10, TimeUnit.SECONDS));
+    private ObjectNode mcpStatus() {
+        return createTextResult(scheduler.describe() + "\nLog stream subscribers: " + logStreamer.getSubscriberCount());
     }
 
-    private ObjectNode getLogs() throws Exception {
+    private ObjectNode getLogs(JsonNode args) throws Exception {
         Path logPath = serverRoot.resolve("logs/latest.log");
         if (!Files.exists(logPath)) {
              return createTextResult("No latest.log found.");
         }
-        
-        List<String> lines = Files.readAllLines(logPath, StandardCharsets.UTF_8);
-        int start = Math.max(0, lines.size() - 100);
-        String recentLogs = lines.subList(start, lines.size()).stream().collect(Collectors.joining("\n"));
-        return createTextResult(recentLogs);
+
+        int lines = args.has("lines") ? Math.max(1, Math.min(args.get("lines").asInt(), 5000)) : 100;
+        String since = args.has("since") ? args.get("since").asText() : null;
+        String level = args.has("level") ? args.get("level").asText() : null;
+        Pattern filter = args.has("filter") ? Pattern.compile(args.get("filter").asText()) : null;
+
+        LogTailer.Tail tail = logTailer.tail(logPath, lines, since, level, filter);
+        String text = tail.lines.isEmpty() ? "No new log lines." : String.join("\n", tail.lines);
+        return createPagedResult(text, "[cursor: " + tail.cursor + "]");
+    }
+
+    private ObjectNode subscribeLogs(JsonNode args, String sessionId) {
+        if (sessionId == null) {
+            throw new IllegalArgumentException("subscribe_logs requires a session (connect via /sse, or /mcp with Mcp-Session-Id)");
+        }
+        if (args.path("unsubscribe").asBoolean(false)) {
+            boolean removed = logStreamer.unsubscribe(sessionId);
+            return createTextResult(removed ? "Log subscription removed." : "No active log subscription.");
+        }
+
+        Level level = LogStreamer.parseLevel(args.has("level") ? args.get("level").asText() : "info");
+        List<String> loggers = new ArrayList<>();
+        for (JsonNode logger : args.path("loggers")) {
+            loggers.add(logger.asText());
+        }
+        int backlog = Math.max(0, args.path("backlog").asInt(0));
+        logStreamer.subscribe(sessionId, level, loggers, backlog);
+        return createTextResult("Subscribed to server logs at level " + level.getName()
+                + (loggers.isEmpty() ? "" : " for loggers " + loggers) + ".");
     }
 
     private ObjectNode readFileBase64(String pathStr) throws Exception {
@@ -271,52 +829,455 @@ public class ToolHandler {
             throw new IllegalArgumentException("File not found: " + pathStr);
         }
         
-        byte[] bytes = Files.readAllBytes(path);
-        String base64 = Base64.getEncoder().encodeToString(bytes);
-        return createTextResult(base64);
+        // Too big to inline sensibly: hand out a download URL instead
+        long size = Files.size(path);
+        if (inlineMaxBytes > 0 && size > inlineMaxBytes) {
+            return createTextResult("File is " + formatSize(size) + ", too large to return as base64. Download it from "
+                    + fileUrl("GET", path) + " (valid " + urlTtlSeconds + " s, supports Range), or use read_file_chunk.");
+        }
+        return createBinaryResult(Files.readAllBytes(path));
+    }
+
+    private ObjectNode createFileUrl(JsonNode args) throws Exception {
+        String method = args.path("method").asText("GET").toUpperCase(Locale.ROOT);
+        if (!method.equals("GET") && !method.equals("PUT")) {
+            throw new IllegalArgumentException("method must be GET or PUT");
+        }
+        String pathStr = args.get("path").asText();
+        Path path = method.equals("GET") ? resolveExisting(pathStr) : resolve(pathStr);
+        if (path.equals(serverRoot)) {
+            throw new SecurityException("Access denied: Path is outside server root.");
+        }
+        long ttl = Math.min(Math.max(1, args.path("ttlSeconds").asLong(urlTtlSeconds)), 86_400);
+        String url = fileUrl(method, path, ttl);
+        String usage = method.equals("GET")
+                ? "curl -o out " + quote(url) + "   (add -H 'Range: bytes=START-END' for part of the file)"
+                : "curl -T localfile " + quote(url) + "   (optionally -H 'X-Content-SHA256: <hex>' to verify)";
+        return createTextResult(mapper.createObjectNode()
+                .put("url", url)
+                .put("method", method)
+                .put("expiresInSeconds", ttl)
+                .put("usage", usage).toString());
+    }
+
+    private String fileUrl(String method, Path path) {
+        return fileUrl(method, path, urlTtlSeconds);
+    }
+
+    // Relative to the MCP server's base URL unless server.public-url is set
+    private String fileUrl(String method, Path path, long ttlSeconds) {
+        String relative = serverRoot.relativize(path).toString().replace('\\', '/');
+        return publicUrl + fileUrls.createUrl(method, relative, ttlSeconds);
+    }
+
+    private static String quote(String url) {
+        return "'" + url + "'";
     }
 
     private ObjectNode writeFileBase64(String pathStr, String base64Content) throws Exception {
+        Path path = resolveFileTarget(pathStr);
+        long size = uploads.replace(path, base64Content);
+        fileCache.invalidate(path);
+        fileReader.invalidate(path);
+        return createTextResult("Binary file written successfully to " + pathStr + " (" + size + " bytes)");
+    }
+
+    private ObjectNode readFileChunk(JsonNode args) throws Exception {
+        String pathStr = args.get("path").asText();
+        Path path = resolveExisting(pathStr);
+        long size = Files.size(path);
+        long offset = Math.min(Math.max(0, args.path("offset").asLong(0)), size);
+        long length = Math.min(args.has("length") ? Math.max(0, args.get("length").asLong()) : maxChunkBytes, maxChunkBytes);
+        ByteBuffer bytes = ByteBuffer.allocate((int) (Math.min(size, offset + length) - offset));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (bytes.hasRemaining() && channel.read(bytes, offset + bytes.position()) >= 0) {
+                // Fill the buffer; stops short if the file shrank meanwhile
+            }
+        }
+        // Read here rather than while the response is written, so a failure is a tool
+        // error and the note below matches the bytes sent exactly
+        long end = offset + bytes.position();
+        if (bytes.hasRemaining()) size = end;
+
+        StringBuilder info = new StringBuilder("[bytes ").append(offset).append("-").append(end).append(" of ").append(size);
+        info.append(end < size ? "; next offset " + end : "; done").append("]");
+        ObjectNode result = createBinaryResult(Arrays.copyOf(bytes.array(), bytes.position()));
+        result.withArray("content").addObject().put("type", "text").put("text", info.toString());
+        return result;
+    }
+
+    private ObjectNode writeFileChunk(JsonNode args) throws Exception {
+        String pathStr = args.get("path").asText();
+        Path path = resolveFileTarget(pathStr);
+        ChunkedUploads.Upload upload = args.hasNonNull("uploadId")
+                ? uploads.find(args.get("uploadId").asText(), path)
+                : uploads.start(path);
+
+        long received = upload.received();
+        if (args.hasNonNull("content")) {
+            String content = args.get("content").asText();
+            // Base64 is 4 characters per 3 bytes
+            if ((long) content.length() / 4 * 3 > maxChunkBytes) {
+                throw new IllegalArgumentException("Chunk too large: at most " + maxChunkBytes + " bytes per call");
+            }
+            long offset = args.has("offset") ? args.get("offset").asLong() : received;
+            received = uploads.write(upload, offset, content);
+        }
+
+        if (args.hasNonNull("sha256")) {
+            long size = uploads.commit(upload, args.get("sha256").asText());
+            fileCache.invalidate(path);
+            fileReader.invalidate(path);
+            return createTextResult("Upload " + upload.id + " verified and written to " + pathStr + " (" + size + " bytes)");
+        }
+        return createTextResult(mapper.createObjectNode().put("uploadId", upload.id).put("received", received).toString());
+    }
+
+    private ObjectNode uploadStatus(JsonNode args) throws Exception {
+        Path path = args.hasNonNull("path") ? resolve(args.get("path").asText()) : null;
+        ChunkedUploads.Upload upload = uploads.find(args.get("uploadId").asText(), path);
+        if (args.path("abort").asBoolean(false)) {
+            uploads.abort(upload);
+            return createTextResult("Upload " + upload.id + " aborted.");
+        }
+        return createTextResult(mapper.createObjectNode()
+                .put("uploadId", upload.id)
+                .put("path", serverRoot.relativize(upload.target).toString().replace('\\', '/'))
+                .put("received", upload.received()).toString());
+    }
+
+    private ObjectNode fileChecksum(String pathStr) throws Exception {
+        Path path = resolveExisting(pathStr);
+        return createTextResult(mapper.createObjectNode()
+                .put("sha256", ChunkedUploads.sha256(path))
+                .put("size", Files.size(path)).toString());
+    }
+
+    private Path resolve(String pathStr) {
         Path path = serverRoot.resolve(pathStr).normalize();
         if (!path.startsWith(serverRoot)) {
             throw new SecurityException("Access denied: Path is outside server root.");
         }
-        
-        byte[] bytes = Base64.getDecoder().decode(base64Content);
-        Files.createDirectories(path.getParent());
-        Files.write(path, bytes, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
-        return createTextResult("Binary file written successfully to " + pathStr + " (" + bytes.length + " bytes)");
+        return path;
     }
 
-    private ObjectNode listDirectory(String pathStr) throws Exception {
-        Path path = serverRoot.resolve(pathStr).normalize();
-        if (!path.startsWith(serverRoot)) {
+    // A file to write. Never the server root or a directory: uploads stage their
+    // temp file next to the target, which for the root would be outside it
+    private Path resolveFileTarget(String pathStr) {
+        Path path = resolve(pathStr);
+        if (path.equals(serverRoot)) {
             throw new SecurityException("Access denied: Path is outside server root.");
         }
+        if (Files.isDirectory(path)) {
+            throw new IllegalArgumentException("Is a directory: " + pathStr);
+        }
+        return path;
+    }
+
+    private Path resolveExisting(String pathStr) {
+        Path path = resolve(pathStr);
+        if (!Files.isRegularFile(path)) {
+            throw new IllegalArgumentException("File not found: " + pathStr);
+        }
+        return path;
+    }
+
+    private ObjectNode listDirectory(JsonNode args) throws Exception {
+        String pathStr = args.path("path").asText(".");
+        Path path = resolve(pathStr);
         if (!Files.exists(path)) {
             throw new IllegalArgumentException("Directory not found: " + pathStr);
         }
         if (!Files.isDirectory(path)) {
             throw new IllegalArgumentException("Not a directory: " + pathStr);
         }
-        
+        int depth = Math.min(Math.max(1, args.path("depth").asInt(1)), MAX_LIST_DEPTH);
+        int limit = Math.min(Math.max(1, args.path("limit").asInt(DEFAULT_LIST_LIMIT)), MAX_LIST_LIMIT);
+        String glob = args.hasNonNull("glob") ? args.get("glob").asText() : null;
+        String cursor = args.hasNonNull("cursor") ? args.get("cursor").asText() : null;
+
+        // Served from the in-memory index: no directory read or stat per entry
+        DirectoryIndex.Listing listing = directoryIndex.list(path, depth, glob,
+                args.path("minSize").asLong(-1), args.path("maxSize").asLong(-1), cursor, limit);
         StringBuilder sb = new StringBuilder();
-        try (var stream = Files.list(path)) {
-            stream.sorted().forEach(p -> {
-                String name = p.getFileName().toString();
-                if (Files.isDirectory(p)) {
-                    sb.append("[DIR]  ").append(name).append("/\n");
-                } else {
+        for (DirectoryIndex.Entry entry : listing.entries) {
+            if (entry.directory) {
+                sb.append("[DIR]  ").append(entry.path).append("/\n");
+            } else {
+                sb.append("[FILE] ").append(entry.path).append(" (").append(formatSize(entry.size)).append(")\n");
+            }
+        }
+        if (listing.nextCursor != null) {
+            sb.append("[more entries; continue with cursor ").append(mapper.writeValueAsString(listing.nextCursor)).append("]\n");
+        }
+        return createTextResult(sb.toString());
+    }
+
+    private CompletableFuture<ObjectNode> grepFiles(JsonNode args, ToolContext ctx) {
+        String pathStr = args.path("path").asText(".");
+        Path base = resolve(pathStr);
+        if (!Files.isDirectory(base)) {
+            throw new IllegalArgumentException("Not a directory: " + pathStr);
+        }
+        String text = args.get("pattern").asText();
+        int flags = args.path("ignoreCase").asBoolean(false) ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : 0;
+        Pattern pattern = args.path("literal").asBoolean(false)
+                ? Pattern.compile(text, flags | Pattern.LITERAL)
+                : Pattern.compile(text, flags | Pattern.MULTILINE);
+        int maxMatches = Math.min(Math.max(1, args.path("maxMatches").asInt(DEFAULT_MAX_MATCHES)), MAX_MATCHES);
+        List<String> includes = new ArrayList<>();
+        args.path("include").forEach(glob -> includes.add(glob.asText()));
+        List<String> excludes = new ArrayList<>();
+        args.path("exclude").forEach(glob -> excludes.add(glob.asText()));
+
+        AtomicInteger reported = new AtomicInteger();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(searchTimeoutMillis);
+        return CompletableFuture.supplyAsync(() -> {
+            FileSearch.Result result = fileSearch.search(base, pattern, includes, excludes, maxMatches, deadline,
+                    SEARCH_BATCH, ctx.canReportProgress() ? batch -> ctx.reportProgress(
+                            reported.addAndGet(batch.size()), 0, formatMatches(batch, new StringBuilder()).toString()) : null);
+            StringBuilder sb = formatMatches(result.matches, new StringBuilder());
+            sb.append("[").append(result.matches.size()).append(result.matches.size() == 1 ? " match" : " matches")
+                    .append(" in ").append(result.filesScanned).append(" files searched");
+            if (result.filesSkipped > 0) sb.append("; ").append(result.filesSkipped).append(" binary or large files skipped");
+            if (result.truncated) sb.append("; stopped early (maxMatches or time limit), results are incomplete");
+            return createTextResult(sb.append("]").toString());
+        }, searchPool);
+    }
+
+    private static World world(JsonNode args) {
+        World world = args.has("world") ? Bukkit.getWorld(args.get("world").asText()) : Bukkit.getWorlds().get(0);
+        if (world == null) {
+            throw new IllegalArgumentException("World not found: " + args.get("world").asText());
+        }
+        return world;
+    }
+
+    private CompletableFuture<ObjectNode> editBlocks(JsonNode args, ToolContext ctx) {
+        World world = world(args);
+        int x1 = args.get("x1").asInt();
+        int y1 = args.get("y1").asInt();
+        int z1 = args.get("z1").asInt();
+        int x2 = args.get("x2").asInt();
+        int y2 = args.get("y2").asInt();
+        int z2 = args.get("z2").asInt();
+        boolean replaceTileEntities = args.path("replaceTileEntities").asBoolean(false);
+        CompletableFuture<BlockEditor.Edit> edit;
+        if (args.has("block")) {
+            String block = args.get("block").asText();
+            edit = supplyOffThread(() -> blockEditor.fill(world, x1, y1, z1, x2, y2, z2, block, replaceTileEntities,
+                    editTickBudgetNanos));
+        } else if (args.has("palette") && args.has("runs")) {
+            List<String> palette = new ArrayList<>();
+            args.get("palette").forEach(state -> palette.add(state.asText()));
+            int[] runs = BlockEditor.parseRuns(args.get("runs").asText());
+            edit = supplyOffThread(() -> blockEditor.edit(world, x1, y1, z1, x2, y2, z2, palette, runs, replaceTileEntities,
+                    editTickBudgetNanos));
+        } else {
+            throw new IllegalArgumentException("Pass either block, or palette and runs");
+        }
+        return runEdit(edit, ctx, "");
+    }
+
+    // Block data is parsed and journals are read off the main thread
+    private <T> CompletableFuture<T> supplyOffThread(Callable<T> task) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return task.call();
+            } catch (Exception e) {
+                throw asCompletionException(e);
+            }
+        }, workers);
+    }
+
+    // Applies an edit through the scheduler, then writes its undo journal, also
+    // when the edit was stopped part way
+    private CompletableFuture<ObjectNode> runEdit(CompletableFuture<BlockEditor.Edit> prepared, ToolContext ctx, String prefix) {
+        // Progress goes out in order, one report after the other, and the result waits for them
+        CompletableFuture<?>[] reports = {CompletableFuture.completedFuture(null)};
+        return prepared.thenCompose(edit -> scheduler.submitTicking(MainThreadScheduler.Priority.NORMAL, 10_000L, deadline -> {
+                    boolean done = edit.run(deadline);
+                    // The last tick needs no report: the result follows
+                    if (!done && ctx.canReportProgress()) {
+                        long applied = edit.getApplied();
+                        reports[0] = reports[0].thenRunAsync(() -> ctx.reportProgress(applied, edit.getTotal(), null), workers);
+                    }
+                    return done;
+                })
+                .handle((v, error) -> reports[0].handle((r, e) -> error))
+                .thenCompose(reported -> reported)
+                .thenApplyAsync(error -> {
+                    String id;
                     try {
-                        long size = Files.size(p);
-                        sb.append("[FILE] ").append(name).append(" (").append(formatSize(size)).append(")\n");
-                    } catch (Exception e) {
-                        sb.append("[FILE] ").append(name).append("\n");
+                        id = blockEditor.writeJournal(edit);
+                    } catch (IOException e) {
+                        throw new CompletionException("Blocks were set but the undo journal could not be written", e);
                     }
+                    StringBuilder sb = new StringBuilder(prefix);
+                    if (error != null) {
+                        sb.append("Edit stopped after ").append(edit.getApplied()).append(" of ").append(edit.getTotal())
+                                .append(" blocks: ").append(unwrap(error).getMessage()).append(". ");
+                    }
+                    sb.append("Changed ").append(edit.getChanged()).append(" of ").append(edit.getApplied())
+                            .append(" blocks in ").append(edit.getTicks()).append(edit.getTicks() == 1 ? " tick" : " ticks");
+                    if (edit.getSkippedTileEntities() > 0) {
+                        sb.append("; left ").append(edit.getSkippedTileEntities())
+                                .append(" tile entities alone (pass replaceTileEntities to replace them)");
+                    }
+                    if (id != null) sb.append(". Undo with undo_edit id ").append(id);
+                    return createTextResult(sb.toString());
+                }, workers));
+    }
+
+    private CompletableFuture<ObjectNode> lagCensus(JsonNode args) {
+        List<World> worlds = args.has("world") ? List.of(world(args)) : Bukkit.getWorlds();
+        int limit = Math.min(Math.max(1, args.path("limit").asInt(10)), maxCensusRows);
+        String key = args.has("world") ? worlds.get(0).getName() : "*";
+        return lagCensus.cached(key, () -> takeCensus(worlds))
+                .thenApplyAsync(census -> createTextResult(formatCensus(census, limit)), workers);
+    }
+
+    // One snapshot per world, in one scheduler group; counted on the search pool
+    private CompletableFuture<LagCensus.Census> takeCensus(List<World> worlds) {
+        LagCensus.Snapshot snapshot = lagCensus.snapshot(worlds, censusTickBudgetNanos);
+        long takenAt = System.currentTimeMillis();
+        return scheduler.submitTicking(MainThreadScheduler.Priority.NORMAL, 10_000L, snapshot)
+                .thenApplyAsync(v -> lagCensus.aggregate(snapshot.getWorlds(), takenAt), searchPool);
+    }
+
+    private static String formatCensus(LagCensus.Census census, int limit) {
+        StringBuilder sb = new StringBuilder("Census of ").append(census.worlds.size())
+                .append(census.worlds.size() == 1 ? " world" : " worlds").append(", taken ")
+                .append(String.format(Locale.ROOT, "%.1f", (System.currentTimeMillis() - census.takenAt) / 1000.0))
+                .append(" s ago\nWorlds:\n");
+        for (LagCensus.WorldTotals world : census.worlds) {
+            sb.append("  ").append(world.world).append(": ").append(world.chunks).append(" chunks, ")
+                    .append(world.entities).append(" entities, ").append(world.tileEntitiesExact ? "" : "at least ")
+                    .append(world.tileEntities).append(" tile entities");
+            if (!world.entityTypes.isEmpty()) {
+                sb.append(" (top:");
+                int shown = 0;
+                for (Map.Entry<EntityType, Long> entry : world.entityTypes.entrySet()) {
+                    if (shown++ == 3) break;
+                    sb.append(' ').append(entry.getKey().getKey()).append(' ').append(entry.getValue());
                 }
-            });
+                sb.append(')');
+            }
+            if (world.truncated) sb.append(" [too many to count all by type]");
+            sb.append('\n');
         }
-        return createTextResult(sb.toString());
+        sb.append("Busiest chunks (chunk x z, entities + tile entities):\n");
+        for (LagCensus.ChunkCount chunk : census.chunks.subList(0, Math.min(limit, census.chunks.size()))) {
+            sb.append("  ").append(chunk.world).append(' ').append(chunk.x).append(' ').append(chunk.z)
+                    .append(" (blocks ").append(chunk.x << 4).append(' ').append(chunk.z << 4).append("): ")
+                    .append(chunk.entities).append(" entities");
+            if (chunk.topType != null) {
+                sb.append(" (mostly ").append(chunk.topType.getKey()).append(' ').append(chunk.topTypeCount).append(')');
+            }
+            sb.append(", ").append(chunk.tileEntities).append(" tile entities\n");
+        }
+        sb.append("Entity types:\n");
+        appendTop(sb, census.entityTypes, limit, type -> type.getKey().toString());
+        sb.append("Tile entity types:\n");
+        appendTop(sb, census.tileEntityTypes, limit, type -> type.getKey().toString());
+        return sb.toString();
+    }
+
+    private static <T> void appendTop(StringBuilder sb, Map<T, Long> counts, int limit, Function<T, String> name) {
+        int shown = 0;
+        for (Map.Entry<T, Long> entry : counts.entrySet()) {
+            if (shown++ == limit) break;
+            sb.append("  ").append(name.apply(entry.getKey())).append(' ').append(entry.getValue()).append('\n');
+        }
+    }
+
+    private CompletableFuture<ObjectNode> queryRegion(JsonNode args, ToolContext ctx) {
+        World world = world(args);
+        Set<Material> match = new HashSet<>();
+        for (JsonNode name : args.path("match")) {
+            Material material = Material.matchMaterial(name.asText());
+            if (material == null || !material.isBlock()) {
+                throw new IllegalArgumentException("Unknown block type: " + name.asText());
+            }
+            match.add(material);
+        }
+        int maxMatches = Math.min(Math.max(1, args.path("maxMatches").asInt(DEFAULT_MAX_MATCHES)), MAX_MATCHES);
+        boolean dump = args.path("dump").asBoolean(false);
+        RegionScanner.Capture capture = regionScanner.capture(world, args.get("x1").asInt(), args.get("y1").asInt(),
+                args.get("z1").asInt(), args.get("x2").asInt(), args.get("y2").asInt(), args.get("z2").asInt(),
+                args.path("loadChunks").asBoolean(false), dump, regionTickBudgetNanos);
+
+        return scheduler.submitTicking(MainThreadScheduler.Priority.NORMAL, 10_000L, capture)
+                // The scan runs on the search pool: it is the fork-join pool set aside for parallel scans
+                .thenApplyAsync(v -> createTextResult(formatRegion(capture,
+                        regionScanner.scan(capture, match, maxMatches, dump))), searchPool);
+    }
+
+    private static String formatRegion(RegionScanner.Capture capture, RegionScanner.Result result) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(capture.world.getName()).append(" ").append(capture.minX).append(' ').append(capture.minY).append(' ')
+                .append(capture.minZ).append(" to ").append(capture.maxX).append(' ').append(capture.maxY).append(' ')
+                .append(capture.maxZ).append(": ").append(capture.volume()).append(" blocks in ")
+                .append(capture.getChunks()).append(capture.getChunks() == 1 ? " chunk" : " chunks");
+        if (capture.getSkippedChunks() > 0) {
+            sb.append(", ").append(capture.getSkippedChunks()).append(" not loaded and skipped");
+        }
+        sb.append(" (copied over ").append(capture.getTicks()).append(capture.getTicks() == 1 ? " tick)\n" : " ticks)\n");
+        sb.append("Blocks:\n");
+        for (Map.Entry<Material, Long> entry : result.histogram.entrySet()) {
+            sb.append("  ").append(entry.getKey().getKey()).append(' ').append(entry.getValue()).append('\n');
+        }
+        if (result.airLike > 0) {
+            sb.append("  air-like (empty sections, not read) ").append(result.airLike).append('\n');
+        }
+        if (result.matchCount > 0) {
+            sb.append("Matches (").append(result.matchCount);
+            if (result.matchCount > result.matches.size()) sb.append(", first ").append(result.matches.size()).append(" shown");
+            sb.append("):\n");
+            for (RegionScanner.Block block : result.matches) {
+                sb.append("  ").append(block.x).append(' ').append(block.y).append(' ').append(block.z).append(' ')
+                        .append(block.type.getKey()).append('\n');
+            }
+        }
+        if (result.palette != null) {
+            sb.append("Dump (y, z, x order; index or count*index per run; palette of block data, usable with edit_blocks):\npalette:");
+            for (int i = 0; i < result.palette.size(); i++) {
+                sb.append(' ').append(i).append('=').append(result.palette.get(i));
+            }
+            sb.append("\nruns:");
+            for (int i = 0; i < result.runs.length; i += 2) {
+                sb.append(' ');
+                if (result.runs[i + 1] > 1) sb.append(result.runs[i + 1]).append('*');
+                sb.append(result.runs[i]);
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static StringBuilder formatMatches(List<FileSearch.Match> matches, StringBuilder sb) {
+        for (FileSearch.Match match : matches) {
+            sb.append(match.path).append(':').append(match.line).append(": ").append(match.text).append('\n');
+        }
+        return sb;
+    }
+
+    // Stops the threads this handler started; called when the server stops
+    public void close() {
+        searchPool.shutdownNow();
+        directoryIndex.close();
+    }
+
+    // Content search runs on its own pool so it never competes with tool
+    // workers or the common pool for threads
+    private static ForkJoinPool createSearchPool(int threads) {
+        AtomicInteger counter = new AtomicInteger();
+        return new ForkJoinPool(Math.max(1, threads), pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("MCP-Search-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
     }
 
     private String formatSize(long bytes) {
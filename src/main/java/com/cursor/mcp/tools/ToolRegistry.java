@@ -0,0 +1,150 @@
+package com.cursor.mcp.tools;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.CRC32;
+
+/**
+ * All tools the server exposes. Registered as a Bukkit service so other
+ * plugins can add their own:
+ *
+ * <pre>
+ * ToolRegistry registry = Bukkit.getServicesManager().load(ToolRegistry.class);
+ * registry.register(ToolDescriptor.builder("my_tool").owner(getName())...textExecutor(...).build());
+ * </pre>
+ *
+ * Only register, unregister and unregisterAll are meant for other plugins;
+ * the rest uses Jackson types, which are relocated in the shaded jar.
+ *
+ * Lookups go through an immutable snapshot, and the tools/list payload is
+ * serialized once per change rather than on every request.
+ */
+public class ToolRegistry {
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Map<String, ToolDescriptor> tools = new LinkedHashMap<>();
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+    private volatile Snapshot snapshot = new Snapshot(Collections.emptyMap(), "{\"tools\":[]}", "\"0\"", 0);
+
+    public void register(ToolDescriptor tool) {
+        boolean changed;
+        synchronized (tools) {
+            tools.put(tool.getName(), tool);
+            changed = publish();
+        }
+        if (changed) notifyListeners();
+    }
+
+    public boolean unregister(String name) {
+        boolean changed;
+        synchronized (tools) {
+            if (tools.remove(name) == null) return false;
+            changed = publish();
+        }
+        if (changed) notifyListeners();
+        return true;
+    }
+
+    // Removes every tool registered by the given plugin
+    public int unregisterAll(String owner) {
+        int removed;
+        boolean changed = false;
+        synchronized (tools) {
+            int before = tools.size();
+            tools.values().removeIf(tool -> owner.equals(tool.getOwner()));
+            removed = before - tools.size();
+            if (removed > 0) changed = publish();
+        }
+        if (changed) notifyListeners();
+        return removed;
+    }
+
+    // Called after the tool list actually changes, outside the registry's lock
+    public void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    public ToolDescriptor get(String name) {
+        return snapshot.tools.get(name);
+    }
+
+    public Collection<ToolDescriptor> getTools() {
+        return snapshot.tools.values();
+    }
+
+    // Pre-serialized result object for tools/list
+    public String getToolsListJson() {
+        return snapshot.listJson;
+    }
+
+    public CompletableFuture<ObjectNode> call(String name, JsonNode args, ToolContext ctx) {
+        ToolDescriptor tool = snapshot.tools.get(name);
+        if (tool == null) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Unknown tool: " + name));
+        }
+        try {
+            tool.getValidator().validate(args);
+            return tool.getExecutor().call(args, ctx);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    // Rebuilds the snapshot; true if the listed tools changed
+    private boolean publish() {
+        ObjectNode result = mapper.createObjectNode();
+        ArrayNode list = result.putArray("tools");
+        for (ToolDescriptor tool : tools.values()) {
+            ObjectNode node = list.addObject();
+            node.put("name", tool.getName());
+            node.put("description", tool.getDescription());
+            node.set("inputSchema", tool.getInputSchema());
+            if (tool.isReadOnly()) {
+                node.putObject("annotations").put("readOnlyHint", true);
+            }
+        }
+
+        String toolsJson = list.toString();
+        CRC32 crc = new CRC32();
+        crc.update(toolsJson.getBytes(StandardCharsets.UTF_8));
+        String etag = "\"" + Long.toHexString(crc.getValue()) + "\"";
+        Snapshot previous = snapshot;
+        boolean changed = !etag.equals(previous.etag);
+        long version = changed ? previous.version + 1 : previous.version;
+        result.putObject("_meta").put("etag", etag).put("version", version);
+
+        snapshot = new Snapshot(Collections.unmodifiableMap(new LinkedHashMap<>(tools)), result.toString(), etag, version);
+        // Re-registering an identical tool must not make every client refetch
+        return changed;
+    }
+
+    private void notifyListeners() {
+        for (Runnable listener : listeners) {
+            listener.run();
+        }
+    }
+
+    private static final class Snapshot {
+        final Map<String, ToolDescriptor> tools;
+        final String listJson;
+        final String etag;
+        final long version;
+
+        Snapshot(Map<String, ToolDescriptor> tools, String listJson, String etag, long version) {
+            this.tools = tools;
+            this.listJson = listJson;
+            this.etag = etag;
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,460 @@
+package com.cursor.mcp.world;
+
+import com.cursor.mcp.files.ChunkedUploads;
+import com.cursor.mcp.scheduler.MainThreadScheduler;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockState;
+import org.bukkit.block.data.BlockData;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Pattern;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Sets blocks in a box of the world a slice per tick, within a time budget,
+ * instead of one /fill that stalls the server (or is refused past 32768
+ * blocks). Blocks are placed without physics updates, like /fill. An
+ * unloaded chunk is loaded at the start of a tick, so loading (or generating)
+ * costs at most one chunk per tick on top of the budget.
+ *
+ * <p>The journal records block data only, not the contents of tile entities
+ * (chests, signs, spawners): those blocks are left alone unless the caller
+ * asks for them to be replaced, in which case undo brings back an empty block.
+ *
+ * <p>The state each block had before is recorded as it is replaced and written
+ * to an undo journal: a deflated file holding a palette of block data strings
+ * and varint runs of palette indexes in the edit's y, z, x order. Undoing an
+ * edit applies the journal as a new edit, which has a journal of its own.
+ */
+public class BlockEditor {
+    private static final int JOURNAL_MAGIC = 0x4D435055; // "MCPU"
+    private static final int JOURNAL_VERSION = 1;
+    private static final String JOURNAL_SUFFIX = ".undo";
+    private static final Pattern JOURNAL_ID = Pattern.compile("[a-z0-9]{1,32}");
+    // Palette entry for positions left as they are
+    private static final String KEEP = "";
+
+    private final Path journalDir;
+    private final long maxBlocks;
+    private final int keepJournals;
+
+    public BlockEditor(Path journalDir, long maxBlocks, int keepJournals) {
+        this.journalDir = journalDir;
+        this.maxBlocks = maxBlocks;
+        this.keepJournals = keepJournals;
+    }
+
+    // Sets every block of the box to one block data string
+    public Edit fill(World world, int x1, int y1, int z1, int x2, int y2, int z2, String block,
+                     boolean replaceTileEntities, long tickBudgetNanos) {
+        long volume = (long) (Math.abs(x2 - x1) + 1) * (Math.abs(y2 - y1) + 1) * (Math.abs(z2 - z1) + 1);
+        if (volume > maxBlocks) {
+            throw new IllegalArgumentException("Edit covers " + volume + " blocks, at most " + maxBlocks + " allowed");
+        }
+        return edit(world, x1, y1, z1, x2, y2, z2, List.of(block), new int[] {0, (int) volume}, replaceTileEntities,
+                tickBudgetNanos);
+    }
+
+    /**
+     * Parses runs as query_region prints them: space separated palette
+     * indexes, each optionally prefixed with a count and '*'.
+     */
+    public static int[] parseRuns(String text) {
+        String[] tokens = text.trim().split("\\s+");
+        if (tokens.length == 1 && tokens[0].isEmpty()) return new int[0];
+        int[] runs = new int[tokens.length * 2];
+        for (int i = 0; i < tokens.length; i++) {
+            int star = tokens[i].indexOf('*');
+            try {
+                runs[i * 2] = Integer.parseInt(tokens[i].substring(star + 1));
+                runs[i * 2 + 1] = star < 0 ? 1 : Integer.parseInt(tokens[i].substring(0, star));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid run: " + tokens[i]);
+            }
+        }
+        return runs;
+    }
+
+    /**
+     * An edit of a box (corners in any order). palette holds the block data
+     * strings runs refer to; "keep" (or "unloaded", as query_region dumps it)
+     * leaves a block unchanged. runs are pairs of palette index and length in
+     * y, z, x order and must cover the box exactly. Parses block data, so call
+     * it off the main thread.
+     */
+    public Edit edit(World world, int x1, int y1, int z1, int x2, int y2, int z2, List<String> palette, int[] runs,
+                     boolean replaceTileEntities, long tickBudgetNanos) {
+        int minY = Math.min(y1, y2);
+        int maxY = Math.max(y1, y2);
+        if (minY < world.getMinHeight() || maxY >= world.getMaxHeight()) {
+            throw new IllegalArgumentException("Region is outside the world height (" + world.getMinHeight()
+                    + " to " + (world.getMaxHeight() - 1) + ")");
+        }
+        Edit edit = new Edit(world, Math.min(x1, x2), minY, Math.min(z1, z2), Math.max(x1, x2), maxY,
+                Math.max(z1, z2), parsePalette(palette), runs, replaceTileEntities, tickBudgetNanos);
+        if (edit.total > maxBlocks) {
+            throw new IllegalArgumentException("Edit covers " + edit.total + " blocks, at most " + maxBlocks + " allowed");
+        }
+        long covered = 0;
+        for (int i = 0; i < runs.length; i += 2) {
+            if (runs[i] < 0 || runs[i] >= palette.size()) {
+                throw new IllegalArgumentException("Run " + (i / 2 + 1) + " refers to palette entry " + runs[i]
+                        + ", palette has " + palette.size());
+            }
+            if (runs[i + 1] <= 0) {
+                throw new IllegalArgumentException("Run " + (i / 2 + 1) + " has length " + runs[i + 1]);
+            }
+            covered += runs[i + 1];
+        }
+        long volume = (long) (edit.maxX - edit.minX + 1) * (edit.maxY - edit.minY + 1) * (edit.maxZ - edit.minZ + 1);
+        if (covered != volume) {
+            throw new IllegalArgumentException("Runs cover " + covered + " blocks, the region has " + volume);
+        }
+        return edit;
+    }
+
+    /**
+     * Reads a journal and returns the edit that puts its blocks back. Only the
+     * part of the original edit that was applied is covered. Tile entities the
+     * edit placed are replaced too. Call it off the main thread.
+     */
+    public Edit undo(String id, long tickBudgetNanos) throws IOException {
+        Path file = journalFile(id);
+        if (!Files.exists(file)) {
+            throw new IllegalArgumentException("No undo journal with id " + id);
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new InflaterInputStream(Files.newInputStream(file))))) {
+            if (in.readInt() != JOURNAL_MAGIC || in.readUnsignedByte() != JOURNAL_VERSION) {
+                throw new IOException("Not an undo journal: " + file.getFileName());
+            }
+            String worldName = in.readUTF();
+            World world = Bukkit.getWorld(worldName);
+            if (world == null) {
+                throw new IllegalArgumentException("World of the edit is not loaded: " + worldName);
+            }
+            int[] box = new int[6];
+            for (int i = 0; i < box.length; i++) {
+                box[i] = in.readInt();
+            }
+            List<String> palette = new ArrayList<>();
+            for (int i = readVarInt(in); i > 0; i--) {
+                palette.add(in.readUTF());
+            }
+            int[] runs = new int[readVarInt(in) * 2];
+            for (int i = 0; i < runs.length; i++) {
+                runs[i] = readVarInt(in);
+            }
+            Edit edit = new Edit(world, box[0], box[1], box[2], box[3], box[4], box[5], parsePalette(palette), runs,
+                    true, tickBudgetNanos);
+            edit.undoneId = id;
+            return edit;
+        }
+    }
+
+    /**
+     * Writes the journal of a finished (or stopped) edit and returns its id,
+     * or null if no block was reached. Deletes the journal the edit undid, and
+     * the oldest ones past the configured number. Call it off the main thread.
+     */
+    public String writeJournal(Edit edit) throws IOException {
+        if (edit.applied == 0) return null;
+        Files.createDirectories(journalDir);
+        String id = UUID.randomUUID().toString().replace("-", "").substring(0, 12);
+        Path file = journalFile(id);
+        Path temp = Files.createTempFile(journalDir, id, ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new DeflaterOutputStream(Files.newOutputStream(temp))))) {
+                out.writeInt(JOURNAL_MAGIC);
+                out.writeByte(JOURNAL_VERSION);
+                out.writeUTF(edit.world.getName());
+                for (int value : new int[] {edit.minX, edit.minY, edit.minZ, edit.maxX, edit.maxY, edit.maxZ}) {
+                    out.writeInt(value);
+                }
+                writeVarInt(out, edit.oldPalette.size());
+                for (String state : edit.oldPalette) {
+                    out.writeUTF(state);
+                }
+                writeVarInt(out, edit.oldRuns.size / 2);
+                for (int i = 0; i < edit.oldRuns.size; i++) {
+                    writeVarInt(out, edit.oldRuns.data[i]);
+                }
+            }
+            ChunkedUploads.moveIntoPlace(temp, file);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        if (edit.undoneId != null) {
+            Files.deleteIfExists(journalFile(edit.undoneId));
+        }
+        prune();
+        return id;
+    }
+
+    private Path journalFile(String id) {
+        if (!JOURNAL_ID.matcher(id).matches()) {
+            throw new IllegalArgumentException("Invalid edit id: " + id);
+        }
+        return journalDir.resolve(id + JOURNAL_SUFFIX);
+    }
+
+    private static void writeVarInt(OutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarInt(InputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.read();
+            if (b < 0) throw new IOException("Undo journal is truncated");
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Undo journal is corrupt");
+    }
+
+    // Keeps the newest keepJournals journals
+    private void prune() throws IOException {
+        List<Path> journals = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(journalDir, "*" + JOURNAL_SUFFIX)) {
+            stream.forEach(journals::add);
+        }
+        if (journals.size() <= keepJournals) return;
+        Map<Path, Long> modified = new HashMap<>();
+        for (Path journal : journals) {
+            modified.put(journal, Files.getLastModifiedTime(journal).toMillis());
+        }
+        journals.sort((a, b) -> Long.compare(modified.get(a), modified.get(b)));
+        for (Path journal : journals.subList(0, journals.size() - keepJournals)) {
+            Files.deleteIfExists(journal);
+        }
+    }
+
+    // Null entries keep the block
+    private static List<BlockData> parsePalette(List<String> palette) {
+        List<BlockData> parsed = new ArrayList<>(palette.size());
+        for (String state : palette) {
+            if (state.equals(KEEP) || state.equals("keep") || state.equals("unloaded")) {
+                parsed.add(null);
+                continue;
+            }
+            try {
+                parsed.add(Bukkit.createBlockData(state));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid block data: " + state);
+            }
+        }
+        return parsed;
+    }
+
+    /** Places the blocks of one edit on the main thread, spread over ticks. */
+    public static final class Edit implements MainThreadScheduler.TickJob {
+        public final World world;
+        public final int minX;
+        public final int minY;
+        public final int minZ;
+        public final int maxX;
+        public final int maxY;
+        public final int maxZ;
+        private final List<BlockData> palette;
+        private final int[] runs;
+        private final boolean replaceTileEntities;
+        private final long tickBudgetNanos;
+        private final int sizeX;
+        private final int sizeZ;
+        private final long total;
+        // Before-states numbered on first sight, entry 0 being KEEP
+        private final Map<BlockData, Integer> oldIndex = new HashMap<>();
+        private final List<String> oldPalette = new ArrayList<>();
+        private final Runs oldRuns = new Runs();
+        private String undoneId;
+        private int run;
+        private int runLeft;
+        private volatile long applied;
+        private volatile long changed;
+        private volatile long skippedTileEntities;
+        private volatile int ticks;
+
+        Edit(World world, int minX, int minY, int minZ, int maxX, int maxY, int maxZ, List<BlockData> palette,
+             int[] runs, boolean replaceTileEntities, long tickBudgetNanos) {
+            this.world = world;
+            this.minX = minX;
+            this.minY = minY;
+            this.minZ = minZ;
+            this.maxX = maxX;
+            this.maxY = maxY;
+            this.maxZ = maxZ;
+            this.palette = palette;
+            this.runs = runs;
+            this.replaceTileEntities = replaceTileEntities;
+            this.tickBudgetNanos = tickBudgetNanos;
+            this.sizeX = maxX - minX + 1;
+            this.sizeZ = maxZ - minZ + 1;
+            // A journal of a stopped edit covers fewer blocks than its box
+            long covered = 0;
+            for (int i = 1; i < runs.length; i += 2) {
+                covered += runs[i];
+            }
+            this.total = Math.min(covered, (long) sizeX * (maxY - minY + 1) * sizeZ);
+            this.runLeft = runs.length > 0 ? runs[1] : 0;
+            oldPalette.add(KEEP);
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        /** Blocks visited so far, including ones left unchanged. */
+        public long getApplied() {
+            return applied;
+        }
+
+        public long getChanged() {
+            return changed;
+        }
+
+        /** Tile entities left as they were because replacing them was not allowed. */
+        public long getSkippedTileEntities() {
+            return skippedTileEntities;
+        }
+
+        public int getTicks() {
+            return ticks;
+        }
+
+        // Places blocks until the tick's budget is used, checking the clock every
+        // few blocks and after loading a chunk or reading its tile entities. An
+        // unloaded chunk met part way through a tick is left for the start of
+        // the next one. Tile entity positions are read once per chunk and tick.
+        @Override
+        public boolean run(long deadlineNanos) {
+            ticks++;
+            long stopAt = Math.min(deadlineNanos, System.nanoTime() + tickBudgetNanos);
+            long start = applied;
+            long i = start;
+            long done = changed;
+            long skipped = skippedTileEntities;
+            long chunk = Long.MIN_VALUE; // last chunk known to be loaded
+            Map<Long, Set<Long>> tiles = new HashMap<>();
+            try {
+                while (i < total) {
+                    while (runLeft == 0) {
+                        run += 2;
+                        runLeft = runs[run + 1];
+                    }
+                    BlockData target = palette.get(runs[run]);
+                    int x = minX + (int) (i % sizeX);
+                    int z = minZ + (int) (i / sizeX % sizeZ);
+                    int y = minY + (int) (i / ((long) sizeX * sizeZ));
+                    boolean loaded = false;
+                    int tileChunks = tiles.size();
+                    if (target != null && chunk != chunkKey(x, z)) {
+                        if (!world.isChunkLoaded(x >> 4, z >> 4)) {
+                            if (i > start) break;
+                            world.getChunkAt(x >> 4, z >> 4);
+                            loaded = true;
+                        }
+                        chunk = chunkKey(x, z);
+                    }
+                    runLeft--;
+                    i++;
+                    if (target == null) {
+                        oldRuns.add(0);
+                    } else {
+                        Block block = world.getBlockAt(x, y, z);
+                        BlockData old = block.getBlockData();
+                        if (old.equals(target)) {
+                            oldRuns.add(0); // nothing to put back
+                        } else if (!replaceTileEntities && tileEntityAt(tiles, x, y, z)) {
+                            oldRuns.add(0);
+                            skipped++;
+                        } else {
+                            oldRuns.add(indexOf(old));
+                            block.setBlockData(target, false);
+                            done++;
+                        }
+                    }
+                    boolean readTiles = tiles.size() != tileChunks;
+                    if ((loaded || readTiles || (i & 63) == 0) && System.nanoTime() >= stopAt) break;
+                }
+            } finally {
+                applied = i;
+                changed = done;
+                skippedTileEntities = skipped;
+            }
+            return i == total;
+        }
+
+        private boolean tileEntityAt(Map<Long, Set<Long>> tiles, int x, int y, int z) {
+            Set<Long> positions = tiles.computeIfAbsent(chunkKey(x, z), key -> {
+                Set<Long> found = new HashSet<>();
+                for (BlockState state : TileEntities.read(world.getChunkAt(x >> 4, z >> 4))) {
+                    found.add(positionKey(state.getX(), state.getY(), state.getZ()));
+                }
+                return found;
+            });
+            return positions.contains(positionKey(x, y, z));
+        }
+
+        private static long positionKey(int x, int y, int z) {
+            return ((long) y << 8) | ((x & 15) << 4) | (z & 15);
+        }
+
+        private static long chunkKey(int x, int z) {
+            return ((long) (x >> 4) << 32) | ((z >> 4) & 0xffffffffL);
+        }
+
+        private int indexOf(BlockData old) {
+            Integer index = oldIndex.get(old);
+            if (index == null) {
+                index = oldPalette.size();
+                oldPalette.add(old.getAsString());
+                oldIndex.put(old, index);
+            }
+            return index;
+        }
+    }
+
+    // Growable list of (palette index, length) pairs; adding the same index extends the last run
+    private static final class Runs {
+        int[] data = new int[16];
+        int size;
+
+        void add(int value) {
+            if (size > 0 && data[size - 2] == value) {
+                data[size - 1]++;
+                return;
+            }
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = value;
+            data[size++] = 1;
+        }
+    }
+}
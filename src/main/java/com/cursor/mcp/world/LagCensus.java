@@ -0,0 +1,422 @@
+package com.cursor.mcp.world;
+
+import com.cursor.mcp.scheduler.MainThreadScheduler;
+import org.bukkit.Chunk;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.BlockState;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+
+/**
+ * Counts what the worlds have loaded, to find what is lagging: entities and
+ * tile entities by type and by chunk, and loaded chunks. The worlds are read
+ * chunk by chunk on the main thread, within a tick budget and over as many
+ * ticks as that takes: entity and tile entity counts per chunk are exact, but
+ * only the types of the first maxEntities entities and as many tile entities
+ * are copied, so a runaway farm cannot turn the copy itself into a lag spike.
+ * Counting the types runs off it in parallel, one fork-join task per world and
+ * per slice of its entities.
+ *
+ * <p>Entities of chunks whose entities are not loaded yet are not counted
+ * (reading them would load them), nor are chunks that unloaded before their
+ * turn. Tile entities are read without copying their state where the server
+ * supports it (Paper); elsewhere each read copies the full block state, so
+ * past maxTileCopies tile entities the remaining chunks are skipped and the
+ * tile entity totals are a lower bound.
+ *
+ * <p>Results are kept for a short time: calls within that window (and calls
+ * while a census is being taken) share one census instead of each copying
+ * the worlds again.
+ */
+public class LagCensus {
+    private static final EntityType[] ENTITY_TYPES = EntityType.values();
+    private static final Material[] MATERIALS = Material.values();
+    private static final int SLICE = 4096;
+
+    private final int maxEntities;
+    private final int maxTileCopies;
+    private final int maxChunks;
+    private final long cacheMillis;
+    private String cachedKey;
+    private long cachedAt;
+    private CompletableFuture<Census> cached;
+
+    // maxTileCopies bounds the copying tile entity reads of one census (Spigot);
+    // maxChunks is how many of the busiest chunks a census keeps
+    public LagCensus(int maxEntities, int maxTileCopies, int maxChunks, long cacheMillis) {
+        this.maxEntities = maxEntities;
+        this.maxTileCopies = maxTileCopies;
+        this.maxChunks = maxChunks;
+        this.cacheMillis = cacheMillis;
+    }
+
+    /** What one world had loaded; taken on the main thread. */
+    public static final class WorldSnapshot {
+        final String world;
+        final long[] chunkKeys;
+        final int[] chunkEntities;
+        final int[] chunkTileEntities;
+        int totalEntities;
+        int totalTileEntities;
+        boolean tileEntitiesExact = true;
+        // Types of the first entities and tile entities, and the chunk index of each entity
+        int entities;
+        int[] entityTypes;
+        int[] entityChunks;
+        int tileEntities;
+        int[] tileTypes;
+
+        WorldSnapshot(String world, int chunks, int maxEntities) {
+            this.world = world;
+            this.chunkKeys = new long[chunks];
+            this.chunkEntities = new int[chunks];
+            this.chunkTileEntities = new int[chunks];
+            int initial = Math.min(maxEntities, 1024);
+            this.entityTypes = new int[initial];
+            this.entityChunks = new int[initial];
+            this.tileTypes = new int[initial];
+        }
+    }
+
+    public static final class WorldTotals {
+        public final String world;
+        public final int chunks;
+        public final int entities;
+        public final int tileEntities;
+        /** False if tile entities were only counted up to maxEntities, so tileEntities is a lower bound. */
+        public final boolean tileEntitiesExact;
+        /** True if there were more entities or tile entities than were counted by type. */
+        public final boolean truncated;
+        /** Entity counts by type, most common first. */
+        public final Map<EntityType, Long> entityTypes;
+
+        WorldTotals(WorldSnapshot snapshot, Map<EntityType, Long> entityTypes) {
+            this.world = snapshot.world;
+            this.chunks = snapshot.chunkKeys.length;
+            this.entities = snapshot.totalEntities;
+            this.tileEntities = snapshot.totalTileEntities;
+            this.tileEntitiesExact = snapshot.tileEntitiesExact;
+            this.truncated = snapshot.entities < snapshot.totalEntities || snapshot.tileEntities < snapshot.totalTileEntities
+                    || !snapshot.tileEntitiesExact;
+            this.entityTypes = entityTypes;
+        }
+    }
+
+    public static final class ChunkCount {
+        public final String world;
+        public final int x;
+        public final int z;
+        public final int entities;
+        public final int tileEntities;
+        /** Most common entity type in the chunk, null without entities. */
+        public EntityType topType;
+        public int topTypeCount;
+
+        ChunkCount(String world, long key, int entities, int tileEntities) {
+            this.world = world;
+            this.x = (int) (key >> 32);
+            this.z = (int) key;
+            this.entities = entities;
+            this.tileEntities = tileEntities;
+        }
+
+        int load() {
+            return entities + tileEntities;
+        }
+    }
+
+    public static final class Census {
+        public final long takenAt;
+        public final List<WorldTotals> worlds;
+        /** The busiest chunks of all worlds by entities plus tile entities, at most maxChunks. */
+        public final List<ChunkCount> chunks;
+        public final Map<EntityType, Long> entityTypes;
+        public final Map<Material, Long> tileEntityTypes;
+
+        Census(long takenAt, List<WorldTotals> worlds, List<ChunkCount> chunks, Map<EntityType, Long> entityTypes,
+               Map<Material, Long> tileEntityTypes) {
+            this.takenAt = takenAt;
+            this.worlds = worlds;
+            this.chunks = chunks;
+            this.entityTypes = entityTypes;
+            this.tileEntityTypes = tileEntityTypes;
+        }
+    }
+
+    /**
+     * The census of the last call with the same key if it is recent enough
+     * (or still being taken), otherwise a new one from take.
+     */
+    public synchronized CompletableFuture<Census> cached(String key, Supplier<CompletableFuture<Census>> take) {
+        long now = System.currentTimeMillis();
+        if (cached != null && key.equals(cachedKey) && now - cachedAt < cacheMillis
+                && !cached.isCompletedExceptionally()) {
+            return cached;
+        }
+        cachedKey = key;
+        cachedAt = now;
+        cached = take.get();
+        return cached;
+    }
+
+    public Snapshot snapshot(List<World> worlds, long tickBudgetNanos) {
+        return new Snapshot(worlds, tickBudgetNanos);
+    }
+
+    /** Reads the loaded chunks of some worlds on the main thread, a tick budget at a time. */
+    public final class Snapshot implements MainThreadScheduler.TickJob {
+        private final List<World> worlds;
+        private final long tickBudgetNanos;
+        private final List<WorldSnapshot> taken = new ArrayList<>();
+        private WorldSnapshot current;
+        private Chunk[] chunks;
+        private int next;
+        private int tileCopies;
+
+        Snapshot(List<World> worlds, long tickBudgetNanos) {
+            this.worlds = worlds;
+            this.tickBudgetNanos = tickBudgetNanos;
+        }
+
+        // One per world, once the job is done
+        public List<WorldSnapshot> getWorlds() {
+            return taken;
+        }
+
+        @Override
+        public boolean run(long deadlineNanos) {
+            long stopAt = Math.min(deadlineNanos, System.nanoTime() + tickBudgetNanos);
+            while (true) {
+                if (current == null) {
+                    if (taken.size() == worlds.size()) return true;
+                    World world = worlds.get(taken.size());
+                    chunks = world.getLoadedChunks();
+                    current = new WorldSnapshot(world.getName(), chunks.length, maxEntities);
+                    next = 0;
+                }
+                while (next < chunks.length) {
+                    read(next, chunks[next]);
+                    chunks[next++] = null;
+                    if (System.nanoTime() >= stopAt) return false;
+                }
+                taken.add(current);
+                current = null;
+                chunks = null;
+            }
+        }
+
+        private void read(int i, Chunk chunk) {
+            WorldSnapshot snapshot = current;
+            snapshot.chunkKeys[i] = key(chunk.getX(), chunk.getZ());
+            // Unloaded since the world's chunk list was taken: reading it would load it again
+            if (!chunk.isLoaded()) return;
+            if (chunk.isEntitiesLoaded()) {
+                Entity[] entities = chunk.getEntities();
+                snapshot.chunkEntities[i] = entities.length;
+                snapshot.totalEntities += entities.length;
+                for (Entity entity : entities) {
+                    if (snapshot.entities == maxEntities) break;
+                    if (snapshot.entities == snapshot.entityTypes.length) {
+                        snapshot.entityTypes = grow(snapshot.entityTypes);
+                        snapshot.entityChunks = grow(snapshot.entityChunks);
+                    }
+                    snapshot.entityTypes[snapshot.entities] = entity.getType().ordinal();
+                    snapshot.entityChunks[snapshot.entities] = i;
+                    snapshot.entities++;
+                }
+            }
+
+            if (TileEntities.copies() && tileCopies >= maxTileCopies) {
+                snapshot.tileEntitiesExact = false;
+                return;
+            }
+            BlockState[] states = TileEntities.read(chunk);
+            if (TileEntities.copies()) tileCopies += states.length;
+            snapshot.chunkTileEntities[i] = states.length;
+            snapshot.totalTileEntities += states.length;
+            for (BlockState state : states) {
+                if (snapshot.tileEntities == maxEntities) break;
+                if (snapshot.tileEntities == snapshot.tileTypes.length) {
+                    snapshot.tileTypes = grow(snapshot.tileTypes);
+                }
+                snapshot.tileTypes[snapshot.tileEntities++] = state.getType().ordinal();
+            }
+        }
+    }
+
+    private int[] grow(int[] array) {
+        return Arrays.copyOf(array, (int) Math.min(maxEntities, array.length * 2L));
+    }
+
+    /**
+     * Counts the snapshots. Must be called from a thread of the fork-join
+     * pool the counting should run on.
+     */
+    public Census aggregate(List<WorldSnapshot> snapshots, long takenAt) {
+        List<WorldTask> tasks = new ArrayList<>();
+        for (WorldSnapshot snapshot : snapshots) {
+            tasks.add(new WorldTask(snapshot));
+        }
+        ForkJoinTask.invokeAll(tasks);
+
+        List<WorldTotals> worlds = new ArrayList<>();
+        List<ChunkCount> chunks = new ArrayList<>();
+        long[] entityTypes = new long[ENTITY_TYPES.length];
+        long[] tileTypes = new long[MATERIALS.length];
+        for (WorldTask task : tasks) {
+            WorldResult result = task.join();
+            worlds.add(result.totals);
+            chunks.addAll(result.chunks);
+            add(entityTypes, result.counts.entityTypes);
+            add(tileTypes, result.counts.tileTypes);
+        }
+        chunks.sort(Comparator.comparingInt(ChunkCount::load).reversed());
+        if (chunks.size() > maxChunks) {
+            chunks = new ArrayList<>(chunks.subList(0, maxChunks));
+        }
+        return new Census(takenAt, worlds, chunks, ranked(entityTypes, ENTITY_TYPES), ranked(tileTypes, MATERIALS));
+    }
+
+    private static long key(int cx, int cz) {
+        return ((long) cx << 32) | (cz & 0xffffffffL);
+    }
+
+    private static void add(long[] into, long[] counts) {
+        for (int i = 0; i < counts.length; i++) {
+            into[i] += counts[i];
+        }
+    }
+
+    private static <T> Map<T, Long> ranked(long[] counts, T[] values) {
+        List<Integer> present = new ArrayList<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) present.add(i);
+        }
+        present.sort((a, b) -> Long.compare(counts[b], counts[a]));
+        Map<T, Long> ranked = new LinkedHashMap<>();
+        for (int i : present) {
+            ranked.put(values[i], counts[i]);
+        }
+        return ranked;
+    }
+
+    // Type counts of one world, or one slice of it
+    private static final class Counts {
+        final long[] entityTypes = new long[ENTITY_TYPES.length];
+        final long[] tileTypes = new long[MATERIALS.length];
+
+        void merge(Counts other) {
+            add(entityTypes, other.entityTypes);
+            add(tileTypes, other.tileTypes);
+        }
+    }
+
+    private static final class WorldResult {
+        final WorldTotals totals;
+        final Counts counts;
+        final List<ChunkCount> chunks;
+
+        WorldResult(WorldTotals totals, Counts counts, List<ChunkCount> chunks) {
+            this.totals = totals;
+            this.counts = counts;
+            this.chunks = chunks;
+        }
+    }
+
+    private final class WorldTask extends RecursiveTask<WorldResult> {
+        private final WorldSnapshot snapshot;
+
+        WorldTask(WorldSnapshot snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        protected WorldResult compute() {
+            List<SliceTask> slices = new ArrayList<>();
+            for (int from = 0; from < snapshot.entities; from += SLICE) {
+                slices.add(new SliceTask(snapshot, false, from, Math.min(snapshot.entities, from + SLICE)));
+            }
+            for (int from = 0; from < snapshot.tileEntities; from += SLICE) {
+                slices.add(new SliceTask(snapshot, true, from, Math.min(snapshot.tileEntities, from + SLICE)));
+            }
+            ForkJoinTask.invokeAll(slices);
+            Counts counts = new Counts();
+            for (SliceTask slice : slices) {
+                counts.merge(slice.join());
+            }
+
+            // Only a world's own busiest chunks can be among the busiest of all
+            List<Integer> busy = new ArrayList<>();
+            for (int i = 0; i < snapshot.chunkKeys.length; i++) {
+                if (snapshot.chunkEntities[i] + snapshot.chunkTileEntities[i] > 0) busy.add(i);
+            }
+            busy.sort((a, b) -> Integer.compare(snapshot.chunkEntities[b] + snapshot.chunkTileEntities[b],
+                    snapshot.chunkEntities[a] + snapshot.chunkTileEntities[a]));
+            List<ChunkCount> top = new ArrayList<>();
+            for (int i : busy.subList(0, Math.min(maxChunks, busy.size()))) {
+                top.add(new ChunkCount(snapshot.world, snapshot.chunkKeys[i], snapshot.chunkEntities[i],
+                        snapshot.chunkTileEntities[i]));
+            }
+
+            // One more pass for the most common entity type of those chunks (of the entities copied)
+            Map<Integer, int[]> typesByChunk = new HashMap<>();
+            for (int n = 0; n < top.size(); n++) {
+                if (top.get(n).entities > 0) typesByChunk.put(busy.get(n), new int[ENTITY_TYPES.length]);
+            }
+            for (int i = 0; i < snapshot.entities; i++) {
+                int[] types = typesByChunk.get(snapshot.entityChunks[i]);
+                if (types != null) types[snapshot.entityTypes[i]]++;
+            }
+            for (int n = 0; n < top.size(); n++) {
+                ChunkCount chunk = top.get(n);
+                int[] types = typesByChunk.get(busy.get(n));
+                if (types == null) continue;
+                for (int type = 0; type < types.length; type++) {
+                    if (types[type] > chunk.topTypeCount) {
+                        chunk.topType = ENTITY_TYPES[type];
+                        chunk.topTypeCount = types[type];
+                    }
+                }
+            }
+            return new WorldResult(new WorldTotals(snapshot, ranked(counts.entityTypes, ENTITY_TYPES)), counts, top);
+        }
+    }
+
+    private static final class SliceTask extends RecursiveTask<Counts> {
+        private final WorldSnapshot snapshot;
+        private final boolean tiles;
+        private final int from;
+        private final int to;
+
+        SliceTask(WorldSnapshot snapshot, boolean tiles, int from, int to) {
+            this.snapshot = snapshot;
+            this.tiles = tiles;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Counts compute() {
+            Counts counts = new Counts();
+            int[] types = tiles ? snapshot.tileTypes : snapshot.entityTypes;
+            long[] byType = tiles ? counts.tileTypes : counts.entityTypes;
+            for (int i = from; i < to; i++) {
+                byType[types[i]]++;
+            }
+            return counts;
+        }
+    }
+}
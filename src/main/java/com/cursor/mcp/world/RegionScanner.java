@@ -0,0 +1,401 @@
+package com.cursor.mcp.world;
+
+import com.cursor.mcp.scheduler.MainThreadScheduler;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Block queries over a box of the world that keep the server thread out of
+ * the scan. The chunks are copied as {@link ChunkSnapshot}s on the main
+ * thread, as many per tick as the budget allows; the snapshots are then
+ * scanned in parallel off it, one fork-join task per chunk (per layer for
+ * dumps). Sections a snapshot reports as empty are counted as air-like
+ * without being read, since they may hold any of air, cave_air and void_air;
+ * dumps and scans matching an air type read them like any other section.
+ */
+public class RegionScanner {
+    private static final Material[] MATERIALS = Material.values();
+    // Palette index used in dumps for blocks in chunks that were not loaded
+    private static final int UNLOADED = -1;
+
+    private final int maxChunks;
+    private final long maxDumpBlocks;
+
+    public RegionScanner(int maxChunks, long maxDumpBlocks) {
+        this.maxChunks = maxChunks;
+        this.maxDumpBlocks = maxDumpBlocks;
+    }
+
+    public static final class Block {
+        public final int x;
+        public final int y;
+        public final int z;
+        public final Material type;
+
+        Block(int x, int y, int z, Material type) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.type = type;
+        }
+    }
+
+    public static final class Result {
+        /** Block counts by type, most common first. */
+        public final Map<Material, Long> histogram;
+        /** Blocks of empty sections, left out of the histogram: air, cave_air or void_air. */
+        public final long airLike;
+        /** Matching blocks ordered by y, z, x; at most maxMatches of them. */
+        public final List<Block> matches;
+        public final long matchCount;
+        /** Block data strings ("unloaded" for skipped chunks) indexed by the dump runs, or null without a dump. */
+        public final List<String> palette;
+        /** Pairs of palette index and run length, in y, z, x order. */
+        public final int[] runs;
+
+        Result(Map<Material, Long> histogram, long airLike, List<Block> matches, long matchCount, List<String> palette,
+               int[] runs) {
+            this.histogram = histogram;
+            this.airLike = airLike;
+            this.matches = matches;
+            this.matchCount = matchCount;
+            this.palette = palette;
+            this.runs = runs;
+        }
+    }
+
+    /**
+     * Checks the box (corners in any order, y clamped to the world) and returns
+     * the job that copies its chunks; submit it with
+     * {@link MainThreadScheduler#submitTicking}. Unloaded chunks are skipped
+     * unless loadChunks is set.
+     */
+    public Capture capture(World world, int x1, int y1, int z1, int x2, int y2, int z2, boolean loadChunks,
+                           boolean dump, long tickBudgetNanos) {
+        Capture capture = new Capture(world, Math.min(x1, x2), Math.max(world.getMinHeight(), Math.min(y1, y2)),
+                Math.min(z1, z2), Math.max(x1, x2), Math.min(world.getMaxHeight() - 1, Math.max(y1, y2)),
+                Math.max(z1, z2), loadChunks, tickBudgetNanos);
+        if (capture.minY > capture.maxY) {
+            throw new IllegalArgumentException("Region is outside the world height (" + world.getMinHeight()
+                    + " to " + (world.getMaxHeight() - 1) + ")");
+        }
+        long chunks = (long) capture.chunksX * capture.chunksZ;
+        if (chunks > maxChunks) {
+            throw new IllegalArgumentException("Region spans " + chunks + " chunks, at most " + maxChunks + " allowed");
+        }
+        if (dump && capture.volume() > maxDumpBlocks) {
+            throw new IllegalArgumentException("Region has " + capture.volume() + " blocks, at most "
+                    + maxDumpBlocks + " can be dumped");
+        }
+        return capture;
+    }
+
+    /** Copies the chunks of a region on the main thread, spread over ticks. */
+    public static final class Capture implements MainThreadScheduler.TickJob {
+        public final World world;
+        public final int minX;
+        public final int minY;
+        public final int minZ;
+        public final int maxX;
+        public final int maxY;
+        public final int maxZ;
+        private final boolean loadChunks;
+        private final long tickBudgetNanos;
+        private final int chunksX;
+        private final int chunksZ;
+        private final List<ChunkSnapshot> snapshots = new ArrayList<>();
+        private int next;
+        private volatile int skipped;
+        private volatile int ticks;
+
+        Capture(World world, int minX, int minY, int minZ, int maxX, int maxY, int maxZ, boolean loadChunks,
+                long tickBudgetNanos) {
+            this.world = world;
+            this.minX = minX;
+            this.minY = minY;
+            this.minZ = minZ;
+            this.maxX = maxX;
+            this.maxY = maxY;
+            this.maxZ = maxZ;
+            this.loadChunks = loadChunks;
+            this.tickBudgetNanos = tickBudgetNanos;
+            this.chunksX = (maxX >> 4) - (minX >> 4) + 1;
+            this.chunksZ = (maxZ >> 4) - (minZ >> 4) + 1;
+        }
+
+        public long volume() {
+            return (long) (maxX - minX + 1) * (maxY - minY + 1) * (maxZ - minZ + 1);
+        }
+
+        public int getChunks() {
+            return chunksX * chunksZ;
+        }
+
+        public int getSkippedChunks() {
+            return skipped;
+        }
+
+        public int getTicks() {
+            return ticks;
+        }
+
+        // Copies chunks until the tick's budget is used, always at least one
+        @Override
+        public boolean run(long deadlineNanos) {
+            ticks++;
+            long stopAt = Math.min(deadlineNanos, System.nanoTime() + tickBudgetNanos);
+            int total = getChunks();
+            while (next < total) {
+                int cx = (minX >> 4) + next % chunksX;
+                int cz = (minZ >> 4) + next / chunksX;
+                next++;
+                if (!loadChunks && !world.isChunkLoaded(cx, cz)) {
+                    skipped++;
+                    continue;
+                }
+                snapshots.add(world.getChunkAt(cx, cz).getChunkSnapshot(false, false, false));
+                if (System.nanoTime() >= stopAt) break;
+            }
+            return next == total;
+        }
+    }
+
+    /**
+     * Scans a finished capture. Must be called from a thread of the fork-join
+     * pool the scan should run on. Blocks of a type in match are returned up
+     * to maxMatches; dump adds a palette and run-length encoding of the box.
+     */
+    public Result scan(Capture capture, Set<Material> match, int maxMatches, boolean dump) {
+        Scan scan = new Scan(capture, match, maxMatches);
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (ChunkSnapshot snapshot : capture.snapshots) {
+            tasks.add(new ChunkTask(scan, snapshot));
+        }
+        ForkJoinTask.invokeAll(tasks);
+
+        List<Map.Entry<Material, Long>> counts = new ArrayList<>();
+        for (int i = 0; i < MATERIALS.length; i++) {
+            if (scan.counts[i] > 0) counts.add(Map.entry(MATERIALS[i], scan.counts[i]));
+        }
+        counts.sort(Map.Entry.<Material, Long>comparingByValue().reversed());
+        Map<Material, Long> histogram = new LinkedHashMap<>();
+        for (Map.Entry<Material, Long> entry : counts) {
+            histogram.put(entry.getKey(), entry.getValue());
+        }
+        List<Block> matches = scan.matches;
+        matches.sort(Comparator.comparingInt((Block b) -> b.y).thenComparingInt(b -> b.z).thenComparingInt(b -> b.x));
+        if (matches.size() > maxMatches) {
+            matches = new ArrayList<>(matches.subList(0, maxMatches));
+        }
+        if (!dump) {
+            return new Result(histogram, scan.airLike, matches, scan.found.get(), null, null);
+        }
+        return dump(capture, histogram, scan.airLike, matches, scan.found.get());
+    }
+
+    // State shared by the chunk tasks of one scan
+    private static final class Scan {
+        final Capture capture;
+        final boolean[] match = new boolean[MATERIALS.length];
+        final boolean matchAny;
+        // Empty sections have to be read to find air types
+        final boolean matchAir;
+        final int maxMatches;
+        final long[] counts = new long[MATERIALS.length];
+        long airLike;
+        final List<Block> matches = new ArrayList<>();
+        final AtomicLong found = new AtomicLong();
+
+        Scan(Capture capture, Set<Material> match, int maxMatches) {
+            this.capture = capture;
+            for (Material material : match) {
+                this.match[material.ordinal()] = true;
+            }
+            this.matchAny = !match.isEmpty();
+            this.matchAir = match.contains(Material.AIR) || match.contains(Material.CAVE_AIR)
+                    || match.contains(Material.VOID_AIR);
+            this.maxMatches = maxMatches;
+        }
+
+        synchronized void add(long[] chunkCounts, long chunkAirLike, List<Block> chunkMatches) {
+            airLike += chunkAirLike;
+            for (int i = 0; i < chunkCounts.length; i++) {
+                counts[i] += chunkCounts[i];
+            }
+            matches.addAll(chunkMatches);
+        }
+    }
+
+    private static final class ChunkTask extends RecursiveAction {
+        private final Scan scan;
+        private final ChunkSnapshot snapshot;
+
+        ChunkTask(Scan scan, ChunkSnapshot snapshot) {
+            this.scan = scan;
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        protected void compute() {
+            Capture capture = scan.capture;
+            int baseX = snapshot.getX() << 4;
+            int baseZ = snapshot.getZ() << 4;
+            int fromX = Math.max(capture.minX, baseX) - baseX;
+            int toX = Math.min(capture.maxX, baseX + 15) - baseX;
+            int fromZ = Math.max(capture.minZ, baseZ) - baseZ;
+            int toZ = Math.min(capture.maxZ, baseZ + 15) - baseZ;
+            int columns = (toX - fromX + 1) * (toZ - fromZ + 1);
+            int worldMin = capture.world.getMinHeight();
+
+            long[] counts = new long[MATERIALS.length];
+            long airLike = 0;
+            List<Block> matches = new ArrayList<>();
+            for (int y = capture.minY; y <= capture.maxY; ) {
+                int sectionEnd = Math.min(capture.maxY, ((y - worldMin) | 15) + worldMin);
+                if (!scan.matchAir && snapshot.isSectionEmpty((y - worldMin) >> 4)) {
+                    airLike += (long) columns * (sectionEnd - y + 1);
+                    y = sectionEnd + 1;
+                    continue;
+                }
+                for (; y <= sectionEnd; y++) {
+                    for (int z = fromZ; z <= toZ; z++) {
+                        for (int x = fromX; x <= toX; x++) {
+                            Material type = snapshot.getBlockType(x, y, z);
+                            counts[type.ordinal()]++;
+                            if (scan.matchAny && scan.match[type.ordinal()]
+                                    && scan.found.incrementAndGet() <= scan.maxMatches) {
+                                matches.add(new Block(baseX + x, y, baseZ + z, type));
+                            }
+                        }
+                    }
+                }
+            }
+            scan.add(counts, airLike, matches);
+        }
+    }
+
+    private static Result dump(Capture capture, Map<Material, Long> histogram, long airLike, List<Block> matches,
+                               long matchCount) {
+        Map<Long, ChunkSnapshot> chunks = new HashMap<>();
+        for (ChunkSnapshot snapshot : capture.snapshots) {
+            chunks.put(key(snapshot.getX(), snapshot.getZ()), snapshot);
+        }
+        List<LayerTask> layers = new ArrayList<>();
+        for (int y = capture.minY; y <= capture.maxY; y++) {
+            layers.add(new LayerTask(capture, chunks, y));
+        }
+        ForkJoinTask.invokeAll(layers);
+
+        // Join the layers, merging runs across them and numbering the palette
+        // in order of first appearance
+        Map<String, Integer> paletteIndex = new HashMap<>();
+        List<String> palette = new ArrayList<>();
+        Runs runs = new Runs();
+        for (LayerTask layer : layers) {
+            Runs layerRuns = layer.runs;
+            for (int i = 0; i < layerRuns.size; i += 2) {
+                int local = layerRuns.data[i];
+                String state = local == UNLOADED ? "unloaded" : layer.palette.get(local);
+                Integer index = paletteIndex.get(state);
+                if (index == null) {
+                    index = palette.size();
+                    palette.add(state);
+                    paletteIndex.put(state, index);
+                }
+                runs.add(index, layerRuns.data[i + 1]);
+            }
+        }
+        return new Result(histogram, airLike, matches, matchCount, palette, Arrays.copyOf(runs.data, runs.size));
+    }
+
+    private static long key(int cx, int cz) {
+        return ((long) cx << 32) | (cz & 0xffffffffL);
+    }
+
+    // Run-length encodes one y layer in z, x order, by index into its own
+    // palette of block data strings. Empty sections are read too: their
+    // blocks may be any mix of the air types.
+    private static final class LayerTask extends RecursiveAction {
+        private final Capture capture;
+        private final Map<Long, ChunkSnapshot> chunks;
+        private final int y;
+        final Runs runs = new Runs();
+        final List<String> palette = new ArrayList<>();
+        // getAsString builds a new string, so it runs once per distinct state
+        private final Map<BlockData, Integer> byData = new HashMap<>();
+        private final Map<String, Integer> byString = new HashMap<>();
+
+        LayerTask(Capture capture, Map<Long, ChunkSnapshot> chunks, int y) {
+            this.capture = capture;
+            this.chunks = chunks;
+            this.y = y;
+        }
+
+        @Override
+        protected void compute() {
+            for (int z = capture.minZ; z <= capture.maxZ; z++) {
+                for (int x = capture.minX; x <= capture.maxX; ) {
+                    // One lookup per chunk-wide stretch of the row
+                    int end = Math.min(capture.maxX, x | 15);
+                    ChunkSnapshot snapshot = chunks.get(key(x >> 4, z >> 4));
+                    if (snapshot == null) {
+                        runs.add(UNLOADED, end - x + 1);
+                        x = end + 1;
+                        continue;
+                    }
+                    for (; x <= end; x++) {
+                        BlockData data = snapshot.getBlockData(x & 15, y, z & 15);
+                        Integer index = byData.get(data);
+                        if (index == null) {
+                            index = indexOf(data.getAsString());
+                            byData.put(data, index);
+                        }
+                        runs.add(index, 1);
+                    }
+                }
+            }
+        }
+
+        private int indexOf(String state) {
+            Integer index = byString.get(state);
+            if (index == null) {
+                index = palette.size();
+                palette.add(state);
+                byString.put(state, index);
+            }
+            return index;
+        }
+    }
+
+    // Growable list of (value, length) pairs; adding the same value extends the last run
+    private static final class Runs {
+        int[] data = new int[16];
+        int size;
+
+        void add(int value, int length) {
+            if (size > 0 && data[size - 2] == value) {
+                data[size - 1] += length;
+                return;
+            }
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = value;
+            data[size++] = length;
+        }
+    }
+}
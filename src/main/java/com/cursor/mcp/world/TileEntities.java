@@ -0,0 +1,41 @@
+package com.cursor.mcp.world;
+
+import org.bukkit.Chunk;
+import org.bukkit.block.BlockState;
+
+import java.lang.reflect.Method;
+
+// Reads a chunk's tile entities. Paper can do it without copying their state;
+// Spigot's getTileEntities() copies each one in full (inventories included).
+final class TileEntities {
+    // Paper's Chunk.getTileEntities(boolean useSnapshot), null on Spigot
+    private static final Method NO_SNAPSHOT = noSnapshot();
+
+    private TileEntities() {
+    }
+
+    // True if read copies every tile entity's full state
+    static boolean copies() {
+        return NO_SNAPSHOT == null;
+    }
+
+    static BlockState[] read(Chunk chunk) {
+        if (NO_SNAPSHOT != null) {
+            try {
+                return (BlockState[]) NO_SNAPSHOT.invoke(chunk, false);
+            } catch (ReflectiveOperationException e) {
+                // Fall back to the copying read below
+            }
+        }
+        return chunk.getTileEntities();
+    }
+
+    private static Method noSnapshot() {
+        try {
+            // Looked up reflectively so the plugin still builds against and runs on Spigot
+            return Chunk.class.getMethod("getTileEntities", boolean.class);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}